@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.analysis.core.tests.model;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.tracecompass.incubator.internal.analysis.core.model.QueryableWatermark;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link QueryableWatermark} class, with a state system being built
+ * by the test
+ */
+public class QueryableWatermarkTest {
+
+    /* Time to check that a waiter is still blocked, in ms */
+    private static final long BLOCKED_WAIT = 100;
+    /* Maximum time for a waiter to be released, in seconds */
+    private static final long RELEASE_TIMEOUT = 10;
+
+    private ITmfStateSystemBuilder fStateSystem;
+    private int fQuark;
+    private ExecutorService fExecutor;
+
+    /**
+     * Create the state system and the threads for the waiters
+     */
+    @Before
+    public void setUp() {
+        ITmfStateSystemBuilder stateSystem = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend("Test", 0L));
+        fQuark = stateSystem.getQuarkAbsoluteAndAdd("CPUs", "0");
+        fStateSystem = stateSystem;
+        fExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    /**
+     * Release the waiters and dispose the state system
+     */
+    @After
+    public void tearDown() {
+        fExecutor.shutdownNow();
+        ITmfStateSystemBuilder stateSystem = fStateSystem;
+        if (stateSystem != null) {
+            stateSystem.dispose();
+        }
+    }
+
+    /**
+     * Test that the waiters are released when the state system reaches their
+     * time, and not before
+     *
+     * @throws Exception
+     *             Exceptions thrown by the waiters
+     */
+    @Test
+    public void testWaitForProgress() throws Exception {
+        QueryableWatermark watermark = new QueryableWatermark(fStateSystem);
+        Future<?> waiter1 = fExecutor.submit(() -> waitUntilQueryable(watermark, 50));
+        Future<?> waiter2 = fExecutor.submit(() -> waitUntilQueryable(watermark, 50));
+
+        fStateSystem.modifyAttribute(10, 1, fQuark);
+        fStateSystem.modifyAttribute(30, 2, fQuark);
+        assertBlocked(waiter1);
+        assertBlocked(waiter2);
+
+        fStateSystem.modifyAttribute(70, 3, fQuark);
+        waiter1.get(RELEASE_TIMEOUT, TimeUnit.SECONDS);
+        waiter2.get(RELEASE_TIMEOUT, TimeUnit.SECONDS);
+        assertTrue(watermark.getQueryableEnd() >= 50);
+        assertFalse(watermark.isBuilt());
+
+        // An earlier time is queryable without waiting
+        watermark.waitUntilQueryable(20);
+    }
+
+    /**
+     * Test that the waiters for times after the end of the state system are
+     * released when it is built
+     *
+     * @throws Exception
+     *             Exceptions thrown by the waiters
+     */
+    @Test
+    public void testWaitUntilBuilt() throws Exception {
+        QueryableWatermark watermark = new QueryableWatermark(fStateSystem);
+        Future<?> waiter = fExecutor.submit(() -> waitUntilQueryable(watermark, 1000));
+
+        fStateSystem.modifyAttribute(10, 1, fQuark);
+        assertBlocked(waiter);
+
+        fStateSystem.closeHistory(100);
+        waiter.get(RELEASE_TIMEOUT, TimeUnit.SECONDS);
+        assertTrue(watermark.isBuilt());
+    }
+
+    /**
+     * Test that an interrupted waiter stops waiting with an exception, also
+     * when it is interrupted before waiting
+     *
+     * @throws Exception
+     *             Exceptions thrown by the waiters
+     */
+    @Test
+    public void testInterrupt() throws Exception {
+        QueryableWatermark watermark = new QueryableWatermark(fStateSystem);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Future<?> waiter = fExecutor.submit(() -> {
+            try {
+                watermark.waitUntilQueryable(1000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        fStateSystem.modifyAttribute(10, 1, fQuark);
+        assertBlocked(waiter);
+        waiter.cancel(true);
+        assertTrue(interrupted.await(RELEASE_TIMEOUT, TimeUnit.SECONDS));
+
+        Thread.currentThread().interrupt();
+        try {
+            watermark.waitUntilQueryable(1000);
+            fail("The interrupted thread should not wait");
+        } catch (InterruptedException e) {
+            // Expected
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private static void waitUntilQueryable(QueryableWatermark watermark, long time) {
+        try {
+            watermark.waitUntilQueryable(time);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void assertBlocked(Future<?> waiter) throws InterruptedException, ExecutionException {
+        try {
+            waiter.get(BLOCKED_WAIT, TimeUnit.MILLISECONDS);
+            fail("The waiter should be blocked");
+        } catch (TimeoutException e) {
+            // Expected
+        }
+    }
+}
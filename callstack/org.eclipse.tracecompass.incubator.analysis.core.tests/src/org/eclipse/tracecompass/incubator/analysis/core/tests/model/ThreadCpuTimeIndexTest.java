@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.analysis.core.tests.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.tracecompass.incubator.internal.analysis.core.model.ThreadCpuTimeIndex;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link ThreadCpuTimeIndex} class
+ */
+public class ThreadCpuTimeIndexTest {
+
+    private static final long END = 100;
+
+    /**
+     * The thread running on each CPU, as start time and tid pairs. The idle
+     * thread 0 runs on both CPUs at the same time.
+     *
+     * <pre>
+     * CPU 0: 0 [0, 10) 1 [10, 40) 0 [40, 60) 2 [60, 100]
+     * CPU 1: 0 [0, 30) 2 [30, 50) 0 [50, 100]
+     * </pre>
+     */
+    private static final int[][][] SCHEDULE = {
+            { { 0, 0 }, { 10, 1 }, { 40, 0 }, { 60, 2 } },
+            { { 0, 0 }, { 30, 2 }, { 50, 0 } }
+    };
+
+    private static final int[] TIDS = { 0, 1, 2, 3 };
+
+    private ITmfStateSystemBuilder fStateSystem;
+
+    /**
+     * Build the state system of the thread running on each CPU
+     */
+    @Before
+    public void setUp() {
+        ITmfStateSystemBuilder stateSystem = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend("Test", 0L));
+        for (int cpu = 0; cpu < SCHEDULE.length; cpu++) {
+            int quark = stateSystem.getQuarkAbsoluteAndAdd("CPUs", String.valueOf(cpu));
+            for (int[] slice : SCHEDULE[cpu]) {
+                stateSystem.modifyAttribute(slice[0], slice[1], quark);
+            }
+        }
+        stateSystem.closeHistory(END);
+        fStateSystem = stateSystem;
+    }
+
+    /**
+     * Dispose the state system
+     */
+    @After
+    public void tearDown() {
+        ITmfStateSystemBuilder stateSystem = fStateSystem;
+        if (stateSystem != null) {
+            stateSystem.dispose();
+        }
+    }
+
+    /**
+     * Test the CPU time of the threads, including the idle thread that runs on
+     * several CPUs at once
+     *
+     * @throws StateSystemDisposedException
+     *             Exceptions thrown by the state system
+     */
+    @Test
+    public void testCpuTime() throws StateSystemDisposedException {
+        ThreadCpuTimeIndex index = ThreadCpuTimeIndex.build(fStateSystem);
+        assertSame(fStateSystem, index.getStateSystem());
+        assertEquals(30, index.getCpuTime(1, 0, END));
+        assertEquals(60, index.getCpuTime(2, 0, END));
+        assertEquals(110, index.getCpuTime(0, 0, END));
+        assertEquals(0, index.getCpuTime(3, 0, END));
+        // On both CPUs between 5 and 10, then on CPU 1 until 30
+        assertEquals(30, index.getCpuTime(0, 5, 30));
+        assertEquals(0, index.getCpuTime(1, 20, 20));
+    }
+
+    /**
+     * Test the CPU time of every range against the time counted at each
+     * nanosecond
+     *
+     * @throws StateSystemDisposedException
+     *             Exceptions thrown by the state system
+     */
+    @Test
+    public void testCpuTimeRanges() throws StateSystemDisposedException {
+        ThreadCpuTimeIndex index = ThreadCpuTimeIndex.build(fStateSystem);
+        for (int tid : TIDS) {
+            for (long start = 0; start <= END; start++) {
+                for (long end = start; end <= END; end++) {
+                    assertEquals("Thread " + tid + " [" + start + ", " + end + ")", countCpuTime(tid, start, end), index.getCpuTime(tid, start, end));
+                }
+            }
+        }
+    }
+
+    private static long countCpuTime(int tid, long start, long end) {
+        long cpuTime = 0;
+        for (int[][] cpuSchedule : SCHEDULE) {
+            for (long time = start; time < end; time++) {
+                int running = -1;
+                for (int[] slice : cpuSchedule) {
+                    if (slice[0] <= time) {
+                        running = slice[1];
+                    }
+                }
+                if (running == tid) {
+                    cpuTime++;
+                }
+            }
+        }
+        return cpuTime;
+    }
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.analysis.core.tests.weighted;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.tracecompass.incubator.analysis.core.tests.stubs.weighted.SimpleTree;
+import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.CompactWeightedTreeSet;
+import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.ITree;
+import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.WeightedTree;
+import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.WeightedTreeSet;
+import org.junit.Test;
+
+/**
+ * Test the {@link CompactWeightedTreeSet} class
+ */
+@NonNullByDefault
+public class CompactWeightedTreeSetTest {
+
+    private static final String OBJ1 = "obj1";
+    private static final String OBJ2 = "obj2";
+    private static final String OBJ3 = "obj3";
+
+    /**
+     * Test adding trees to non-{@link ITree} elements, they should be merged
+     * like in the weighted tree set
+     */
+    @Test
+    public void testAddingSimpleData() {
+        String element1 = "element1";
+        String element2 = "element2";
+
+        CompactWeightedTreeSet<String, String> treeSet = new CompactWeightedTreeSet<>();
+        assertTrue(treeSet.getElements().isEmpty());
+        assertTrue(treeSet.getTreesFor(element1).isEmpty());
+
+        /*
+         * Add obj1 -> 10 with a child obj2 -> 4 twice, and obj1 -> 5 with a
+         * child obj3 -> 5
+         */
+        WeightedTree<String> wt = new WeightedTree<>(OBJ1, 10);
+        wt.addChild(new WeightedTree<>(OBJ2, 4));
+        treeSet.addWeightedTree(element1, wt);
+        treeSet.addWeightedTree(element1, wt);
+        wt = new WeightedTree<>(OBJ1, 5);
+        wt.addChild(new WeightedTree<>(OBJ3, 5));
+        treeSet.addWeightedTree(element1, wt);
+        treeSet.addWeightedTree(element2, new WeightedTree<>(OBJ2, 3));
+
+        assertEquals(2, treeSet.getElements().size());
+        assertEquals(4, treeSet.getNodeCount());
+
+        Collection<WeightedTree<String>> trees = treeSet.getTreesFor(element1);
+        assertEquals(1, trees.size());
+        WeightedTree<String> tree = trees.iterator().next();
+        assertEquals(OBJ1, tree.getObject());
+        assertEquals(25, tree.getWeight());
+        assertEquals(2, tree.getMaxDepth());
+        assertEquals(trees, treeSet.getTreesFor(element1));
+        for (WeightedTree<String> child : tree.getChildren()) {
+            switch (child.getObject()) {
+            case OBJ2:
+                assertEquals(8, child.getWeight());
+                break;
+            case OBJ3:
+                assertEquals(5, child.getWeight());
+                break;
+            default:
+                throw new IllegalStateException("Unexpected child " + child);
+            }
+        }
+
+        // A copy is a regular weighted tree with the same data
+        WeightedTree<String> copy = tree.copyOf();
+        assertEquals(25, copy.getWeight());
+        assertEquals(2, copy.getChildren().size());
+
+        trees = treeSet.getTreesFor(element2);
+        assertEquals(1, trees.size());
+        assertEquals(3, trees.iterator().next().getWeight());
+    }
+
+    /**
+     * Test adding paths and trees to {@link ITree} elements
+     */
+    @Test
+    public void testAddingTreeData() {
+        SimpleTree element1 = new SimpleTree("element1");
+        SimpleTree element2 = new SimpleTree("element2");
+        element1.addChild(element2);
+
+        CompactWeightedTreeSet<String, SimpleTree> treeSet = new CompactWeightedTreeSet<>();
+        treeSet.addWeightedPath(element2, Arrays.asList(OBJ1, OBJ2), 1);
+        treeSet.addWeightedPath(element2, Arrays.asList(OBJ1, OBJ2, OBJ3), 1);
+        treeSet.addWeightedTree(element2, new WeightedTree<>(OBJ1, 3));
+
+        // The main element should be the parent
+        Collection<SimpleTree> elements = treeSet.getElements();
+        assertEquals(1, elements.size());
+        assertEquals(element1, elements.iterator().next());
+        assertTrue(treeSet.getTreesFor(element1).isEmpty());
+
+        Collection<WeightedTree<String>> trees = treeSet.getTreesFor(element2);
+        assertEquals(1, trees.size());
+        WeightedTree<String> tree = trees.iterator().next();
+        assertEquals(5, tree.getWeight());
+        assertEquals(3, tree.getMaxDepth());
+        WeightedTree<String> child = tree.getChildren().iterator().next();
+        assertEquals(OBJ2, child.getObject());
+        assertEquals(2, child.getWeight());
+    }
+
+    /**
+     * Test that the trees of the set keep their children when they are merged
+     * in other trees or copied, and that they cannot be modified
+     */
+    @Test
+    public void testMergeViews() {
+        String element = "element";
+        CompactWeightedTreeSet<String, String> treeSet = new CompactWeightedTreeSet<>();
+        treeSet.addWeightedPath(element, Arrays.asList(OBJ1, OBJ2, OBJ3), 2);
+        treeSet.addWeightedPath(element, Arrays.asList(OBJ1, OBJ3), 1);
+        WeightedTree<String> view = treeSet.getTreesFor(element).iterator().next();
+
+        // Merge the view in a regular tree that has one of its children
+        WeightedTree<String> tree = new WeightedTree<>(OBJ1, 4);
+        tree.addChild(new WeightedTree<>(OBJ2, 4));
+        tree.merge(view);
+        assertEquals(7, tree.getWeight());
+        assertEquals(3, tree.getMaxDepth());
+        for (WeightedTree<String> child : tree.getChildren()) {
+            switch (child.getObject()) {
+            case OBJ2:
+                assertEquals(6, child.getWeight());
+                assertEquals(1, child.getChildren().size());
+                assertEquals(2, child.getChildren().iterator().next().getWeight());
+                break;
+            case OBJ3:
+                assertEquals(1, child.getWeight());
+                break;
+            default:
+                throw new IllegalStateException("Unexpected child " + child);
+            }
+        }
+
+        // Add views to a regular tree set, merging them
+        WeightedTreeSet<String, String> otherSet = new WeightedTreeSet<>();
+        otherSet.addWeightedTree(element, view.copyOf());
+        otherSet.addWeightedTree(element, treeSet.getTreesFor(element).iterator().next());
+        WeightedTree<String> merged = otherSet.getTreesFor(element).iterator().next();
+        assertEquals(6, merged.getWeight());
+        assertEquals(3, merged.getMaxDepth());
+
+        // The view is not modified
+        assertEquals(3, view.getWeight());
+        try {
+            view.merge(new WeightedTree<>(OBJ1, 1));
+            fail("A view should not be merged into");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        try {
+            new WeightedTree<>(OBJ2).addChild(view);
+            fail("A view should not be added as a child");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        assertEquals(3, view.getWeight());
+        assertEquals(2, view.getChildren().size());
+    }
+}
@@ -14,6 +14,7 @@ package org.eclipse.tracecompass.incubator.analysis.core.tests.weighted;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -32,6 +33,7 @@ import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.ITree;
 import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.IWeightedTreeGroupDescriptor;
 import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.WeightedTree;
 import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.WeightedTreeGroupBy;
+import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.WeightedTreeGroupCache;
 import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.WeightedTreeSet;
 import org.junit.Test;
 
@@ -277,8 +279,46 @@ public class WeightedTreeGroupByTest {
 
     }
 
+    /**
+     * Test changing the grouping with the cache of the groupings, each
+     * grouping should be computed once and be the same as without the cache
+     */
+    @Test
+    public void testCachedGroupBys() {
+        SimpleWeightedTreeProvider wtProvider = getProvider(true);
+        IWeightedTreeGroupDescriptor groupDescriptor1 = wtProvider.getGroupDescriptor();
+        assertNotNull(groupDescriptor1);
+        IWeightedTreeGroupDescriptor groupDescriptor2 = groupDescriptor1.getNextGroup();
+        assertNotNull(groupDescriptor2);
+        WeightedTreeGroupCache<String, SimpleTree, WeightedTree<String>> cache = new WeightedTreeGroupCache<>(wtProvider.getTreeSet(), wtProvider);
+
+        // Group by thread, then derive the coarser groups from it
+        WeightedTreeSet<String, Object> byThread = cache.groupWeightedTreeBy(groupDescriptor2);
+        assertGroupByLevel2(byThread);
+        WeightedTreeSet<String, Object> byProcess = cache.groupWeightedTreeBy(groupDescriptor1);
+        assertGroupByLevel1(byProcess);
+        WeightedTreeSet<String, Object> byAll = cache.groupWeightedTreeBy(AllGroupDescriptor.getInstance());
+        assertGroupByAll(byAll);
+
+        // The groupings should not have been modified and not be computed again
+        assertSame(byThread, cache.groupWeightedTreeBy(groupDescriptor2));
+        assertGroupByLevel2(byThread);
+        assertSame(byProcess, cache.groupWeightedTreeBy(groupDescriptor1));
+        assertGroupByLevel1(byProcess);
+        assertSame(byAll, cache.groupWeightedTreeBy(AllGroupDescriptor.getInstance()));
+        assertGroupByAll(byAll);
+
+        // Group by all directly from the original trees
+        cache = new WeightedTreeGroupCache<>(wtProvider.getTreeSet(), wtProvider);
+        assertGroupByAll(cache.groupWeightedTreeBy(AllGroupDescriptor.getInstance()));
+        assertGroupByLevel1(cache.groupWeightedTreeBy(groupDescriptor1));
+    }
+
     private void groupByAll(SimpleWeightedTreeProvider wtProvider) {
-        WeightedTreeSet<String, Object> wts = WeightedTreeGroupBy.groupWeightedTreeBy(AllGroupDescriptor.getInstance(), wtProvider.getTreeSet(), wtProvider);
+        assertGroupByAll(WeightedTreeGroupBy.groupWeightedTreeBy(AllGroupDescriptor.getInstance(), wtProvider.getTreeSet(), wtProvider));
+    }
+
+    private void assertGroupByAll(WeightedTreeSet<String, Object> wts) {
         Collection<@NonNull ?> elements = wts.getElements();
         assertEquals(1, elements.size());
 
@@ -292,8 +332,10 @@ public class WeightedTreeGroupByTest {
      * Test the group by intermediate level for a weighted tree
      */
     private void groupByLevel1(SimpleWeightedTreeProvider wtProvider, IWeightedTreeGroupDescriptor descriptor) {
+        assertGroupByLevel1(WeightedTreeGroupBy.groupWeightedTreeBy(descriptor, wtProvider.getTreeSet(), wtProvider));
+    }
 
-        WeightedTreeSet<String, Object> wts = WeightedTreeGroupBy.groupWeightedTreeBy(descriptor, wtProvider.getTreeSet(), wtProvider);
+    private void assertGroupByLevel1(WeightedTreeSet<String, Object> wts) {
         Collection<?> elements = wts.getElements();
         assertEquals(2, elements.size());
 
@@ -319,8 +361,10 @@ public class WeightedTreeGroupByTest {
      * Test the group by leaf level of the weighted tree
      */
     private void groupByLevel2(SimpleWeightedTreeProvider wtProvider, IWeightedTreeGroupDescriptor descriptor) {
+        assertGroupByLevel2(WeightedTreeGroupBy.groupWeightedTreeBy(descriptor, wtProvider.getTreeSet(), wtProvider));
+    }
 
-        WeightedTreeSet<String, Object> wts = WeightedTreeGroupBy.groupWeightedTreeBy(descriptor, wtProvider.getTreeSet(), wtProvider);
+    private void assertGroupByLevel2(WeightedTreeSet<String, Object> wts) {
         Collection<?> elements = wts.getElements();
         assertEquals(2, elements.size());
 
@@ -32,6 +32,11 @@ import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
  * How the host information is accessed is up to each implementations. It can
  * make use of the various analyses of the traces that compose this model.
  *
+ * Implementations must be thread-safe: the same model is shared by all the
+ * analyses of a host, and the methods providing information may be called
+ * concurrently, for instance when the call graph analysis iterates over the
+ * call stacks of a series in parallel.
+ *
  * @author Geneviève Bastien
  */
 @Deprecated(since="0.10.0", forRemoval=true)
@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.analysis.core.weighted.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An implementation of the weighted tree set that keeps the nodes of the trees
+ * in arrays of primitives instead of in {@link WeightedTree} objects. Each node
+ * has a parent, a first child, a next sibling, a weight and the ID of its
+ * object in a table of the distinct objects, so it takes a few tens of bytes
+ * instead of a few hundreds.
+ *
+ * The trees returned by this set are read-only views of the nodes, created on
+ * demand, whose weight and children are read from the arrays. They can be
+ * merged into other trees and copied, their children being copied as regular
+ * {@link WeightedTree}s, but they cannot be modified nor added as a child of
+ * another tree: a view to be modified should first be copied with
+ * {@link WeightedTree#copyOf()}. Only the weight and the children of the trees
+ * added to this set are kept, so it is meant for trees that have no other
+ * metrics than the weight.
+ *
+ * @param <N>
+ *            The type of objects represented by each node in the tree
+ * @param <E>
+ *            The type of elements used to group the trees. If this type extends
+ *            {@link ITree}, then the elements and their associated weighted
+ *            trees will be grouped in a hierarchical style
+ */
+@Deprecated(since="0.10.0", forRemoval=true)
+public class CompactWeightedTreeSet<@NonNull N, E> implements IWeightedTreeSet<N, E, WeightedTree<N>> {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int NO_NODE = -1;
+    private static final String READ_ONLY = "The trees of a compact weighted tree set are read-only, copy them to modify them"; //$NON-NLS-1$
+
+    private final Set<E> fRootElements = new HashSet<>();
+    /* The elements to which trees were added, by index */
+    private final Map<Object, Integer> fGroupIds = new HashMap<>();
+    private int[] fGroupFirstRoots = new int[16];
+
+    /* The distinct objects of the nodes, by ID */
+    private final Map<N, Integer> fSymbolIds = new HashMap<>();
+    private final List<N> fSymbols = new ArrayList<>();
+
+    /*
+     * The nodes, by index. The parent of a root node is the encoded index of
+     * its group, a negative value
+     */
+    private int[] fParents = new int[INITIAL_CAPACITY];
+    private int[] fFirstChildren = new int[INITIAL_CAPACITY];
+    private int[] fNextSiblings = new int[INITIAL_CAPACITY];
+    private long[] fWeights = new long[INITIAL_CAPACITY];
+    private int[] fNodeSymbols = new int[INITIAL_CAPACITY];
+    private int fSize = 0;
+
+    /**
+     * Open addressing hash table of the nodes, keyed by parent and symbol ID.
+     * It contains the node index + 1, 0 being an empty slot.
+     */
+    private int[] fTable = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * A read-only view of a node of this set
+     */
+    private final class NodeView extends WeightedTree<N> {
+        private final int fNode;
+
+        public NodeView(int node) {
+            super(fSymbols.get(fNodeSymbols[node]));
+            fNode = node;
+        }
+
+        @Override
+        public long getWeight() {
+            return fWeights[fNode];
+        }
+
+        @Override
+        protected @Nullable WeightedTree<N> getParent() {
+            int parent = fParents[fNode];
+            return parent < 0 ? null : new NodeView(parent);
+        }
+
+        @Override
+        public Collection<WeightedTree<N>> getChildren() {
+            return getViews(fFirstChildren[fNode]);
+        }
+
+        @Override
+        public int getMaxDepth() {
+            return CompactWeightedTreeSet.this.getMaxDepth(fNode);
+        }
+
+        @Override
+        public WeightedTree<N> copyOf() {
+            return copyNode(fNode);
+        }
+
+        @Override
+        public void addToWeight(long weight) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public void addChild(WeightedTree<N> child) {
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        protected void setParent(WeightedTree<N> parent) {
+            // Called when the view is added as a child of another tree
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        protected void mergeData(WeightedTree<N> other) {
+            // Called before a tree is merged in this one modifies it
+            throw new UnsupportedOperationException(READ_ONLY);
+        }
+
+        @Override
+        public int hashCode() {
+            return Integer.hashCode(fNode);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof CompactWeightedTreeSet.NodeView)) {
+                return false;
+            }
+            NodeView other = (NodeView) obj;
+            return fNode == other.fNode && getSet() == other.getSet();
+        }
+
+        private CompactWeightedTreeSet<N, E> getSet() {
+            return CompactWeightedTreeSet.this;
+        }
+    }
+
+    @Override
+    public Collection<E> getElements() {
+        return fRootElements;
+    }
+
+    @Override
+    public Collection<WeightedTree<N>> getTreesFor(Object element) {
+        Integer group = fGroupIds.get(element);
+        if (group == null) {
+            return Collections.emptyList();
+        }
+        return getViews(fGroupFirstRoots[group]);
+    }
+
+    /**
+     * Get the number of nodes in the trees of this set
+     *
+     * @return The number of nodes
+     */
+    public int getNodeCount() {
+        return fSize;
+    }
+
+    /**
+     * Add a weighted tree for an element in this set. If a tree for the same
+     * object already exists, their weights and children will be merged. The
+     * tree itself is not kept, so it can still be used after this call.
+     *
+     * @param dstGroup
+     *            The group to which to add this tree
+     * @param tree
+     *            The weighted tree to add to this set
+     */
+    public void addWeightedTree(E dstGroup, WeightedTree<N> tree) {
+        addTree(encodeGroup(getGroup(dstGroup)), tree);
+    }
+
+    /**
+     * Add a weight to a path of objects in the trees of an element, without
+     * creating a {@link WeightedTree} for it. The weight is added to each node
+     * of the path, which are created if they do not exist yet.
+     *
+     * @param dstGroup
+     *            The group to which to add this path
+     * @param path
+     *            The objects of the path, starting with the root object
+     * @param weight
+     *            The weight to add to the nodes of the path
+     */
+    public void addWeightedPath(E dstGroup, List<N> path, long weight) {
+        int node = encodeGroup(getGroup(dstGroup));
+        for (N object : path) {
+            node = getOrCreateNode(node, getSymbolId(object));
+            fWeights[node] += weight;
+        }
+    }
+
+    private void addTree(int parent, WeightedTree<N> tree) {
+        int node = getOrCreateNode(parent, getSymbolId(tree.getObject()));
+        fWeights[node] += tree.getWeight();
+        for (WeightedTree<N> child : tree.getChildren()) {
+            addTree(node, child);
+        }
+    }
+
+    private int getGroup(E dstGroup) {
+        // Make sure the root element is present
+        E root = dstGroup;
+        if (dstGroup instanceof ITree) {
+            ITree parent = ((ITree) dstGroup).getParent();
+            while (parent != null) {
+                root = (E) parent;
+                parent = parent.getParent();
+            }
+        }
+        fRootElements.add(root);
+
+        Integer group = fGroupIds.get(dstGroup);
+        if (group == null) {
+            group = fGroupIds.size();
+            fGroupIds.put(dstGroup, group);
+            if (group == fGroupFirstRoots.length) {
+                fGroupFirstRoots = Arrays.copyOf(fGroupFirstRoots, group * 2);
+            }
+            fGroupFirstRoots[group] = NO_NODE;
+        }
+        return group;
+    }
+
+    private static int encodeGroup(int group) {
+        return -2 - group;
+    }
+
+    private int getSymbolId(N object) {
+        return fSymbolIds.computeIfAbsent(object, o -> {
+            fSymbols.add(o);
+            return fSymbols.size() - 1;
+        });
+    }
+
+    private int getOrCreateNode(int parent, int symbolId) {
+        int mask = fTable.length - 1;
+        int slot = hash(parent, symbolId) & mask;
+        while (fTable[slot] != 0) {
+            int node = fTable[slot] - 1;
+            if (fParents[node] == parent && fNodeSymbols[node] == symbolId) {
+                return node;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int node = createNode(parent, symbolId);
+        fTable[slot] = node + 1;
+        if (fSize * 2 > fTable.length) {
+            rehash();
+        }
+        return node;
+    }
+
+    private int createNode(int parent, int symbolId) {
+        if (fSize == fParents.length) {
+            int capacity = fSize * 2;
+            fParents = Arrays.copyOf(fParents, capacity);
+            fFirstChildren = Arrays.copyOf(fFirstChildren, capacity);
+            fNextSiblings = Arrays.copyOf(fNextSiblings, capacity);
+            fWeights = Arrays.copyOf(fWeights, capacity);
+            fNodeSymbols = Arrays.copyOf(fNodeSymbols, capacity);
+        }
+        int node = fSize++;
+        fParents[node] = parent;
+        fFirstChildren[node] = NO_NODE;
+        fWeights[node] = 0;
+        fNodeSymbols[node] = symbolId;
+        // Link the node as the first child of its parent or group
+        if (parent < 0) {
+            int group = -2 - parent;
+            fNextSiblings[node] = fGroupFirstRoots[group];
+            fGroupFirstRoots[group] = node;
+        } else {
+            fNextSiblings[node] = fFirstChildren[parent];
+            fFirstChildren[parent] = node;
+        }
+        return node;
+    }
+
+    private void rehash() {
+        int[] table = new int[fTable.length * 2];
+        int mask = table.length - 1;
+        for (int node = 0; node < fSize; node++) {
+            int slot = hash(fParents[node], fNodeSymbols[node]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = node + 1;
+        }
+        fTable = table;
+    }
+
+    private static int hash(int parent, int symbolId) {
+        int hash = parent * 0x9E3779B1 + symbolId;
+        return hash ^ (hash >>> 16);
+    }
+
+    private Collection<WeightedTree<N>> getViews(int firstNode) {
+        List<WeightedTree<N>> views = new ArrayList<>();
+        for (int node = firstNode; node != NO_NODE; node = fNextSiblings[node]) {
+            views.add(new NodeView(node));
+        }
+        return views;
+    }
+
+    private int getMaxDepth(int node) {
+        int maxDepth = 0;
+        for (int child = fFirstChildren[node]; child != NO_NODE; child = fNextSiblings[child]) {
+            maxDepth = Math.max(maxDepth, getMaxDepth(child));
+        }
+        return maxDepth + 1;
+    }
+
+    private WeightedTree<N> copyNode(int node) {
+        WeightedTree<N> tree = new WeightedTree<>(fSymbols.get(fNodeSymbols[node]), fWeights[node]);
+        for (int child = fFirstChildren[node]; child != NO_NODE; child = fNextSiblings[child]) {
+            tree.addChild(copyNode(child));
+        }
+        return tree;
+    }
+}
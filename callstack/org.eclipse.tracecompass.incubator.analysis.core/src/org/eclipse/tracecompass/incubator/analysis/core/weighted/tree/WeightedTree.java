@@ -77,11 +77,11 @@ public class WeightedTree<@NonNull T> implements Comparable<WeightedTree<T>> {
      */
     protected WeightedTree(WeightedTree<T> copy) {
         fObject = copy.fObject;
-        for (WeightedTree<T> entry : copy.fChildren.values()) {
+        for (WeightedTree<T> entry : copy.getChildren()) {
             fChildren.put(entry.getObject(), entry.copyOf());
         }
         fParent = copy.fParent;
-        fWeight = copy.fWeight;
+        fWeight = copy.getWeight();
     }
 
     /**
@@ -176,10 +176,14 @@ public class WeightedTree<@NonNull T> implements Comparable<WeightedTree<T>> {
      * tree.
      *
      * It will first call {@link #mergeData(WeightedTree)} that needs to be
-     * implemented for each implementation of this class.
+     * implemented for each implementation of this class, then add the other's
+     * weight to this one.
      *
      * It will then merge the children of both trees by adding the other's
-     * children to this one.
+     * children to this one. The weight and children of the other tree are read
+     * with {@link #getWeight()} and {@link #getChildren()}, so that trees that
+     * do not keep them in their fields, like views of another structure, can
+     * be merged.
      *
      * @param other
      *            The tree to merge. It has to have the same object as the
@@ -190,8 +194,8 @@ public class WeightedTree<@NonNull T> implements Comparable<WeightedTree<T>> {
         if (!other.getObject().equals(getObject())) {
             throw new IllegalArgumentException("AggregatedStackTraces: trying to merge stack traces of different symbols"); //$NON-NLS-1$
         }
-        fWeight += other.fWeight;
         mergeData(other);
+        fWeight += other.getWeight();
         mergeChildren(other);
     }
 
@@ -228,7 +232,7 @@ public class WeightedTree<@NonNull T> implements Comparable<WeightedTree<T>> {
      *            The tree to merge to this one
      */
     private void mergeChildren(WeightedTree<T> other) {
-        for (WeightedTree<T> otherChildSite : other.fChildren.values()) {
+        for (WeightedTree<T> otherChildSite : other.getChildren()) {
             T childObject = otherChildSite.getObject();
             WeightedTree<T> childSite = fChildren.get(childObject);
             if (childSite == null) {
@@ -277,12 +281,12 @@ public class WeightedTree<@NonNull T> implements Comparable<WeightedTree<T>> {
 
     @Override
     public String toString() {
-        return "[" + fObject + "]: " + fWeight; //$NON-NLS-1$ //$NON-NLS-2$
+        return "[" + fObject + "]: " + getWeight(); //$NON-NLS-1$ //$NON-NLS-2$
     }
 
     @Override
     public int compareTo(WeightedTree<@NonNull T> o) {
-        return Long.compare(fWeight, o.fWeight);
+        return Long.compare(getWeight(), o.getWeight());
     }
 
 }
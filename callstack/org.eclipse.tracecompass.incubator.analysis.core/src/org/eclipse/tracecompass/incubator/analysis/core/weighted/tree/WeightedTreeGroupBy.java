@@ -61,13 +61,40 @@ public final class WeightedTreeGroupBy {
     }
 
     private static <@NonNull N, E, T extends WeightedTree<N>> WeightedTreeSet<N, Object> searchForGroups(IWeightedTreeGroupDescriptor groupBy, IWeightedTreeSet<N, E, T> callGraph, IWeightedTreeProvider<N, E, T> provider) {
+        return groupWeightedTreeByLevel(getGroupLevel(groupBy, provider), callGraph);
+    }
+
+    /**
+     * Get the depth of the elements corresponding to a group descriptor
+     *
+     * @param groupBy
+     *            The group descriptor
+     * @param provider
+     *            The weighted tree provider
+     * @return The depth of the group, or the number of groups of the provider
+     *         if the descriptor is not one of its groups
+     */
+    static int getGroupLevel(IWeightedTreeGroupDescriptor groupBy, IWeightedTreeProvider<?, ?, ?> provider) {
         IWeightedTreeGroupDescriptor groupDescriptor = provider.getGroupDescriptor();
         int level = 0;
         while (groupDescriptor != null && !groupDescriptor.equals(groupBy)) {
             groupDescriptor = groupDescriptor.getNextGroup();
             level++;
         }
+        return level;
+    }
 
+    /**
+     * Group the trees of a tree set at an element depth: the trees of deeper
+     * elements are merged with the ones of their ancestor at that depth.
+     *
+     * @param level
+     *            The depth of the elements to group by
+     * @param callGraph
+     *            The weighted tree set to group trees for, it is not modified
+     * @return A new weighted tree set with the grouped trees
+     */
+    static <@NonNull N, E, T extends WeightedTree<N>> WeightedTreeSet<N, Object> groupWeightedTreeByLevel(int level, IWeightedTreeSet<N, E, T> callGraph) {
         WeightedTreeSet<N, Object> newCg = new WeightedTreeSet<>();
 
         Collection<E> elements = callGraph.getElements();
@@ -118,7 +145,14 @@ public final class WeightedTreeGroupBy {
 
     }
 
-    private static <@NonNull N, E, T extends WeightedTree<N>> WeightedTreeSet<N, Object> groupWeightedTreeByAll(IWeightedTreeSet<N, E, T> weightedTree) {
+    /**
+     * Group all the trees of a tree set under a single "All" element
+     *
+     * @param weightedTree
+     *            The weighted tree set to group trees for, it is not modified
+     * @return A new weighted tree set with the grouped trees
+     */
+    static <@NonNull N, E, T extends WeightedTree<N>> WeightedTreeSet<N, Object> groupWeightedTreeByAll(IWeightedTreeSet<N, E, T> weightedTree) {
         WeightedTreeSet<N, Object> newTreeSet = new WeightedTreeSet<>();
         Collection<E> elements = weightedTree.getElements();
         String mainGroup = "All"; //$NON-NLS-1$
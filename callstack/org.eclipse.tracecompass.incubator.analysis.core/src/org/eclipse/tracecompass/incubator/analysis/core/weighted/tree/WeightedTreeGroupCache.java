@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.analysis.core.weighted.tree;
+
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * Memoizes the groupings of a weighted tree set, so that switching between
+ * the groups of a provider does not merge all the trees of the set again.
+ * Each grouping is computed once, from the closest finer grouping already
+ * computed if there is one, as merging the trees of a grouping gives the same
+ * result as merging the original trees, with fewer trees to merge.
+ *
+ * The returned tree sets are shared by all callers and should not be modified.
+ *
+ * @param <N>
+ *            The type of objects represented by each node in the tree
+ * @param <E>
+ *            The type of elements used to group the trees
+ * @param <T>
+ *            The type of the tree provided
+ */
+@Deprecated(since="0.10.0", forRemoval=true)
+public class WeightedTreeGroupCache<@NonNull N, E, T extends WeightedTree<N>> {
+
+    /* The level of the all group, coarser than any other group */
+    private static final int ALL_LEVEL = -1;
+
+    private final IWeightedTreeSet<N, E, T> fTreeSet;
+    private final IWeightedTreeProvider<N, E, T> fProvider;
+    private final TreeMap<Integer, WeightedTreeSet<N, Object>> fGroupedTreeSets = new TreeMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param treeSet
+     *            The weighted tree set to group trees for
+     * @param provider
+     *            The weighted tree provider
+     */
+    public WeightedTreeGroupCache(IWeightedTreeSet<N, E, T> treeSet, IWeightedTreeProvider<N, E, T> provider) {
+        fTreeSet = treeSet;
+        fProvider = provider;
+    }
+
+    /**
+     * Get the weighted tree set whose groupings are cached
+     *
+     * @return The original weighted tree set
+     */
+    public IWeightedTreeSet<N, E, T> getTreeSet() {
+        return fTreeSet;
+    }
+
+    /**
+     * Group the trees of the tree set by one of the descriptors. The result is
+     * the same as
+     * {@link WeightedTreeGroupBy#groupWeightedTreeBy(IWeightedTreeGroupDescriptor, IWeightedTreeSet, IWeightedTreeProvider)}
+     *
+     * @param groupBy
+     *            The group descriptor by which to group the elements
+     * @return A weighted tree set that is the result of the grouping by the
+     *         descriptor
+     */
+    public synchronized WeightedTreeSet<N, Object> groupWeightedTreeBy(IWeightedTreeGroupDescriptor groupBy) {
+        int level = groupBy.equals(AllGroupDescriptor.getInstance()) ? ALL_LEVEL : WeightedTreeGroupBy.getGroupLevel(groupBy, fProvider);
+        WeightedTreeSet<N, Object> groupedTreeSet = fGroupedTreeSets.get(level);
+        if (groupedTreeSet != null) {
+            return groupedTreeSet;
+        }
+
+        // Start from the closest finer grouping, or from the original trees
+        Entry<Integer, WeightedTreeSet<N, Object>> finer = fGroupedTreeSets.higherEntry(level);
+        groupedTreeSet = (finer == null) ? group(fTreeSet, level) : group(finer.getValue(), level);
+        fGroupedTreeSets.put(level, groupedTreeSet);
+        return groupedTreeSet;
+    }
+
+    private static <@NonNull N, E, T extends WeightedTree<N>> WeightedTreeSet<N, Object> group(IWeightedTreeSet<N, E, T> treeSet, int level) {
+        if (level == ALL_LEVEL) {
+            return WeightedTreeGroupBy.groupWeightedTreeByAll(treeSet);
+        }
+        return WeightedTreeGroupBy.groupWeightedTreeByLevel(level, treeSet);
+    }
+
+}
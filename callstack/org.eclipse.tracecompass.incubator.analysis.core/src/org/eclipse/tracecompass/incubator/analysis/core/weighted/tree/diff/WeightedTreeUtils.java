@@ -14,7 +14,11 @@ package org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.diff;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -52,10 +56,14 @@ public final class WeightedTreeUtils {
      */
     public static <@NonNull T> Collection<DifferentialWeightedTree<T>> diffTrees(Collection<WeightedTree<T>> first, Collection<WeightedTree<T>> second) {
         List<DifferentialWeightedTree<T>> diffTrees = new ArrayList<>();
+        if (second.isEmpty()) {
+            return diffTrees;
+        }
+        Map<T, WeightedTree<T>> firstByObject = indexByObject(first);
         for (WeightedTree<T> base : second) {
             T object = base.getObject();
             // Find the equivalent tree in the first collection
-            WeightedTree<T> other = findObject(first, object);
+            WeightedTree<T> other = firstByObject.get(object);
             double diffWeight = other == null ? Double.NaN : (double) (base.getWeight() - other.getWeight()) / other.getWeight();
             DifferentialWeightedTree<@NonNull T> diffTree = new DifferentialWeightedTree<>(base, object, base.getWeight(), diffWeight);
             diffTrees.add(diffTree);
@@ -120,12 +128,14 @@ public final class WeightedTreeUtils {
         if (pairedElements.isEmpty()) {
             return null;
         }
+        // The pairs of elements are independent, differentiate them in parallel
+        List<Collection<DifferentialWeightedTree<N>>> diffTreesPerPair = pairedElements.parallelStream()
+                .map(pair -> WeightedTreeUtils.diffTrees(first.getTreesFor(pair.getFirst()), second.getTreesFor(pair.getSecond())))
+                .collect(Collectors.toList());
         DifferentialWeightedTreeSet<N> treeSet = new DifferentialWeightedTreeSet<>();
+        Iterator<Collection<DifferentialWeightedTree<N>>> diffTrees = diffTreesPerPair.iterator();
         for (Pair<@NonNull ?, @NonNull ?> pair : pairedElements) {
-            Collection<WeightedTree<N>> trees1 = first.getTreesFor(pair.getFirst());
-            Collection<WeightedTree<N>> trees2 = second.getTreesFor(pair.getSecond());
-            Collection<DifferentialWeightedTree<N>> diffTrees = WeightedTreeUtils.diffTrees(trees1, trees2);
-            for (DifferentialWeightedTree<N> tree: diffTrees) {
+            for (DifferentialWeightedTree<N> tree : diffTrees.next()) {
                 treeSet.addWeightedTree(pair.getFirst(), tree);
             }
         }
@@ -158,14 +168,16 @@ public final class WeightedTreeUtils {
 
     private static Collection<Pair<@NonNull ?, @NonNull ?>> pairEqualElements(Collection<@NonNull ?> elements1, Collection<@NonNull ?> elements2) {
         List<Pair<@NonNull ?, @NonNull ?>> pairedElements = new ArrayList<>();
+        Map<Object, Object> elements2ByValue = new HashMap<>();
+        for (@NonNull Object element2 : elements2) {
+            elements2ByValue.putIfAbsent(element2, element2);
+        }
         for (@NonNull Object element1 : elements1) {
-            for (@NonNull Object element2 : elements2) {
-                if (element1.equals(element2)) {
-                    pairedElements.add(new Pair<>(element1, element1));
-                    if (element1 instanceof ITree && element2 instanceof ITree) {
-                        pairedElements.addAll(pairEqualElements(((ITree) element1).getChildren(), ((ITree) element2).getChildren()));
-                    }
-                    break;
+            Object element2 = elements2ByValue.get(element1);
+            if (element2 != null) {
+                pairedElements.add(new Pair<>(element1, element1));
+                if (element1 instanceof ITree && element2 instanceof ITree) {
+                    pairedElements.addAll(pairEqualElements(((ITree) element1).getChildren(), ((ITree) element2).getChildren()));
                 }
             }
         }
@@ -174,31 +186,32 @@ public final class WeightedTreeUtils {
 
     private static Collection<Pair<@NonNull ?, @NonNull ?>> pairSameNameElements(Collection<@NonNull ?> elements1, Collection<?> elements2) {
         List<Pair<@NonNull ?, @NonNull ?>> pairedElements = new ArrayList<>();
+        Map<String, ITree> elements2ByName = new HashMap<>();
+        for (Object element2 : elements2) {
+            if (element2 instanceof ITree) {
+                elements2ByName.putIfAbsent(((ITree) element2).getName(), (ITree) element2);
+            }
+        }
         for (@NonNull Object element1 : elements1) {
             if (!(element1 instanceof ITree)) {
                 continue;
             }
-            for (@NonNull Object element2 : elements2) {
-                if (!(element2 instanceof ITree)) {
-                    continue;
-                }
-                if (((ITree) element1).getName().equals(((ITree) element2).getName())) {
-                    pairedElements.add(new Pair<>(element1, element2));
-                    pairedElements.addAll(pairSameNameElements(((ITree) element1).getChildren(), ((ITree) element2).getChildren()));
-                    break;
-                }
+            ITree element2 = elements2ByName.get(((ITree) element1).getName());
+            if (element2 != null) {
+                pairedElements.add(new Pair<>(element1, element2));
+                pairedElements.addAll(pairSameNameElements(((ITree) element1).getChildren(), element2.getChildren()));
             }
         }
         return pairedElements;
     }
 
-    private static @Nullable <@NonNull T> WeightedTree<T> findObject(Collection<WeightedTree<T>> tree, @NonNull T object) {
-        for (WeightedTree<T> other : tree) {
-            if (other.getObject().equals(object)) {
-                return other;
-            }
+    private static <@NonNull T> Map<T, WeightedTree<T>> indexByObject(Collection<WeightedTree<T>> trees) {
+        Map<T, WeightedTree<T>> treesByObject = new HashMap<>();
+        for (WeightedTree<T> tree : trees) {
+            // Keep the first tree for an object, like a sequential search would
+            treesByObject.putIfAbsent(tree.getObject(), tree);
         }
-        return null;
+        return treesByObject;
     }
 
 }
@@ -45,6 +45,7 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
 
 /**
  * Operating system model based on analyses who implement certain interfaces to
@@ -53,15 +54,19 @@ import com.google.common.collect.Multimap;
  * {@link org.eclipse.tracecompass.incubator.analysis.core.concepts} and the
  * analysis module should be automatically picked up at creation time.
  *
+ * This class is thread-safe, the providers are queried from a copy of the
+ * provider sets, so that they can be set or removed while the model is being
+ * queried.
+ *
  * @author Geneviève Bastien
  */
 public class CompositeHostModel implements IHostModel {
 
-    private final Multimap<ITmfTrace, Object> fTraceObjectMap = HashMultimap.create();
-    private final Set<ICpuTimeProvider> fCpuTimeProviders = Objects.requireNonNull(Collections.newSetFromMap(new WeakHashMap<ICpuTimeProvider, Boolean>()));
-    private final Set<IThreadOnCpuProvider> fThreadOnCpuProviders = Objects.requireNonNull(Collections.newSetFromMap(new WeakHashMap<IThreadOnCpuProvider, Boolean>()));
-    private final Set<ISamplingDataProvider> fSamplingDataProviders = Objects.requireNonNull(Collections.newSetFromMap(new WeakHashMap<ISamplingDataProvider, Boolean>()));
-    private final Set<KernelAnalysisModule> fKernelModules = Objects.requireNonNull(Collections.newSetFromMap(new WeakHashMap<KernelAnalysisModule, Boolean>()));
+    private final Multimap<ITmfTrace, Object> fTraceObjectMap = Multimaps.synchronizedSetMultimap(HashMultimap.create());
+    private final Set<ICpuTimeProvider> fCpuTimeProviders = Objects.requireNonNull(Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<ICpuTimeProvider, Boolean>())));
+    private final Set<IThreadOnCpuProvider> fThreadOnCpuProviders = Objects.requireNonNull(Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<IThreadOnCpuProvider, Boolean>())));
+    private final Set<ISamplingDataProvider> fSamplingDataProviders = Objects.requireNonNull(Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<ISamplingDataProvider, Boolean>())));
+    private final Set<KernelAnalysisModule> fKernelModules = Objects.requireNonNull(Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<KernelAnalysisModule, Boolean>())));
     private final String fHostId;
 
     /**
@@ -77,7 +82,7 @@ public class CompositeHostModel implements IHostModel {
 
     @Override
     public int getThreadOnCpu(int cpu, long t, boolean block) {
-        for (IThreadOnCpuProvider provider : fThreadOnCpuProviders) {
+        for (IThreadOnCpuProvider provider : copyOf(fThreadOnCpuProviders)) {
             Integer tid = provider.getThreadOnCpuAtTime(cpu, t, block);
             if (tid != null && tid != IHostModel.UNKNOWN_TID) {
                 return tid;
@@ -88,7 +93,7 @@ public class CompositeHostModel implements IHostModel {
 
     @Override
     public long getCpuTime(int tid, long start, long end) {
-        for (ICpuTimeProvider provider : fCpuTimeProviders) {
+        for (ICpuTimeProvider provider : copyOf(fCpuTimeProviders)) {
             long cpuTime = provider.getCpuTime(tid, start, end);
             if (cpuTime != IHostModel.TIME_UNKNOWN) {
                 return cpuTime;
@@ -99,7 +104,7 @@ public class CompositeHostModel implements IHostModel {
 
     @Override
     public Collection<AggregatedCallSite> getSamplingData(int tid, long start, long end) {
-        for (ISamplingDataProvider provider : fSamplingDataProviders) {
+        for (ISamplingDataProvider provider : copyOf(fSamplingDataProviders)) {
             Collection<AggregatedCallSite> samples = provider.getSamplingData(tid, start, end);
             if (!samples.isEmpty()) {
                 return samples;
@@ -110,7 +115,7 @@ public class CompositeHostModel implements IHostModel {
 
     @Override
     public int getProcessId(int tid, long t) {
-        Integer pid = fKernelModules.stream()
+        Integer pid = copyOf(fKernelModules).stream()
                 .map(module -> KernelThreadInformationProvider.getProcessId(module, tid, t))
                 .filter(Objects::nonNull)
                 .findFirst().orElse(null);
@@ -119,7 +124,7 @@ public class CompositeHostModel implements IHostModel {
 
     @Override
     public @Nullable String getExecName(int tid, long t) {
-        return fKernelModules.stream()
+        return copyOf(fKernelModules).stream()
                 .map(module -> KernelThreadInformationProvider.getExecutableName(module, tid))
                 .filter(Objects::nonNull)
                 .findFirst().orElse(null);
@@ -207,6 +212,17 @@ public class CompositeHostModel implements IHostModel {
         fTraceObjectMap.put(trace, module);
     }
 
+    /**
+     * Copy the elements of a synchronized set, the sets of weak references are
+     * modified even when they are read, so they cannot be iterated over
+     * concurrently
+     */
+    private static <T> List<T> copyOf(Set<T> set) {
+        synchronized (set) {
+            return new ArrayList<>(set);
+        }
+    }
+
     @Override
     public String toString() {
         return String.valueOf(getClass());
@@ -336,16 +352,16 @@ public class CompositeHostModel implements IHostModel {
         if (requiredData.contains(ModelDataType.PID) || requiredData.contains(ModelDataType.EXEC_NAME) ||
                 requiredData.contains(ModelDataType.KERNEL_STATES)) {
             // Add the kernel modules
-            list.addAll(fKernelModules);
+            list.addAll(copyOf(fKernelModules));
         }
         if (requiredData.contains(ModelDataType.TID)) {
-            list.addAll(getModulesFrom(fThreadOnCpuProviders));
+            list.addAll(getModulesFrom(copyOf(fThreadOnCpuProviders)));
         }
         if (requiredData.contains(ModelDataType.CPU_TIME)) {
-            list.addAll(getModulesFrom(fCpuTimeProviders));
+            list.addAll(getModulesFrom(copyOf(fCpuTimeProviders)));
         }
         if (requiredData.contains(ModelDataType.SAMPLING_DATA)) {
-            list.addAll(getModulesFrom(fSamplingDataProviders));
+            list.addAll(getModulesFrom(copyOf(fSamplingDataProviders)));
         }
         return list;
     }
@@ -129,6 +129,8 @@ public class ModelListener implements ITmfNewAnalysisModuleListener {
 
         private final WeakReference<@Nullable TidAnalysisModule> fModule;
         private final Collection<String> fHostIds;
+        private volatile @Nullable ThreadCpuTimeIndex fCpuTimeIndex = null;
+        private volatile @Nullable QueryableWatermark fWatermark = null;
 
         public TidAnalysisWrapper(TidAnalysisModule module, String hostId) {
             fHostIds = Collections.singleton(hostId);
@@ -142,17 +144,52 @@ public class ModelListener implements ITmfNewAnalysisModuleListener {
                 return null;
             }
             // Wait for the module to be queryable if blocking is requested
-            while (block && !module.isQueryable(time)) {
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    // just get out of the loop
-                    break;
-                }
+            if (block) {
+                waitUntilQueryable(module, time);
             }
             return module.getThreadOnCpuAtTime(cpu, time);
         }
 
+        /**
+         * Wait until the module can be queried at a time, or its state system
+         * is built. The waiters of a state system are signaled by its
+         * watermark when its current end time advances. If the thread is
+         * interrupted, it stops waiting and keeps its interrupt status, the
+         * module is not even checked as its own waits would clear it.
+         */
+        private void waitUntilQueryable(TidAnalysisModule module, long time) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            if (module.isQueryable(time) || !module.waitForInitialization()) {
+                return;
+            }
+            ITmfStateSystem stateSystem = module.getStateSystem();
+            if (stateSystem == null) {
+                return;
+            }
+            try {
+                getWatermark(stateSystem).waitUntilQueryable(time);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private QueryableWatermark getWatermark(ITmfStateSystem stateSystem) {
+            QueryableWatermark watermark = fWatermark;
+            if (watermark != null && watermark.getStateSystem() == stateSystem) {
+                return watermark;
+            }
+            synchronized (this) {
+                watermark = fWatermark;
+                if (watermark == null || watermark.getStateSystem() != stateSystem) {
+                    watermark = new QueryableWatermark(stateSystem);
+                    fWatermark = watermark;
+                }
+                return watermark;
+            }
+        }
+
         @Override
         public @NonNull Collection<@NonNull String> getHostIds() {
             return fHostIds;
@@ -168,14 +205,52 @@ public class ModelListener implements ITmfNewAnalysisModuleListener {
             if (stateSystem == null) {
                 return IHostModel.TIME_UNKNOWN;
             }
-            long cpuTime = 0;
-
             if (tid < 0) {
                 return IHostModel.TIME_UNKNOWN;
             }
 
             long time = Long.max(start, stateSystem.getStartTime());
             final long end = Math.min(realEnd, stateSystem.getCurrentEndTime());
+            try {
+                ThreadCpuTimeIndex index = getCpuTimeIndex(stateSystem);
+                if (index != null) {
+                    return index.getCpuTime(tid, time, end);
+                }
+            } catch (StateSystemDisposedException e) {
+                return IHostModel.TIME_UNKNOWN;
+            }
+            // The state system is still being built, query it directly
+            return getCpuTime(stateSystem, tid, time, end);
+        }
+
+        /**
+         * Get the CPU time index of the state system, building it the first
+         * time it is requested once the state system is completely built. The
+         * index is rebuilt if the module has a new state system, for instance
+         * after its supplementary files were deleted. Only the build is
+         * synchronized, the built index is read without locking.
+         */
+        private @Nullable ThreadCpuTimeIndex getCpuTimeIndex(ITmfStateSystem stateSystem) throws StateSystemDisposedException {
+            ThreadCpuTimeIndex index = fCpuTimeIndex;
+            if (index != null && index.getStateSystem() == stateSystem) {
+                return index;
+            }
+            if (!stateSystem.waitUntilBuilt(0)) {
+                return null;
+            }
+            synchronized (this) {
+                index = fCpuTimeIndex;
+                if (index == null || index.getStateSystem() != stateSystem) {
+                    index = ThreadCpuTimeIndex.build(stateSystem);
+                    fCpuTimeIndex = index;
+                }
+                return index;
+            }
+        }
+
+        private static long getCpuTime(ITmfStateSystem stateSystem, int tid, long start, long end) {
+            long cpuTime = 0;
+            long time = start;
             boolean found = false;
             try {
                 while (time < end) {
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.analysis.core.model;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+
+/**
+ * Time up to which a state system being built can be queried, with the
+ * threads waiting for a time to become queryable. The first waiting thread
+ * follows the progress of the current end time of the state system and
+ * signals all the waiters each time it advances, so there is only one thread
+ * checking the state system however many threads are waiting.
+ *
+ * The state system does not notify of its progress, so it is checked at a
+ * short fixed interval, which bounds the delay added to each waiter without
+ * backing off while the state system is built.
+ *
+ * Interrupts are reported with an {@link InterruptedException}, the state
+ * system's own wait is never called on an interrupted thread, as it would
+ * clear the interrupt.
+ */
+public final class QueryableWatermark {
+
+    /* The time between two checks of the state system, in ms */
+    private static final long CHECK_INTERVAL = 2;
+
+    private final ITmfStateSystem fStateSystem;
+    private final Object fLock = new Object();
+    private volatile long fQueryableEnd;
+    private volatile boolean fBuilt = false;
+    /** Whether a waiting thread follows the progress of the state system */
+    private boolean fFollowed = false;
+
+    /**
+     * Constructor
+     *
+     * @param stateSystem
+     *            The state system to follow
+     */
+    public QueryableWatermark(ITmfStateSystem stateSystem) {
+        fStateSystem = stateSystem;
+        fQueryableEnd = stateSystem.getStartTime() - 1;
+    }
+
+    /**
+     * Get the state system of this watermark
+     *
+     * @return The state system
+     */
+    public ITmfStateSystem getStateSystem() {
+        return fStateSystem;
+    }
+
+    /**
+     * Get the time up to which the state system could be queried when it was
+     * last checked
+     *
+     * @return The last queryable time
+     */
+    public long getQueryableEnd() {
+        return fQueryableEnd;
+    }
+
+    /**
+     * Get whether the state system is completely built, or will not be built
+     * any further because it was cancelled
+     *
+     * @return Whether the state system is done
+     */
+    public boolean isBuilt() {
+        return fBuilt;
+    }
+
+    /**
+     * Wait until the state system can be queried at a time, or until it is
+     * completely built
+     *
+     * @param time
+     *            The time to query
+     * @throws InterruptedException
+     *             Exception thrown if the thread is interrupted while waiting
+     */
+    public void waitUntilQueryable(long time) throws InterruptedException {
+        synchronized (fLock) {
+            boolean following = false;
+            try {
+                while (!checkProgress(time)) {
+                    if (!following && fFollowed) {
+                        // Another waiter follows the progress and will signal
+                        fLock.wait();
+                        continue;
+                    }
+                    following = true;
+                    fFollowed = true;
+                    fLock.wait(CHECK_INTERVAL);
+                }
+            } finally {
+                if (following) {
+                    // Let another waiter follow the progress
+                    fFollowed = false;
+                    fLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the watermark from the state system and signal the waiters if it
+     * moved. Must be called with the lock held.
+     *
+     * @return Whether the time can be queried or the state system is built
+     */
+    private boolean checkProgress(long time) throws InterruptedException {
+        if (!fBuilt) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            // Read the end before checking if built, not to miss the last events
+            long end = fStateSystem.getCurrentEndTime();
+            if (fStateSystem.waitUntilBuilt(0) || fStateSystem.isCancelled()) {
+                fQueryableEnd = Math.max(fQueryableEnd, fStateSystem.getCurrentEndTime());
+                fBuilt = true;
+                fLock.notifyAll();
+            } else if (end > fQueryableEnd) {
+                fQueryableEnd = end;
+                fLock.notifyAll();
+            }
+        }
+        return fBuilt || time <= fQueryableEnd;
+    }
+}
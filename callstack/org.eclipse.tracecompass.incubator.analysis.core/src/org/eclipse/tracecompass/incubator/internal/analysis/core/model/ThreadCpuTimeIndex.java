@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.analysis.core.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+
+/**
+ * Index of the time each thread was running on a CPU, built once from a
+ * complete state system whose attributes contain the thread running on each
+ * CPU. The intervals of each thread on each CPU are sorted by time with the
+ * cumulative sum of their durations, so that the CPU time of a thread in a
+ * time range is obtained with two binary searches per CPU it ran on.
+ *
+ * The intervals are kept per CPU because the intervals of a thread on
+ * different CPUs may overlap, like the idle thread 0 that runs on all CPUs at
+ * once. The CPU time of a thread is the sum of its time on each CPU.
+ */
+public final class ThreadCpuTimeIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The intervals of a thread on one CPU, with their end time exclusive.
+     * They do not overlap, so they are sorted by both start and end time.
+     */
+    private static final class ThreadIntervals {
+        private long[] fStarts = new long[INITIAL_CAPACITY];
+        private long[] fEnds = new long[INITIAL_CAPACITY];
+        /** The sum of the durations of the intervals before each index */
+        private long[] fPrefixSums = new long[0];
+        private int fSize = 0;
+
+        private void add(long start, long end) {
+            if (fSize == fStarts.length) {
+                fStarts = Arrays.copyOf(fStarts, fSize * 2);
+                fEnds = Arrays.copyOf(fEnds, fSize * 2);
+            }
+            fStarts[fSize] = start;
+            fEnds[fSize] = end;
+            fSize++;
+        }
+
+        private void seal() {
+            Integer[] order = new Integer[fSize];
+            for (int i = 0; i < fSize; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (i1, i2) -> Long.compare(fStarts[i1], fStarts[i2]));
+            long[] starts = new long[fSize];
+            long[] ends = new long[fSize];
+            fPrefixSums = new long[fSize + 1];
+            for (int i = 0; i < fSize; i++) {
+                starts[i] = fStarts[order[i]];
+                ends[i] = fEnds[order[i]];
+                fPrefixSums[i + 1] = fPrefixSums[i] + ends[i] - starts[i];
+            }
+            fStarts = starts;
+            fEnds = ends;
+        }
+
+        private long getCpuTime(long start, long end) {
+            // First interval ending after the start
+            int first = lowerBound(fEnds, start + 1);
+            // Last interval starting before the end
+            int last = lowerBound(fStarts, end) - 1;
+            if (first > last) {
+                return 0;
+            }
+            long cpuTime = fPrefixSums[last + 1] - fPrefixSums[first];
+            cpuTime -= Math.max(0, start - fStarts[first]);
+            cpuTime -= Math.max(0, fEnds[last] - end);
+            return cpuTime;
+        }
+
+        private int lowerBound(long[] values, long value) {
+            int low = 0;
+            int high = fSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private final ITmfStateSystem fStateSystem;
+    /** The intervals of each thread, one per CPU it ran on */
+    private final Map<Integer, ThreadIntervals[]> fThreads;
+
+    private ThreadCpuTimeIndex(ITmfStateSystem stateSystem, Map<Integer, ThreadIntervals[]> threads) {
+        fStateSystem = stateSystem;
+        fThreads = threads;
+    }
+
+    /**
+     * Build the index from the state system
+     *
+     * @param stateSystem
+     *            The state system, whose attributes contain the thread
+     *            running on each CPU. It should be completely built
+     * @return The index
+     * @throws StateSystemDisposedException
+     *             Exception thrown if the state system is disposed while
+     *             reading it
+     */
+    public static ThreadCpuTimeIndex build(ITmfStateSystem stateSystem) throws StateSystemDisposedException {
+        // The intervals of each thread, by quark
+        Map<Integer, Map<Integer, ThreadIntervals>> intervalsPerThread = new HashMap<>();
+        List<Integer> quarks = new ArrayList<>();
+        for (int quark = 0; quark < stateSystem.getNbAttributes(); quark++) {
+            quarks.add(quark);
+        }
+        for (ITmfStateInterval interval : stateSystem.query2D(quarks, stateSystem.getStartTime(), stateSystem.getCurrentEndTime())) {
+            Object value = interval.getValue();
+            if (!(value instanceof Number)) {
+                continue;
+            }
+            intervalsPerThread.computeIfAbsent(((Number) value).intValue(), tid -> new HashMap<>())
+                    .computeIfAbsent(interval.getAttribute(), quark -> new ThreadIntervals())
+                    .add(interval.getStartTime(), interval.getEndTime() + 1);
+        }
+        Map<Integer, ThreadIntervals[]> threads = new HashMap<>();
+        for (Entry<Integer, Map<Integer, ThreadIntervals>> entry : intervalsPerThread.entrySet()) {
+            ThreadIntervals[] intervals = entry.getValue().values().toArray(new ThreadIntervals[0]);
+            for (ThreadIntervals cpuIntervals : intervals) {
+                cpuIntervals.seal();
+            }
+            threads.put(entry.getKey(), intervals);
+        }
+        return new ThreadCpuTimeIndex(stateSystem, threads);
+    }
+
+    /**
+     * Get the state system this index was built from
+     *
+     * @return The state system
+     */
+    public ITmfStateSystem getStateSystem() {
+        return fStateSystem;
+    }
+
+    /**
+     * Get the time a thread was running on a CPU during a time range
+     *
+     * @param tid
+     *            The thread ID
+     * @param start
+     *            The start of the range
+     * @param end
+     *            The end of the range, exclusive
+     * @return The CPU time of the thread in the range, summed over the CPUs
+     */
+    public long getCpuTime(int tid, long start, long end) {
+        ThreadIntervals[] intervals = fThreads.get(tid);
+        if (intervals == null || start >= end) {
+            return 0;
+        }
+        long cpuTime = 0;
+        for (ThreadIntervals cpuIntervals : intervals) {
+            cpuTime += cpuIntervals.getCpuTime(start, end);
+        }
+        return cpuTime;
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.callstack.core.tests.callgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.tracecompass.incubator.analysis.core.concepts.AggregatedCallSite;
+import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackElement;
+import org.eclipse.tracecompass.incubator.callstack.core.callgraph.CallGraph;
+import org.eclipse.tracecompass.incubator.callstack.core.tests.flamechart.CallStackTestBase;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph.AggregatedCalledFunction;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph.CallGraphAnalysis;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.junit.Test;
+
+/**
+ * Test the call graphs of time ranges computed with the range buckets of the
+ * call graph analysis, against the ones computed from the state system
+ */
+public class CallGraphBucketIndexTest extends CallStackTestBase {
+
+    /*
+     * The trace goes from 1 to 20, so the buckets are [1, 6), [6, 11), [11,
+     * 16) and [16, 20]
+     */
+    private static final int NB_BUCKETS = 4;
+
+    /**
+     * Ranges to test: the full trace, ranges with partial buckets at both
+     * ends, a range starting on a bucket boundary, a range within a bucket and
+     * a range ending with the trace
+     */
+    private static final long[][] RANGES = {
+            { 1, 20 },
+            { 3, 18 },
+            { 6, 16 },
+            { 6, 11 },
+            { 2, 4 },
+            { 8, 20 },
+            { 12, 13 }
+    };
+
+    /**
+     * Test that the ranges computed with the buckets have the same durations,
+     * self times and number of calls as the ones computed at once, including
+     * the calls that cross bucket boundaries. The index is then read from the
+     * supplementary files by another analysis and gives the same results.
+     *
+     * @throws TmfAnalysisException
+     *             Exceptions thrown when setting the trace
+     */
+    @Test
+    public void testRangeCallGraphs() throws TmfAnalysisException {
+        CallGraphAnalysis cga = createAnalysis();
+        try {
+            assertSameRangeCallGraphs(cga);
+        } finally {
+            cga.dispose();
+        }
+        File bucketsFile = new File(TmfTraceManager.getSupplementaryFileDir(getTrace()), getModule().getId() + ".callgraph." + NB_BUCKETS);
+        assertTrue(bucketsFile.exists());
+
+        cga = createAnalysis();
+        try {
+            assertSameRangeCallGraphs(cga);
+        } finally {
+            cga.dispose();
+        }
+    }
+
+    private CallGraphAnalysis createAnalysis() throws TmfAnalysisException {
+        CallGraphAnalysis cga = new CallGraphAnalysis(getModule());
+        cga.setId("test.callgraph.buckets");
+        cga.setRangeBucketCount(NB_BUCKETS);
+        cga.setTrace(getTrace());
+        cga.schedule();
+        assertTrue(cga.waitForCompletion());
+        return cga;
+    }
+
+    private void assertSameRangeCallGraphs(CallGraphAnalysis cga) {
+        for (long[] range : RANGES) {
+            String rangeName = "[" + range[0] + ", " + range[1] + "]";
+            CallGraph expected = getModule().getCallGraph(TmfTimestamp.fromNanos(range[0]), TmfTimestamp.fromNanos(range[1]));
+            CallGraph actual = cga.getCallGraph(TmfTimestamp.fromNanos(range[0]), TmfTimestamp.fromNanos(range[1]));
+            for (ICallStackElement element : expected.getElements()) {
+                assertSameElements(rangeName, expected, actual, element);
+            }
+        }
+    }
+
+    private static void assertSameElements(String path, CallGraph expected, CallGraph actual, ICallStackElement element) {
+        String elementPath = path + '/' + element.getName();
+        assertSameCallSites(elementPath, expected.getCallingContextTree(element), actual.getCallingContextTree(element));
+        for (ICallStackElement child : element.getChildrenElements()) {
+            assertSameElements(elementPath, expected, actual, child);
+        }
+    }
+
+    private static void assertSameCallSites(String path, Collection<AggregatedCallSite> expected, Collection<AggregatedCallSite> actual) {
+        assertEquals("Number of call sites of " + path, expected.size(), actual.size());
+        Map<Object, AggregatedCallSite> actualCallSites = new HashMap<>();
+        for (AggregatedCallSite callSite : actual) {
+            actualCallSites.put(callSite.getObject(), callSite);
+        }
+        for (AggregatedCallSite expectedCallSite : expected) {
+            String callSitePath = path + '/' + getCallSiteSymbol(expectedCallSite).resolve(Collections.emptySet());
+            AggregatedCallSite actualCallSite = actualCallSites.get(expectedCallSite.getObject());
+            assertNotNull(callSitePath, actualCallSite);
+            if (!(expectedCallSite instanceof AggregatedCalledFunction) || !(actualCallSite instanceof AggregatedCalledFunction)) {
+                fail("Unexpected call site type at " + callSitePath);
+                return;
+            }
+            AggregatedCalledFunction expectedFunction = (AggregatedCalledFunction) expectedCallSite;
+            AggregatedCalledFunction actualFunction = (AggregatedCalledFunction) actualCallSite;
+            assertEquals("Duration of " + callSitePath, expectedFunction.getDuration(), actualFunction.getDuration());
+            assertEquals("Self time of " + callSitePath, expectedFunction.getSelfTime(), actualFunction.getSelfTime());
+            assertEquals("Number of calls of " + callSitePath, expectedFunction.getNbCalls(), actualFunction.getNbCalls());
+            assertSameCallSites(callSitePath, expectedFunction.getCallees(), actualFunction.getCallees());
+        }
+    }
+}
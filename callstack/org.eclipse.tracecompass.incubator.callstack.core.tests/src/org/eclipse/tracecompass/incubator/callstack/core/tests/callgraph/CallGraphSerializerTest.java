@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.callstack.core.tests.callgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.os.linux.core.model.ProcessStatus;
+import org.eclipse.tracecompass.analysis.timing.core.statistics.IStatistics;
+import org.eclipse.tracecompass.incubator.analysis.core.concepts.AggregatedCallSite;
+import org.eclipse.tracecompass.incubator.analysis.core.concepts.ICallStackSymbol;
+import org.eclipse.tracecompass.incubator.analysis.core.concepts.ProcessStatusInterval;
+import org.eclipse.tracecompass.incubator.analysis.core.model.IHostModel;
+import org.eclipse.tracecompass.incubator.analysis.core.model.ModelManager;
+import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.WeightedTree;
+import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackElement;
+import org.eclipse.tracecompass.incubator.callstack.core.callgraph.CallGraph;
+import org.eclipse.tracecompass.incubator.callstack.core.instrumented.ICalledFunction;
+import org.eclipse.tracecompass.incubator.callstack.core.instrumented.statesystem.CallStackSeries;
+import org.eclipse.tracecompass.incubator.callstack.core.tests.flamechart.CallStackTestBase;
+import org.eclipse.tracecompass.incubator.callstack.core.tests.stubs.CallStackAnalysisStub;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph.AggregatedCalledFunction;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph.AggregatedThreadStatus;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph.CallGraphSerializer;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.junit.Test;
+
+/**
+ * Test the {@link CallGraphSerializer} class, with the call graph of the call
+ * stack test trace
+ */
+public class CallGraphSerializerTest extends CallStackTestBase {
+
+    private static final double ERROR = 0.000001;
+
+    /**
+     * Test that a saved call graph is read back with the same trees, weights,
+     * statistics and kernel statuses, and that the restored statistics can be
+     * merged like the original ones
+     *
+     * @throws IOException
+     *             Exceptions thrown by the file operations
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        CallGraph callgraph = getCallGraphWithStatuses();
+        Path file = Files.createTempFile("callgraph", ".bin");
+        try {
+            assertTrue(CallGraphSerializer.write(callgraph, getStateSystem(), getModel(), file));
+            List<CallGraph> callgraphs = CallGraphSerializer.read(file, getStateSystem(), getRootElements(), getModel());
+            assertNotNull(callgraphs);
+            assertEquals(1, callgraphs.size());
+            CallGraph read = callgraphs.get(0);
+            for (ICallStackElement element : callgraph.getElements()) {
+                assertSameElements("", callgraph, read, element, false);
+            }
+
+            // Merging restored statistics gives the same result as merging the
+            // original ones
+            CallGraph merged = new CallGraph();
+            CallGraph readMerged = new CallGraph();
+            for (ICallStackElement element : callgraph.getElements()) {
+                addTwice(merged, callgraph, callgraph, element);
+                addTwice(readMerged, callgraph, read, element);
+            }
+            for (ICallStackElement element : merged.getElements()) {
+                assertSameElements("", merged, readMerged, element, true);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test that a file saved for another state system, or with another format
+     * version, is not read
+     *
+     * @throws IOException
+     *             Exceptions thrown by the file operations
+     */
+    @Test
+    public void testStaleHeader() throws IOException {
+        CallGraph callgraph = getModule().getCallGraph();
+        Path file = Files.createTempFile("callgraph", ".bin");
+        ITmfStateSystemBuilder otherSs = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend(getStateSystem().getSSID(), getStateSystem().getStartTime()));
+        try {
+            assertTrue(CallGraphSerializer.write(callgraph, getStateSystem(), getModel(), file));
+
+            // Same state system ID, but not the same content
+            otherSs.closeHistory(getStateSystem().getCurrentEndTime() + 1);
+            assertNull(CallGraphSerializer.read(file, otherSs, getRootElements(), getModel()));
+            CallGraph other = new CallGraph();
+            assertFalse(CallGraphSerializer.read(file, otherSs, getRootElements(), getModel(), other));
+            assertTrue(other.getElements().isEmpty());
+
+            // A file of another version
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                // The version follows the 4 bytes of the magic number
+                raf.seek(4);
+                raf.writeByte(1);
+            }
+            assertNull(CallGraphSerializer.read(file, getStateSystem(), getRootElements(), getModel()));
+
+            // A file that does not exist
+            Files.delete(file);
+            assertNull(CallGraphSerializer.read(file, getStateSystem(), getRootElements(), getModel()));
+        } finally {
+            otherSs.dispose();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private ITmfStateSystem getStateSystem() {
+        ITmfStateSystem ss = getModule().getStateSystem();
+        assertNotNull(ss);
+        return ss;
+    }
+
+    private Collection<ICallStackElement> getRootElements() {
+        CallStackSeries series = getModule().getCallStackSeries();
+        assertNotNull(series);
+        return series.getRootElements();
+    }
+
+    private IHostModel getModel() {
+        return ModelManager.getModelFor(getModule().getHostId());
+    }
+
+    /**
+     * Get a copy of the call graph of the trace, with kernel statuses added to
+     * the functions of the leaf elements, as the test trace has none
+     */
+    private CallGraph getCallGraphWithStatuses() {
+        CallStackAnalysisStub module = getModule();
+        CallGraph original = module.getCallGraph();
+        CallGraph callgraph = new CallGraph();
+        for (ICallStackElement element : original.getElements()) {
+            copyWithStatuses(callgraph, original, element);
+        }
+        return callgraph;
+    }
+
+    private static void copyWithStatuses(CallGraph callgraph, CallGraph original, ICallStackElement element) {
+        for (AggregatedCallSite callsite : original.getCallingContextTree(element)) {
+            AggregatedCallSite copy = callsite.copyOf();
+            addStatuses(copy);
+            callgraph.addAggregatedCallSite(element, copy);
+        }
+        for (ICallStackElement child : element.getChildrenElements()) {
+            copyWithStatuses(callgraph, original, child);
+        }
+    }
+
+    private static void addStatuses(WeightedTree<ICallStackSymbol> callsite) {
+        if (callsite instanceof AggregatedCalledFunction) {
+            AggregatedCalledFunction function = (AggregatedCalledFunction) callsite;
+            function.addKernelStatus(new ProcessStatusInterval(1, 3, ProcessStatus.RUN));
+            function.addKernelStatus(new ProcessStatusInterval(3, 4, ProcessStatus.WAIT_CPU));
+            function.addKernelStatus(new ProcessStatusInterval(5, 8, ProcessStatus.RUN));
+        }
+        for (WeightedTree<ICallStackSymbol> child : callsite.getChildren()) {
+            addStatuses(child);
+        }
+    }
+
+    private static void addTwice(CallGraph callgraph, CallGraph first, CallGraph second, ICallStackElement element) {
+        for (AggregatedCallSite callsite : first.getCallingContextTree(element)) {
+            callgraph.addAggregatedCallSite(element, callsite.copyOf());
+        }
+        for (AggregatedCallSite callsite : second.getCallingContextTree(element)) {
+            callgraph.addAggregatedCallSite(element, callsite.copyOf());
+        }
+        for (ICallStackElement child : element.getChildrenElements()) {
+            addTwice(callgraph, first, second, child);
+        }
+    }
+
+    private static void assertSameElements(String path, CallGraph expected, CallGraph actual, ICallStackElement element, boolean merged) {
+        String elementPath = path + '/' + element.getName();
+        assertSameCallSites(elementPath, expected.getCallingContextTree(element), actual.getCallingContextTree(element), merged);
+        for (ICallStackElement child : element.getChildrenElements()) {
+            assertSameElements(elementPath, expected, actual, child, merged);
+        }
+    }
+
+    private static void assertSameCallSites(String path, Collection<? extends WeightedTree<ICallStackSymbol>> expected, Collection<? extends WeightedTree<ICallStackSymbol>> actual, boolean merged) {
+        assertEquals("Number of call sites of " + path, expected.size(), actual.size());
+        Map<Object, WeightedTree<ICallStackSymbol>> actualCallSites = new HashMap<>();
+        for (WeightedTree<ICallStackSymbol> callSite : actual) {
+            actualCallSites.put(callSite.getObject(), callSite);
+        }
+        for (WeightedTree<ICallStackSymbol> expectedCallSite : expected) {
+            String callSitePath = path + '/' + expectedCallSite.getObject().resolve(Collections.emptySet());
+            WeightedTree<ICallStackSymbol> actualCallSite = actualCallSites.get(expectedCallSite.getObject());
+            assertNotNull(callSitePath, actualCallSite);
+            if (!(expectedCallSite instanceof AggregatedCalledFunction) || !(actualCallSite instanceof AggregatedCalledFunction)) {
+                fail("Unexpected call site type at " + callSitePath);
+                return;
+            }
+            AggregatedCalledFunction expectedFunction = (AggregatedCalledFunction) expectedCallSite;
+            AggregatedCalledFunction actualFunction = (AggregatedCalledFunction) actualCallSite;
+            assertEquals("Weight of " + callSitePath, expectedFunction.getWeight(), actualFunction.getWeight());
+            assertEquals("Duration of " + callSitePath, expectedFunction.getDuration(), actualFunction.getDuration());
+            assertEquals("Self time of " + callSitePath, expectedFunction.getSelfTime(), actualFunction.getSelfTime());
+            assertEquals("CPU time of " + callSitePath, expectedFunction.getCpuTime(), actualFunction.getCpuTime());
+            assertEquals("Number of calls of " + callSitePath, expectedFunction.getNbCalls(), actualFunction.getNbCalls());
+            assertEquals("Process of " + callSitePath, expectedFunction.getProcessId(), actualFunction.getProcessId());
+            assertSameStatistics("Durations of " + callSitePath, expectedFunction.getFunctionStatistics().getDurationStatistics(), actualFunction.getFunctionStatistics().getDurationStatistics(), merged);
+            assertSameStatistics("Self times of " + callSitePath, expectedFunction.getFunctionStatistics().getSelfTimeStatistics(), actualFunction.getFunctionStatistics().getSelfTimeStatistics(), merged);
+            assertSameStatistics("CPU times of " + callSitePath, expectedFunction.getFunctionStatistics().getCpuTimesStatistics(), actualFunction.getFunctionStatistics().getCpuTimesStatistics(), merged);
+            assertEquals("Kernel statuses of " + callSitePath, getStatuses(expectedFunction), getStatuses(actualFunction));
+            assertSameCallSites(callSitePath, expectedFunction.getChildren(), actualFunction.getChildren(), merged);
+        }
+    }
+
+    private static void assertSameStatistics(String message, IStatistics<ICalledFunction> expected, IStatistics<ICalledFunction> actual, boolean merged) {
+        assertEquals(message, expected.getNbElements(), actual.getNbElements());
+        if (expected.getNbElements() == 0) {
+            return;
+        }
+        assertEquals(message, expected.getMin(), actual.getMin());
+        assertEquals(message, expected.getMax(), actual.getMax());
+        assertEquals(message, expected.getMean(), actual.getMean(), ERROR);
+        assertEquals(message, expected.getStdDev(), actual.getStdDev(), ERROR);
+        assertEquals(message, expected.getTotal(), actual.getTotal(), ERROR);
+        if (!merged) {
+            // The restored minimum and maximum calls only keep their times
+            assertSameCall(message, expected.getMinObject(), actual.getMinObject());
+            assertSameCall(message, expected.getMaxObject(), actual.getMaxObject());
+        }
+    }
+
+    private static void assertSameCall(String message, @Nullable ICalledFunction expected, @Nullable ICalledFunction actual) {
+        if (expected == null) {
+            assertNull(message, actual);
+            return;
+        }
+        assertNotNull(message, actual);
+        assertEquals(message, expected.getStart(), actual.getStart());
+        assertEquals(message, expected.getEnd(), actual.getEnd());
+        assertEquals(message, expected.getProcessId(), actual.getProcessId());
+        assertEquals(message, expected.getThreadId(), actual.getThreadId());
+    }
+
+    private static Map<ProcessStatus, Long> getStatuses(AggregatedCalledFunction function) {
+        Map<ProcessStatus, Long> statuses = new HashMap<>();
+        for (WeightedTree<ICallStackSymbol> status : function.getExtraDataTrees(0)) {
+            statuses.put(((AggregatedThreadStatus) status).getProcessStatus(), status.getWeight());
+        }
+        return statuses;
+    }
+}
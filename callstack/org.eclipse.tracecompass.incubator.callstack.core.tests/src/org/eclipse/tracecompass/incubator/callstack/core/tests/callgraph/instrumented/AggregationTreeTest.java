@@ -19,12 +19,15 @@ import static org.junit.Assert.fail;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.incubator.analysis.core.concepts.AggregatedCallSite;
 import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackElement;
 import org.eclipse.tracecompass.incubator.callstack.core.callgraph.CallGraph;
 import org.eclipse.tracecompass.incubator.callstack.core.callgraph.ICallGraphProvider;
@@ -667,6 +670,79 @@ public class AggregationTreeTest {
         assertEquals("Test third function's number of calls", 1, function4.getNbCalls());
     }
 
+    /**
+     * Test that iterating over the call stacks concurrently gives the same call
+     * graph as iterating over them one after the other, with several processes
+     * and threads whose functions have different depths.
+     */
+    @Test
+    public void parallelIterationTest() {
+        ITmfStateSystemBuilder fixture = createFixture();
+        int nbThreads = 8;
+        for (int thread = 0; thread < nbThreads; thread++) {
+            int threadQuark = fixture.getQuarkAbsoluteAndAdd(CallGraphAnalysisStub.PROCESS_PATH, Integer.toString(100 + thread));
+            int parentQuark = fixture.getQuarkRelativeAndAdd(threadQuark, CallGraphAnalysisStub.CALLSTACK_PATH);
+            fixture.updateOngoingState(TmfStateValue.newValueLong(100 + thread), threadQuark);
+            int quark1 = fixture.getQuarkRelativeAndAdd(parentQuark, QUARK_1);
+            int quark2 = fixture.getQuarkRelativeAndAdd(parentQuark, QUARK_2);
+            int quark3 = fixture.getQuarkRelativeAndAdd(parentQuark, QUARK_3);
+            for (int i = 0; i < 20; i++) {
+                long start = i * 50L;
+                fixture.modifyAttribute(start, (long) ((i + thread) % 4), quark1);
+                fixture.modifyAttribute(start + 40, (Object) null, quark1);
+                if ((i + thread) % 3 != 0) {
+                    fixture.modifyAttribute(start + 5, (long) (10 + (i * thread) % 3), quark2);
+                    fixture.modifyAttribute(start + 30 - thread, (Object) null, quark2);
+                    if (i % 2 == 0) {
+                        fixture.modifyAttribute(start + 10, (long) (20 + thread % 2), quark3);
+                        fixture.modifyAttribute(start + 20, (Object) null, quark3);
+                    }
+                }
+            }
+        }
+        fixture.closeHistory(1002);
+
+        CallGraphAnalysisStub cga = new CallGraphAnalysisStub(fixture);
+        setCga(cga);
+        CallGraphAnalysisStub sequentialCga = new CallGraphAnalysisStub(fixture);
+        try {
+            assertTrue(cga.iterate(true));
+            assertTrue(sequentialCga.iterate(false));
+
+            List<ICallStackElement> threads = getLeafElements(cga);
+            List<ICallStackElement> sequentialThreads = getLeafElements(sequentialCga);
+            assertEquals("Number of thread nodes Found", nbThreads, threads.size());
+            assertEquals("Number of thread nodes Found", sequentialThreads.size(), threads.size());
+            for (int i = 0; i < threads.size(); i++) {
+                ICallStackElement thread = threads.get(i);
+                ICallStackElement sequentialThread = sequentialThreads.get(i);
+                assertEquals("Thread name", sequentialThread.getName(), thread.getName());
+                assertSameCallSites(thread.getName(), sequentialCga.getCallGraph().getCallingContextTree(sequentialThread), cga.getCallGraph().getCallingContextTree(thread));
+            }
+        } finally {
+            sequentialCga.dispose();
+        }
+    }
+
+    private static void assertSameCallSites(String path, Collection<AggregatedCallSite> expected, Collection<AggregatedCallSite> actual) {
+        assertEquals("Number of callees of " + path, expected.size(), actual.size());
+        Map<Object, AggregatedCallSite> actualCallSites = new HashMap<>();
+        for (AggregatedCallSite callsite : actual) {
+            actualCallSites.put(callsite.getObject(), callsite);
+        }
+        for (AggregatedCallSite expectedCallSite : expected) {
+            String callSitePath = path + '/' + expectedCallSite.getObject();
+            AggregatedCallSite actualCallSite = actualCallSites.get(expectedCallSite.getObject());
+            assertNotNull(callSitePath, actualCallSite);
+            AggregatedCalledFunction expectedFunction = (AggregatedCalledFunction) expectedCallSite;
+            AggregatedCalledFunction actualFunction = (AggregatedCalledFunction) actualCallSite;
+            assertEquals("Duration of " + callSitePath, expectedFunction.getDuration(), actualFunction.getDuration());
+            assertEquals("Self time of " + callSitePath, expectedFunction.getSelfTime(), actualFunction.getSelfTime());
+            assertEquals("Number of calls of " + callSitePath, expectedFunction.getNbCalls(), actualFunction.getNbCalls());
+            assertSameCallSites(callSitePath, expectedFunction.getCallees(), actualFunction.getCallees());
+        }
+    }
+
     /**
      * Gets the call graph analysis
      * @return the call graph analysis
@@ -14,10 +14,18 @@ package org.eclipse.tracecompass.incubator.callstack.core.tests.flamechart;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.incubator.callstack.core.instrumented.statesystem.CallStackSeries;
 import org.eclipse.tracecompass.incubator.callstack.core.tests.stubs.CallStackAnalysisStub;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
@@ -25,6 +33,7 @@ import org.junit.Test;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 
 /**
  * Test the callstack analysis as a segment store
@@ -70,4 +79,56 @@ public class CallStackSegmentStoreTest extends CallStackTestBase {
         assertEquals("Between 10 and 15", 12, Iterables.size(elements));
     }
 
+    /**
+     * Test that the intersecting queries return the same segments as a filter
+     * of all the segments, both when reading them from the state system, the
+     * default, and once they are materialized in memory, where they are also
+     * in start time order
+     */
+    @Test
+    public void testIntersectingSegmentsOrder() {
+        CallStackAnalysisStub module = getModule();
+        assertNotNull(module);
+        CallStackSeries series = module.getCallStackSeries();
+        assertNotNull(series);
+
+        List<@NonNull ISegment> all = Lists.newArrayList(series);
+        Map<String, List<@NonNull ISegment>> stateSystemResults = new HashMap<>();
+        for (long start = 0; start <= 21; start++) {
+            for (long end = start; end <= 21; end++) {
+                String range = "[" + start + ", " + end + ']';
+                List<@NonNull ISegment> elements = Lists.newArrayList(series.getIntersectingElements(start, end));
+                assertSameSegments(range, getExpected(all, start, end), elements);
+                stateSystemResults.put(range, elements);
+            }
+        }
+
+        assertTrue(series.materialize(new NullProgressMonitor()));
+        assertEquals("Materialized size", all.size(), series.size());
+        for (long start = 0; start <= 21; start++) {
+            for (long end = start; end <= 21; end++) {
+                String range = "[" + start + ", " + end + ']';
+                List<@NonNull ISegment> elements = Lists.newArrayList(series.getIntersectingElements(start, end));
+                assertSameSegments(range, getExpected(all, start, end), elements);
+                List<@NonNull ISegment> stateSystemElements = stateSystemResults.get(range);
+                assertNotNull(stateSystemElements);
+                assertSameSegments("State system " + range, stateSystemElements, elements);
+                for (int i = 1; i < elements.size(); i++) {
+                    assertTrue("Sorted by start time", elements.get(i - 1).getStart() <= elements.get(i).getStart());
+                }
+            }
+        }
+    }
+
+    private static List<@NonNull ISegment> getExpected(List<@NonNull ISegment> all, long start, long end) {
+        return all.stream()
+                .filter(segment -> segment.getStart() <= end && segment.getEnd() >= start)
+                .collect(Collectors.toList());
+    }
+
+    private static void assertSameSegments(String range, List<@NonNull ISegment> expected, List<@NonNull ISegment> elements) {
+        assertEquals("Intersecting " + range, new HashSet<>(expected), new HashSet<>(elements));
+        assertEquals("Number of intersecting " + range, expected.size(), elements.size());
+    }
+
 }
@@ -17,13 +17,19 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.model.HostThread;
 import org.eclipse.tracecompass.incubator.analysis.core.model.IHostModel;
 import org.eclipse.tracecompass.incubator.analysis.core.model.ModelManager;
@@ -335,4 +341,101 @@ public class CallStackTest extends CallStackTestBase {
         assertNull(function);
 
     }
+
+    /**
+     * Test the {@link CallStack#iterateOverCallStack(long, long, IHostModel,
+     * IProgressMonitor, java.util.function.Consumer)} method, which should
+     * return the same calls as each depth, children first. It should also
+     * return the same calls as the depth by depth reading of the callstack for
+     * time ranges that start and end during calls. The small ranges of this
+     * trace are read over many time windows.
+     */
+    @Test
+    public void testIterateOverCallStack() {
+        CallStackAnalysisStub module = getModule();
+        assertNotNull(module);
+        CallStackSeries callstack = module.getCallStackSeries();
+        assertNotNull(callstack);
+        IHostModel model = ModelManager.getModelFor("");
+
+        for (ICallStackElement process : callstack.getRootElements()) {
+            for (ICallStackElement thread : process.getChildrenElements()) {
+                assertTrue(thread instanceof InstrumentedCallStackElement);
+                CallStack callStack = ((InstrumentedCallStackElement) thread).getCallStack();
+
+                List<ICalledFunction> functions = new ArrayList<>();
+                assertTrue(callStack.iterateOverCallStack(START_TIME, END_TIME, model, MONITOR, functions::add));
+
+                // Each call is consumed after its children and before its parent
+                Set<ICalledFunction> consumed = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (ICalledFunction function : functions) {
+                    ICalledFunction parent = function.getParent();
+                    assertTrue(parent == null || !consumed.contains(parent));
+                    consumed.add(function);
+                }
+
+                // Compare with the calls at each depth
+                for (int depth = 1; depth <= callStack.getMaxDepth(); depth++) {
+                    List<ICalledFunction> expected = callStack.getCallListAtDepth(depth, START_TIME, END_TIME, 1, MONITOR);
+                    List<ICalledFunction> actual = new ArrayList<>();
+                    for (ICalledFunction function : functions) {
+                        if (getDepth(function) == depth) {
+                            actual.add(function);
+                        }
+                    }
+                    actual.sort(Comparator.comparingLong(ICalledFunction::getStart));
+                    assertEquals(thread.getName() + " depth " + depth, expected.size(), actual.size());
+                    for (int i = 0; i < expected.size(); i++) {
+                        assertEquals(expected.get(i).getStart(), actual.get(i).getStart());
+                        assertEquals(expected.get(i).getEnd(), actual.get(i).getEnd());
+                        assertEquals(expected.get(i).getSymbol(), actual.get(i).getSymbol());
+                    }
+                }
+
+                // Compare with the depth by depth reading, on ranges that cut calls
+                for (long[] range : new long[][] { { START_TIME, END_TIME }, { 3, 12 }, { 7, 18 } }) {
+                    String message = thread.getName() + " [" + range[0] + ", " + range[1] + ']';
+                    List<ICalledFunction> expected = new ArrayList<>();
+                    collectDepthByDepth(callStack, null, 1, model, range[0], range[1], expected);
+                    List<ICalledFunction> actual = new ArrayList<>();
+                    assertTrue(callStack.iterateOverCallStack(range[0], range[1], model, MONITOR, actual::add));
+                    assertEquals(message, expected.size(), actual.size());
+                    for (int i = 0; i < expected.size(); i++) {
+                        assertEquals(message, expected.get(i).getStart(), actual.get(i).getStart());
+                        assertEquals(message, expected.get(i).getEnd(), actual.get(i).getEnd());
+                        assertEquals(message, expected.get(i).getSymbol(), actual.get(i).getSymbol());
+                        assertEquals(message, getDepth(expected.get(i)), getDepth(actual.get(i)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect the calls of a callstack in post-order by querying the next
+     * function of each depth, like the depth by depth call graph builder
+     */
+    private static void collectDepthByDepth(CallStack callStack, @Nullable ICalledFunction parent, int depth, IHostModel model, long start, long end, List<ICalledFunction> functions) {
+        if (depth > callStack.getMaxDepth()) {
+            return;
+        }
+        long rangeStart = parent == null ? start : Math.max(parent.getStart(), start);
+        long rangeEnd = parent == null ? end : Math.min(parent.getEnd(), end);
+        ICalledFunction function = callStack.getNextFunction(parent == null ? callStack.getStartTime() : parent.getStart(), depth, parent, model, rangeStart, rangeEnd);
+        while (function != null) {
+            collectDepthByDepth(callStack, function, depth + 1, model, start, end, functions);
+            functions.add(function);
+            function = callStack.getNextFunction(function.getEnd(), depth, parent, model, rangeStart, rangeEnd);
+        }
+    }
+
+    private static int getDepth(ICalledFunction function) {
+        int depth = 1;
+        ICalledFunction parent = function.getParent();
+        while (parent != null) {
+            depth++;
+            parent = parent.getParent();
+        }
+        return depth;
+    }
 }
@@ -19,8 +19,10 @@ import static org.junit.Assert.fail;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -264,6 +266,43 @@ public class FlameChartDataProviderTest extends CallStackTestBase {
                 new TimeGraphState(10, 11, Integer.MIN_VALUE)));
     }
 
+    /**
+     * Test getting the model with the calls shorter than the resolution
+     * summarized
+     */
+    @Test
+    public void testFetchSummarizedModel() {
+        FlameChartDataProvider dataProvider = getDataProvider();
+
+        TmfModelResponse<@NonNull TmfTreeModel<@NonNull FlameChartEntryModel>> responseTree = dataProvider.fetchTree(FetchParametersUtils.timeQueryToMap(new TimeQueryFilter(0, Long.MAX_VALUE, 2)), new NullProgressMonitor());
+        assertTrue(responseTree.getStatus().equals(ITmfResponse.Status.COMPLETED));
+        TmfTreeModel<@NonNull FlameChartEntryModel> model = responseTree.getModel();
+        assertNotNull(model);
+        List<@NonNull FlameChartEntryModel> modelEntries = model.getEntries();
+        FlameChartEntryModel tid6 = FlameDataProviderTestUtils.findEntryByNameAndType(modelEntries, "6", EntryType.LEVEL);
+        assertNotNull(tid6);
+        List<FlameChartEntryModel> tid6Children = FlameDataProviderTestUtils.findEntriesByParent(modelEntries, tid6.getId());
+        Set<@NonNull Long> selectedIds = new HashSet<>();
+        tid6Children.forEach(child -> selectedIds.add(child.getId()));
+
+        // Request the times 4 and 9, the calls shorter than 5 are summarized
+        Map<@NonNull String, @NonNull Object> parameters = new HashMap<>(FetchParametersUtils.selectionTimeQueryToMap(new SelectionTimeQueryFilter(4, 9, 2, selectedIds)));
+        parameters.put(FlameChartDataProvider.SUMMARIZE_KEY, true);
+        TmfModelResponse<@NonNull TimeGraphModel> rowResponse = dataProvider.fetchRowModel(parameters, new NullProgressMonitor());
+        assertEquals(ITmfResponse.Status.COMPLETED, rowResponse.getStatus());
+        TimeGraphModel rowModel = rowResponse.getModel();
+        assertNotNull(rowModel);
+        List<@NonNull ITimeGraphRowModel> rows = rowModel.getRows();
+
+        // A single call shorter than the resolution is kept as is
+        verifyStates(rows, FlameDataProviderTestUtils.findEntryByDepthAndType(tid6Children, 2, EntryType.FUNCTION), ImmutableList.of(
+                new TimeGraphState(2, 5, Integer.MIN_VALUE, "op3"),
+                new TimeGraphState(8, 3, Integer.MIN_VALUE, "op2")));
+        // Consecutive calls shorter than the resolution are merged
+        verifyStates(rows, FlameDataProviderTestUtils.findEntryByDepthAndType(tid6Children, 3, EntryType.FUNCTION), ImmutableList.of(
+                new TimeGraphState(4, 6, Integer.MIN_VALUE, "2 calls, mostly op1")));
+    }
+
     /**
      * Test following a callstack backward and forward
      */
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.callstack.core.tests.symbol;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.callstack.core.tests.flamechart.CallStackTestBase;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.symbol.SymbolCache;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.symbol.SymbolCache.SymbolRequest;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceClosedSignal;
+import org.eclipse.tracecompass.tmf.core.symbols.ISymbolProvider;
+import org.eclipse.tracecompass.tmf.core.symbols.TmfResolvedSymbol;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.junit.Test;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Test the {@link SymbolCache} class
+ */
+public class SymbolCacheTest extends CallStackTestBase {
+
+    private static final long SECOND = 1000000000L;
+
+    /**
+     * Symbol provider whose symbols change with the second of the time, that
+     * counts the number of symbols it resolves
+     */
+    private static class SymbolProviderStub implements ISymbolProvider {
+        private final ITmfTrace fTrace;
+        private int fNbResolved = 0;
+
+        public SymbolProviderStub(ITmfTrace trace) {
+            fTrace = trace;
+        }
+
+        @Override
+        public @NonNull ITmfTrace getTrace() {
+            return fTrace;
+        }
+
+        @Override
+        public void loadConfiguration(@Nullable IProgressMonitor monitor) {
+            // Nothing to load
+        }
+
+        @Override
+        public @Nullable TmfResolvedSymbol getSymbol(long address) {
+            return getSymbol(0, 0, address);
+        }
+
+        @Override
+        public @Nullable TmfResolvedSymbol getSymbol(int pid, long timestamp, long address) {
+            fNbResolved++;
+            return new TmfResolvedSymbol(address, pid + ":" + address + '@' + Math.floorDiv(timestamp, SECOND));
+        }
+    }
+
+    /**
+     * Test that the symbols are keyed by process ID, address and time window
+     * of one second, a symbol being resolved only once per key
+     */
+    @Test
+    public void testKeys() {
+        SymbolCache cache = SymbolCache.getInstance(getTrace());
+        SymbolProviderStub provider = new SymbolProviderStub(getTrace());
+        cache.setSymbolProviders(Collections.singletonList(provider));
+
+        assertEquals("1:16@0", cache.resolve(1, 10, 16));
+        assertEquals(1, provider.fNbResolved);
+
+        // Other times of the same window reuse the name
+        assertEquals("1:16@0", cache.resolve(1, 0, 16));
+        assertEquals("1:16@0", cache.resolve(1, SECOND - 1, 16));
+        assertEquals(1, provider.fNbResolved);
+
+        // Other windows, before and after
+        assertEquals("1:16@1", cache.resolve(1, SECOND, 16));
+        assertEquals("1:16@-1", cache.resolve(1, -1, 16));
+        assertEquals(3, provider.fNbResolved);
+        assertEquals("1:16@1", cache.resolve(1, 2 * SECOND - 1, 16));
+        assertEquals(3, provider.fNbResolved);
+
+        // Other processes and addresses
+        assertEquals("2:16@0", cache.resolve(2, 10, 16));
+        assertEquals("1:32@0", cache.resolve(1, 10, 32));
+        assertEquals(5, provider.fNbResolved);
+        assertEquals("1:16@0", cache.resolve(1, 10, 16));
+        assertEquals(5, provider.fNbResolved);
+    }
+
+    /**
+     * Test that the symbols are resolved again when the providers change
+     */
+    @Test
+    public void testProvidersChange() {
+        SymbolCache cache = SymbolCache.getInstance(getTrace());
+        SymbolProviderStub provider = new SymbolProviderStub(getTrace());
+        cache.setSymbolProviders(Collections.singletonList(provider));
+        assertEquals("1:16@0", cache.resolve(1, 10, 16));
+        assertEquals(1, provider.fNbResolved);
+
+        SymbolProviderStub otherProvider = new SymbolProviderStub(getTrace());
+        cache.setSymbolProviders(Collections.singletonList(otherProvider));
+        assertEquals("1:16@0", cache.resolve(1, 10, 16));
+        assertEquals(1, provider.fNbResolved);
+        assertEquals(1, otherProvider.fNbResolved);
+
+        // Without providers, the address is shown in hexadecimal
+        cache.setSymbolProviders(Collections.emptyList());
+        assertEquals("0x10", cache.resolve(1, 10, 16));
+    }
+
+    /**
+     * Test that the batch resolution merges the requests of the same symbol
+     * and resolves each missing symbol once, and the statistics of the cache
+     */
+    @Test
+    public void testResolveAll() {
+        SymbolCache cache = SymbolCache.getInstance(getTrace());
+        SymbolProviderStub provider = new SymbolProviderStub(getTrace());
+        cache.setSymbolProviders(Collections.singletonList(provider));
+        assertEquals("1:16@0", cache.resolve(1, 10, 16));
+        CacheStats before = cache.getStats();
+
+        String[] names = cache.resolveAll(Arrays.asList(
+                new SymbolRequest(1, 20, 16),
+                new SymbolRequest(1, 10, 32),
+                new SymbolRequest(1, 30, 32),
+                new SymbolRequest(2, SECOND, 16),
+                new SymbolRequest(1, 40, 32)));
+        assertArrayEquals(new String[] { "1:16@0", "1:32@0", "1:32@0", "2:16@1", "1:32@0" }, names);
+        // Only the two symbols missing from the cache are resolved
+        assertEquals(3, provider.fNbResolved);
+        CacheStats stats = cache.getStats().minus(before);
+        assertEquals(1, stats.hitCount());
+        assertEquals(2, stats.missCount());
+        assertEquals(3, cache.size());
+
+        // Everything is in the cache now
+        assertArrayEquals(new String[] { "1:32@0", "2:16@1" }, cache.resolveAll(Arrays.asList(new SymbolRequest(1, 10, 32), new SymbolRequest(2, SECOND, 16))));
+        assertEquals(3, provider.fNbResolved);
+        assertEquals(3, cache.getStats().minus(before).hitCount());
+    }
+
+    /**
+     * Test that the cache of a trace is removed when the trace is closed
+     */
+    @Test
+    public void testTraceClosed() {
+        SymbolCache cache = SymbolCache.getInstance(getTrace());
+        assertSame(cache, SymbolCache.getInstance(getTrace()));
+        new SymbolCache.TraceClosedListener().traceClosed(new TmfTraceClosedSignal(this, getTrace()));
+        assertNotSame(cache, SymbolCache.getInstance(getTrace()));
+    }
+}
@@ -130,11 +130,23 @@ public class CallGraphAnalysisStub extends CallGraphAnalysis {
      * @return The return value of the iteration
      */
     public boolean iterate() {
+        return iterate(true);
+    }
+
+    /**
+     * Will trigger the iteration over the callstack series, iterating over
+     * its call stacks one after the other or concurrently
+     *
+     * @param parallel
+     *            Whether to iterate over the call stacks concurrently
+     * @return The return value of the iteration
+     */
+    public boolean iterate(boolean parallel) {
         CallStackSeries callStackSeries = fCsProvider.getCallStackSeries();
         if (callStackSeries == null) {
             throw new NullPointerException();
         }
-        return iterateOverCallstackSerie(callStackSeries, ModelManager.getModelFor(""), getCallGraph(), 0, Long.MAX_VALUE, new NullProgressMonitor());
+        return iterateOverCallstackSerie(callStackSeries, ModelManager.getModelFor(""), getCallGraph(), 0, Long.MAX_VALUE, new NullProgressMonitor(), parallel);
     }
 
     @Override
@@ -11,14 +11,21 @@
 
 package org.eclipse.tracecompass.incubator.callstack.core.flamechart;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.function.Consumer;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.model.HostThread;
 import org.eclipse.tracecompass.incubator.analysis.core.concepts.ProcessStatusInterval;
@@ -51,6 +58,11 @@ import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 @Deprecated(since="0.10.0", forRemoval=true)
 public class CallStack {
 
+    /* The number of windows the iteration over the callstack starts with */
+    private static final long INITIAL_WINDOW_COUNT = 16;
+    /* The number of intervals above which the windows of the iteration are shortened */
+    private static final int MAX_WINDOW_INTERVALS = 10000;
+
     private final @Nullable ICallStackElement fSymbolKeyElement;
     private final @Nullable IThreadIdProvider fThreadIdProvider;
     private final ITmfStateSystem fStateSystem;
@@ -300,9 +312,135 @@ public class CallStack {
      *            The end time of the iteration
      * @param consumer
      *            The consumer to consume the function calls
+     * @see #iterateOverCallStack(long, long, IHostModel, IProgressMonitor,
+     *      Consumer)
      */
     public void iterateOverCallStack(long startTime, long endTime, Consumer<ICalledFunction> consumer) {
-        // TODO Do we need this? If so, implement me!
+        iterateOverCallStack(startTime, endTime, null, new NullProgressMonitor(), consumer);
+    }
+
+    /**
+     * Iterate over the callstack in a depth-first manner. The intervals of all
+     * the depths are read with 2D queries of the state system over
+     * consecutive time windows, instead of querying the next function of each
+     * depth one at a time. The intervals of a window are taken in time order
+     * from a priority queue and the nesting of the calls is rebuilt with a
+     * stack, which keeps only the calls currently open. The duration of the
+     * windows adapts to the density of the calls, so that only a bounded
+     * number of intervals is kept in memory at once.
+     *
+     * The function calls are consumed in post-order: a call is consumed after
+     * all its children, which are themselves consumed in time order. As with
+     * {@link #getNextFunction(long, int, ICalledFunction, IHostModel, long, long)},
+     * the calls are truncated to the requested time range and to their parent,
+     * and a call at some depth without a parent call at the previous depth is
+     * ignored.
+     *
+     * @param startTime
+     *            The start time of the iteration
+     * @param endTime
+     *            The end time of the iteration
+     * @param model
+     *            The operating system model to retrieve extra information for
+     *            the function calls. If <code>null</code>, the model of the host
+     *            of each call is used.
+     * @param monitor
+     *            The progress monitor to cancel the iteration
+     * @param consumer
+     *            The consumer to consume the function calls
+     * @return <code>false</code> if the iteration was cancelled,
+     *         <code>true</code> otherwise
+     */
+    public boolean iterateOverCallStack(long startTime, long endTime, @Nullable IHostModel model, IProgressMonitor monitor, Consumer<ICalledFunction> consumer) {
+        long start = Math.max(fStateSystem.getStartTime(), startTime);
+        long end = Math.min(fStateSystem.getCurrentEndTime(), endTime);
+        if (fQuarks.isEmpty() || start > end) {
+            return true;
+        }
+        Map<Integer, Integer> depths = new HashMap<>();
+        for (int i = 0; i < fQuarks.size(); i++) {
+            depths.put(fQuarks.get(i), i + 1);
+        }
+        // A parent starts before or with its children
+        PriorityQueue<ITmfStateInterval> intervals = new PriorityQueue<>(Comparator.comparingLong(ITmfStateInterval::getStartTime)
+                .thenComparingInt(interval -> Objects.requireNonNull(depths.get(interval.getAttribute()))));
+        // The calls currently open, the size of the stack is the depth of its head
+        Deque<ICalledFunction> stack = new ArrayDeque<>();
+        long windowDuration = Math.max(1, (end - start) / INITIAL_WINDOW_COUNT);
+        long windowStart = start;
+        while (windowStart <= end) {
+            long windowEnd = (end - windowStart < windowDuration) ? end : windowStart + windowDuration - 1;
+            try {
+                for (ITmfStateInterval interval : fStateSystem.query2D(depths.keySet(), windowStart, windowEnd)) {
+                    // The intervals starting before the window were read with the previous one
+                    if (!interval.getStateValue().isNull() && interval.getStartTime() < endTime
+                            && (interval.getStartTime() >= windowStart || windowStart == start)) {
+                        intervals.add(interval);
+                    }
+                }
+            } catch (StateSystemDisposedException e) {
+                return true;
+            }
+            if (monitor.isCanceled()) {
+                return false;
+            }
+            int count = intervals.size();
+            ITmfStateInterval interval = intervals.poll();
+            while (interval != null) {
+                if (!pushCall(interval, depths, stack, startTime, endTime, model, monitor, consumer)) {
+                    return false;
+                }
+                interval = intervals.poll();
+            }
+            if (count > MAX_WINDOW_INTERVALS) {
+                windowDuration = Math.max(1, windowDuration / 2);
+            } else if (count < MAX_WINDOW_INTERVALS / 4 && windowDuration < Long.MAX_VALUE / 2) {
+                windowDuration *= 2;
+            }
+            if (windowEnd == end) {
+                break;
+            }
+            windowStart = windowEnd + 1;
+        }
+        while (!stack.isEmpty()) {
+            consumer.accept(stack.pop());
+        }
+        return true;
+    }
+
+    /**
+     * Consume the calls that end before an interval, then push the call of
+     * this interval on the stack if it has a parent call at the previous depth
+     *
+     * @return <code>false</code> if the iteration was cancelled
+     */
+    private boolean pushCall(ITmfStateInterval interval, Map<Integer, Integer> depths, Deque<ICalledFunction> stack, long startTime, long endTime, @Nullable IHostModel model, IProgressMonitor monitor, Consumer<ICalledFunction> consumer) {
+        int depth = Objects.requireNonNull(depths.get(interval.getAttribute()));
+        long intervalStart = interval.getStartTime();
+        while (stack.size() >= depth) {
+            consumer.accept(stack.pop());
+        }
+        ICalledFunction head = stack.peek();
+        while (head != null && head.getEnd() <= intervalStart) {
+            consumer.accept(stack.pop());
+            head = stack.peek();
+        }
+        if (stack.size() != depth - 1) {
+            // No parent call at the previous depth
+            return true;
+        }
+        ICalledFunction parent = head;
+        long callStart = Math.max(parent == null ? startTime : parent.getStart(), intervalStart);
+        long callEnd = Math.min(parent == null ? endTime : parent.getEnd(), interval.getEndTime() + 1);
+        if (interval.getEndTime() < callStart) {
+            return true;
+        }
+        if (parent == null && monitor.isCanceled()) {
+            return false;
+        }
+        stack.push(CalledFunctionFactory.create(callStart, callEnd, interval.getValue(), getSymbolKeyAt(intervalStart), getThreadId(intervalStart), parent,
+                model != null ? model : ModelManager.getModelFor(getHostId(intervalStart))));
+        return true;
     }
 
     /**
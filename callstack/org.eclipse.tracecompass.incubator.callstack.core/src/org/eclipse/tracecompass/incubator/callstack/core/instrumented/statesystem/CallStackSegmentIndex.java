@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.callstack.core.instrumented.statesystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+
+/**
+ * Immutable in-memory interval tree of the function segments of a call stack
+ * series. The segments are kept in an array sorted by start time, which is
+ * used as an implicit balanced tree: the middle of each sub-range of the array
+ * is the root of that sub-range, and the maximum end time of each sub-range is
+ * stored at the index of its root. A query visits only the sub-ranges that can
+ * contain intersecting segments, and returns them sorted by start time.
+ */
+final class CallStackSegmentIndex {
+
+    private static final Comparator<ISegment> START_END_COMPARATOR = Comparator.comparingLong(ISegment::getStart).thenComparingLong(ISegment::getEnd);
+
+    private final ISegment[] fSegments;
+    private final long[] fStarts;
+    private final long[] fEnds;
+    /** The maximum end time of the sub-range rooted at each index */
+    private final long[] fMaxEnds;
+
+    /**
+     * Constructor
+     *
+     * @param segments
+     *            The segments to index, this list will be sorted
+     */
+    public CallStackSegmentIndex(List<ISegment> segments) {
+        segments.sort(START_END_COMPARATOR);
+        int size = segments.size();
+        fSegments = segments.toArray(new ISegment[size]);
+        fStarts = new long[size];
+        fEnds = new long[size];
+        for (int i = 0; i < size; i++) {
+            fStarts[i] = fSegments[i].getStart();
+            fEnds[i] = fSegments[i].getEnd();
+        }
+        fMaxEnds = new long[size];
+        computeMaxEnds(0, size);
+    }
+
+    private long computeMaxEnds(int low, int high) {
+        if (low >= high) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (low + high) >>> 1;
+        long maxEnd = Math.max(fEnds[mid], Math.max(computeMaxEnds(low, mid), computeMaxEnds(mid + 1, high)));
+        fMaxEnds[mid] = maxEnd;
+        return maxEnd;
+    }
+
+    /**
+     * Get the number of segments in this index
+     *
+     * @return The number of segments
+     */
+    public int size() {
+        return fSegments.length;
+    }
+
+    /**
+     * Get all the segments, sorted by start time
+     *
+     * @return The segments
+     */
+    public List<ISegment> getSegments() {
+        return Collections.unmodifiableList(Arrays.asList(fSegments));
+    }
+
+    /**
+     * Get the segments that intersect a time range
+     *
+     * @param start
+     *            The start of the range
+     * @param end
+     *            The end of the range
+     * @return The intersecting segments, sorted by start time
+     */
+    public List<ISegment> getIntersectingElements(long start, long end) {
+        if (start > end) {
+            return Collections.emptyList();
+        }
+        List<ISegment> result = new ArrayList<>();
+        collect(0, fSegments.length, start, end, result);
+        return result;
+    }
+
+    private void collect(int low, int high, long start, long end, List<ISegment> result) {
+        if (low >= high) {
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        if (fMaxEnds[mid] < start) {
+            // All the segments of this sub-range end before the range
+            return;
+        }
+        collect(low, mid, start, end, result);
+        if (fStarts[mid] > end) {
+            // This segment and the ones after it start after the range
+            return;
+        }
+        if (fEnds[mid] >= start) {
+            result.add(fSegments[mid]);
+        }
+        collect(mid + 1, high, start, end, result);
+    }
+}
@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.Objects;
 
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.model.HostThread;
@@ -419,6 +420,7 @@ public class CallStackSeries implements ISegmentStore<ISegment> {
     private final IHostIdResolver fHostResolver;
     private final ITmfStateSystem fStateSystem;
     private final Map<Integer, ICallStackElement> fRootElements = new HashMap<>();
+    private volatile @Nullable CallStackSegmentIndex fSegmentIndex = null;
 
     /**
      * Constructor
@@ -545,13 +547,51 @@ public class CallStackSeries implements ISegmentStore<ISegment> {
         return list;
     }
 
+    /**
+     * Read all the function segments of this series once and keep them in
+     * memory in an interval tree, so that the segment store queries do not
+     * need to read the state system anymore. It should be called once the
+     * state system is completely built, as the segments added to it afterwards
+     * would not be in the tree.
+     *
+     * @param monitor
+     *            The progress monitor
+     * @return Whether the segments were materialized, <code>false</code> if
+     *         the state system is not built yet or the monitor was cancelled
+     */
+    public boolean materialize(IProgressMonitor monitor) {
+        if (fSegmentIndex != null) {
+            return true;
+        }
+        if (!fStateSystem.waitUntilBuilt(0)) {
+            return false;
+        }
+        List<ISegment> segments = new ArrayList<>();
+        for (ISegment segment : getStateSystemIntersectingElements(fStateSystem.getStartTime(), fStateSystem.getCurrentEndTime())) {
+            if (monitor.isCanceled()) {
+                return false;
+            }
+            segments.add(segment);
+        }
+        fSegmentIndex = new CallStackSegmentIndex(segments);
+        return true;
+    }
+
     @Override
     public int size() {
+        CallStackSegmentIndex index = fSegmentIndex;
+        if (index != null) {
+            return index.size();
+        }
         return Iterators.size(iterator());
     }
 
     @Override
     public boolean isEmpty() {
+        CallStackSegmentIndex index = fSegmentIndex;
+        if (index != null) {
+            return index.size() == 0;
+        }
         return !iterator().hasNext();
     }
 
@@ -568,6 +608,10 @@ public class CallStackSeries implements ISegmentStore<ISegment> {
 
     @Override
     public Iterator<ISegment> iterator() {
+        CallStackSegmentIndex index = fSegmentIndex;
+        if (index != null) {
+            return index.getSegments().iterator();
+        }
         ITmfStateSystem stateSystem = fRootGroup.getStateSystem();
         long start = stateSystem.getStartTime();
         long end = stateSystem.getCurrentEndTime();
@@ -654,6 +698,14 @@ public class CallStackSeries implements ISegmentStore<ISegment> {
 
     @Override
     public Iterable<ISegment> getIntersectingElements(long start, long end) {
+        CallStackSegmentIndex index = fSegmentIndex;
+        if (index != null) {
+            return index.getIntersectingElements(start, end);
+        }
+        return getStateSystemIntersectingElements(start, end);
+    }
+
+    private Iterable<ISegment> getStateSystemIntersectingElements(long start, long end) {
         ITmfStateSystem stateSystem = fRootGroup.getStateSystem();
         // Start can be Long.MIN_VALUE, we need to avoid underflow
         long startTime = Math.max(Math.max(1, start) - 1, stateSystem.getStartTime());
@@ -693,7 +745,7 @@ public class CallStackSeries implements ISegmentStore<ISegment> {
 
     @Override
     public void dispose() {
-        // Nothing to do
+        fSegmentIndex = null;
     }
 
 }
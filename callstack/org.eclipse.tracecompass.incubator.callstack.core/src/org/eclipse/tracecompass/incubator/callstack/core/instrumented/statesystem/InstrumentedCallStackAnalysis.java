@@ -17,6 +17,7 @@ import java.util.List;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.profiling.core.callstack.CallStackStateProvider;
@@ -55,6 +56,17 @@ import com.google.common.collect.ImmutableList;
  * default state provider {@link CallStackStateProvider} can be extended, and
  * implement how to retrieve function entry and exit and process/thread IDs.
  *
+ * The following system properties are read each time the analysis is
+ * executed, unless the corresponding setter was called:
+ * <ul>
+ * <li>{@value #PROPERTY_RANGE_BUCKETS}: the number of time buckets of the
+ * index of the call graphs of time ranges, see
+ * {@link #setRangeBucketCount(int)}</li>
+ * <li>{@value #PROPERTY_MATERIALIZE_SEGMENTS}: {@code true} to keep the
+ * segments of the callstack in memory, see
+ * {@link #materializeSegmentStore(boolean)}</li>
+ * </ul>
+ *
  * @author Matthew Khouzam
  * @author Geneviève Bastien
  */
@@ -69,6 +81,9 @@ public abstract class InstrumentedCallStackAnalysis extends TmfStateSystemAnalys
 
     private static final List<String[]> PATTERNS = ImmutableList.of(DEFAULT_PROCESSES_PATTERN, DEFAULT_THREADS_PATTERN);
 
+    private static final String PROPERTY_RANGE_BUCKETS = "callstack.rangeBuckets"; //$NON-NLS-1$
+    private static final String PROPERTY_MATERIALIZE_SEGMENTS = "callstack.materializeSegments"; //$NON-NLS-1$
+
     private @Nullable CallStackSeries fCallStacks;
 
     private final CallGraphAnalysis fCallGraph;
@@ -84,6 +99,20 @@ public abstract class InstrumentedCallStackAnalysis extends TmfStateSystemAnalys
      */
     private boolean fAutomaticCallgraph = true;
 
+    /**
+     * The number of time buckets of the call graph index, or null to use the
+     * value of the system property
+     */
+    private @Nullable Integer fNbRangeBuckets = null;
+
+    /**
+     * Whether the segments of the callstack are kept in memory once the
+     * analysis is completed, instead of being read from the state system at
+     * each segment store query, or null to use the value of the system
+     * property. Disabled by default, as all the calls are then kept in memory.
+     */
+    private @Nullable Boolean fMaterializeSegments = null;
+
     /**
      * Abstract constructor (should only be called via the sub-classes'
      * constructors.
@@ -147,10 +176,18 @@ public abstract class InstrumentedCallStackAnalysis extends TmfStateSystemAnalys
     @Override
     protected boolean executeAnalysis(@Nullable IProgressMonitor monitor) {
         fCallGraph.setId(getId());
+        if (fNbRangeBuckets == null) {
+            fCallGraph.setRangeBucketCount(Integer.getInteger(PROPERTY_RANGE_BUCKETS, 0));
+        }
         boolean ret = super.executeAnalysis(monitor);
         if (!ret) {
             return ret;
         }
+        Boolean materialize = fMaterializeSegments;
+        CallStackSeries series = getCallStackSeries();
+        if (series != null && (materialize != null ? materialize : Boolean.getBoolean(PROPERTY_MATERIALIZE_SEGMENTS))) {
+            series.materialize(monitor == null ? new NullProgressMonitor() : monitor);
+        }
         ISegmentStore<ISegment> segmentStore = getSegmentStore();
         if (segmentStore != null) {
             sendUpdate(segmentStore);
@@ -329,6 +366,39 @@ public abstract class InstrumentedCallStackAnalysis extends TmfStateSystemAnalys
         fAutomaticCallgraph = trigger;
     }
 
+    /**
+     * Set the number of time buckets of the index used to compute the call
+     * graphs of time ranges, like the call graph of a selection. The call
+     * graph of each bucket is computed and saved once, then the call graph of
+     * a range only computes the parts of the range that do not cover a full
+     * bucket. This needs to be set before the call graph is executed, and
+     * overrides the system property {@value #PROPERTY_RANGE_BUCKETS}.
+     *
+     * @param nbBuckets
+     *            The number of buckets, or 0 to compute the call graph of
+     *            each range from the state system, the default
+     */
+    public void setRangeBucketCount(int nbBuckets) {
+        fNbRangeBuckets = nbBuckets;
+        fCallGraph.setRangeBucketCount(nbBuckets);
+    }
+
+    /**
+     * Set whether the segments of the callstack should be kept in memory once
+     * the callstack is built. The segment store queries are then answered from
+     * memory instead of querying the state system each time, at the cost of
+     * keeping all the function calls in memory. This needs to be set before
+     * the analysis is executed, and overrides the system property
+     * {@value #PROPERTY_MATERIALIZE_SEGMENTS}.
+     *
+     * @param materialize
+     *            {@code true} to keep the segments in memory, {@code false} to
+     *            read them from the state system at each query, the default
+     */
+    public void materializeSegmentStore(boolean materialize) {
+        fMaterializeSegments = materialize;
+    }
+
     /**
      * Get the quarks to query to get the Edges in the call stack
      *
@@ -28,14 +28,14 @@ import org.eclipse.tracecompass.incubator.callstack.core.flamechart.IEventCallSt
 import org.eclipse.tracecompass.incubator.callstack.core.symbol.CallStackSymbolFactory;
 import org.eclipse.tracecompass.incubator.internal.callstack.core.Activator;
 import org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph.Messages;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.symbol.ResolvableSymbol;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.symbol.SymbolCache;
 import org.eclipse.tracecompass.tmf.core.analysis.TmfAbstractAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
-import org.eclipse.tracecompass.tmf.core.symbols.ISymbolProvider;
-import org.eclipse.tracecompass.tmf.core.symbols.SymbolProviderManager;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
@@ -56,7 +56,6 @@ public abstract class ProfilingCallGraphAnalysisModule extends TmfAbstractAnalys
     private final Set<ICallStackElement> fRootElements = new HashSet<>();
 
     private @Nullable CallGraph fFullRangeCallGraph;
-    private @Nullable Collection<ISymbolProvider> fSymbolProviders = null;
 
     /**
      * Get the root elements from this call graph hierarchy
@@ -107,16 +106,17 @@ public abstract class ProfilingCallGraphAnalysisModule extends TmfAbstractAnalys
 
     @Override
     public @NonNull String toDisplayString(@NonNull AggregatedCallSite callsite) {
-        Collection<ISymbolProvider> symbolProviders = fSymbolProviders;
-        if (symbolProviders == null) {
-            ITmfTrace trace = getTrace();
-            if (trace == null) {
-                return String.valueOf(callsite.getObject());
-            }
-            symbolProviders = SymbolProviderManager.getInstance().getSymbolProviders(trace);
-            fSymbolProviders  = symbolProviders;
+        ITmfTrace trace = getTrace();
+        if (trace == null) {
+            return String.valueOf(callsite.getObject());
+        }
+        SymbolCache symbolCache = SymbolCache.getInstance(trace);
+        ICallStackSymbol symbol = callsite.getObject();
+        if (symbol instanceof ResolvableSymbol) {
+            ResolvableSymbol resolvable = (ResolvableSymbol) symbol;
+            return symbolCache.resolve(resolvable.getPid(), resolvable.getTimestamp(), resolvable.getAddress());
         }
-        return callsite.getObject().resolve(symbolProviders);
+        return symbol.resolve(symbolCache.getSymbolProviders());
     }
 
     @Override
@@ -13,6 +13,7 @@ package org.eclipse.tracecompass.incubator.internal.callstack.core;
 
 import org.eclipse.tracecompass.common.core.TraceCompassActivator;
 import org.eclipse.tracecompass.incubator.callstack.core.base.EdgeStateValue;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.symbol.SymbolCache;
 import org.eclipse.tracecompass.internal.provisional.statesystem.core.statevalue.CustomStateValue;
 
 /**
@@ -42,10 +43,12 @@ public class Activator extends TraceCompassActivator {
     @Override
     protected void startActions() {
         CustomStateValue.registerCustomFactory(EdgeStateValue.CUSTOM_TYPE_ID, EdgeStateValue.EDGE_STATE_VALUE_FACTORY);
+        SymbolCache.init();
     }
 
     @Override
     protected void stopActions() {
+        SymbolCache.dispose();
     }
 
 }
@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.callstack.core.flamegraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.WeightedTree;
+
+/**
+ * The boxes of the flame graph of one element, laid out in a single pass over
+ * its weighted trees. The trees are placed side by side, starting at 0, and
+ * each child starts where its previous sibling ends, at the next depth.
+ *
+ * The layout has one row per depth, followed by one row for each extra data
+ * set. The boxes are kept in primitive arrays: their row, start, width and the
+ * index of their tree. The boxes of a row are sorted by start time and do not
+ * overlap, so the box at a time is found by binary search, and the states of a
+ * row are queried only at the requested times, which skips the boxes narrower
+ * than the resolution of the request.
+ *
+ * The extra data of a tree is laid out from the start of the tree, and a box
+ * of an extra data row lasts until the next one starts.
+ *
+ * @param <N>
+ *            The type of objects represented by each node in the tree
+ */
+final class FlameGraphLayout<@NonNull N> {
+
+    /**
+     * Consumes the states of a row
+     *
+     * @param <N>
+     *            The type of objects represented by each node in the tree
+     */
+    @FunctionalInterface
+    interface IStateConsumer<@NonNull N> {
+        /**
+         * Consume a state
+         *
+         * @param start
+         *            The start of the state
+         * @param duration
+         *            The duration of the state
+         * @param tree
+         *            The tree of the box, or <code>null</code> if there is no
+         *            box at this time
+         */
+        void accept(long start, long duration, @Nullable WeightedTree<N> tree);
+    }
+
+    private final int fMaxDepth;
+    private final boolean[] fHasExtraData;
+    private final long fEndTime;
+    private final List<WeightedTree<N>> fTrees;
+    private final long[] fStarts;
+    private final long[] fWidths;
+    private final int[] fTreeIndexes;
+    /** The index of the first box of each row, the boxes are sorted by row */
+    private final int[] fRowOffsets;
+
+    private FlameGraphLayout(Builder<N> builder, int nbExtraSets) {
+        fMaxDepth = builder.fMaxDepth;
+        fHasExtraData = builder.fHasExtraData;
+        fEndTime = builder.fEnd;
+        fTrees = builder.fTrees;
+        int nbRows = fMaxDepth + nbExtraSets;
+
+        // Extra data boxes last until the next change in their row
+        int nbExtraBoxes = 0;
+        long[][] extraTimes = new long[nbExtraSets][];
+        int[][] extraTrees = new int[nbExtraSets][];
+        for (int set = 0; set < nbExtraSets; set++) {
+            int count = builder.fExtraCounts[set];
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            // Stable sort, so that the last one added at a time prevails
+            long[] times = builder.fExtraTimes[set];
+            Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+            long[] setTimes = new long[count];
+            int[] setTrees = new int[count];
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                long time = times[order[i]];
+                if (size > 0 && setTimes[size - 1] == time) {
+                    size--;
+                }
+                if (time >= fEndTime) {
+                    break;
+                }
+                setTimes[size] = time;
+                setTrees[size] = builder.fExtraTrees[set][order[i]];
+                size++;
+            }
+            extraTimes[set] = Arrays.copyOf(setTimes, size);
+            extraTrees[set] = Arrays.copyOf(setTrees, size);
+            nbExtraBoxes += size;
+        }
+
+        // Sort the boxes by row, the boxes of a row are already sorted by time
+        int nbBoxes = builder.fSize + nbExtraBoxes;
+        fStarts = new long[nbBoxes];
+        fWidths = new long[nbBoxes];
+        fTreeIndexes = new int[nbBoxes];
+        fRowOffsets = new int[nbRows + 1];
+        for (int i = 0; i < builder.fSize; i++) {
+            fRowOffsets[builder.fDepths[i] + 1]++;
+        }
+        for (int set = 0; set < nbExtraSets; set++) {
+            fRowOffsets[fMaxDepth + set + 1] = extraTimes[set].length;
+        }
+        for (int row = 0; row < nbRows; row++) {
+            fRowOffsets[row + 1] += fRowOffsets[row];
+        }
+        int[] positions = Arrays.copyOf(fRowOffsets, nbRows);
+        for (int i = 0; i < builder.fSize; i++) {
+            int position = positions[builder.fDepths[i]]++;
+            fStarts[position] = builder.fStarts[i];
+            fWidths[position] = builder.fWidths[i];
+            fTreeIndexes[position] = builder.fTreeIndexes[i];
+        }
+        for (int set = 0; set < nbExtraSets; set++) {
+            int position = fRowOffsets[fMaxDepth + set];
+            long[] times = extraTimes[set];
+            for (int i = 0; i < times.length; i++) {
+                fStarts[position + i] = times[i];
+                fWidths[position + i] = (i + 1 < times.length ? times[i + 1] : fEndTime) - times[i];
+                fTreeIndexes[position + i] = extraTrees[set][i];
+            }
+        }
+    }
+
+    /**
+     * Lay out the flame graph of weighted trees
+     *
+     * @param rootTrees
+     *            The root trees of the element
+     * @param comparator
+     *            The comparator to order the trees that have the same parent
+     * @param nbExtraSets
+     *            The number of extra data sets of the trees
+     * @return The layout
+     */
+    public static <@NonNull N> FlameGraphLayout<N> create(Collection<WeightedTree<N>> rootTrees, Comparator<WeightedTree<N>> comparator, int nbExtraSets) {
+        Builder<N> builder = new Builder<>(nbExtraSets);
+        List<WeightedTree<N>> roots = new ArrayList<>(rootTrees);
+        roots.sort(comparator);
+        long start = 0;
+        for (WeightedTree<N> root : roots) {
+            builder.add(root, 0, start, comparator, nbExtraSets);
+            start += root.getWeight();
+        }
+        builder.fEnd = start;
+        return new FlameGraphLayout<>(builder, nbExtraSets);
+    }
+
+    /**
+     * Get the end time of this layout, the sum of the weights of the root trees
+     *
+     * @return The end time
+     */
+    public long getEndTime() {
+        return fEndTime;
+    }
+
+    /**
+     * Get the number of depths of the trees
+     *
+     * @return The maximum depth
+     */
+    public int getMaxDepth() {
+        return fMaxDepth;
+    }
+
+    /**
+     * Get the row of an extra data set
+     *
+     * @param set
+     *            The index of the extra data set
+     * @return The row, or <code>-1</code> if no tree has extra data for this
+     *         set
+     */
+    public int getExtraDataRow(int set) {
+        return fHasExtraData[set] ? fMaxDepth + set : -1;
+    }
+
+    /**
+     * Get the tree of the box of a row at a time
+     *
+     * @param row
+     *            The row
+     * @param time
+     *            The time
+     * @return The tree, or <code>null</code> if there is no box at this time
+     */
+    public @Nullable WeightedTree<N> getTreeAt(int row, long time) {
+        int index = findBox(row, time);
+        if (index < fRowOffsets[row] || time >= fStarts[index] + fWidths[index]) {
+            return null;
+        }
+        return fTrees.get(fTreeIndexes[index]);
+    }
+
+    /**
+     * Get the states of a row that intersect the requested times. The states
+     * cover the range from 0 to the end time, the times between the boxes
+     * are returned as states without a tree.
+     *
+     * @param row
+     *            The row
+     * @param times
+     *            The requested times
+     * @param consumer
+     *            The consumer of the states, called in time order
+     */
+    public void queryStates(int row, Collection<Long> times, IStateConsumer<N> consumer) {
+        long[] sortedTimes = times.stream().mapToLong(Long::longValue).filter(t -> t >= 0 && t <= fEndTime).sorted().toArray();
+        int first = fRowOffsets[row];
+        int last = fRowOffsets[row + 1];
+        long lastStart = -1;
+        for (long time : sortedTimes) {
+            int index = findBox(row, time);
+            if (index >= first && time < fStarts[index] + fWidths[index]) {
+                if (fStarts[index] != lastStart) {
+                    lastStart = fStarts[index];
+                    consumer.accept(fStarts[index], fWidths[index], fTrees.get(fTreeIndexes[index]));
+                }
+                continue;
+            }
+            // The time is between two boxes
+            long gapStart = index >= first ? fStarts[index] + fWidths[index] : 0;
+            long gapEnd = index + 1 < last ? fStarts[index + 1] : fEndTime;
+            if (gapStart < gapEnd && gapStart != lastStart) {
+                lastStart = gapStart;
+                consumer.accept(gapStart, gapEnd - gapStart, null);
+            }
+        }
+    }
+
+    /**
+     * Find the last box of a row that starts at or before a time
+     *
+     * @return The index of the box, smaller than the offset of the row if all
+     *         boxes start after the time
+     */
+    private int findBox(int row, long time) {
+        int low = fRowOffsets[row];
+        int high = fRowOffsets[row + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (fStarts[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Accumulates the boxes in the order of a depth-first traversal, so the
+     * boxes of each depth are in time order
+     */
+    private static final class Builder<@NonNull N> {
+        private final List<WeightedTree<N>> fTrees = new ArrayList<>();
+        private int[] fDepths = new int[16];
+        private long[] fStarts = new long[16];
+        private long[] fWidths = new long[16];
+        private int[] fTreeIndexes = new int[16];
+        private int fSize = 0;
+        private int fMaxDepth = 0;
+        private long fEnd = 0;
+
+        private final boolean[] fHasExtraData;
+        private final long[][] fExtraTimes;
+        private final int[][] fExtraTrees;
+        private final int[] fExtraCounts;
+
+        public Builder(int nbExtraSets) {
+            fHasExtraData = new boolean[nbExtraSets];
+            fExtraTimes = new long[nbExtraSets][16];
+            fExtraTrees = new int[nbExtraSets][16];
+            fExtraCounts = new int[nbExtraSets];
+        }
+
+        public void add(WeightedTree<N> tree, int depth, long start, Comparator<WeightedTree<N>> comparator, int nbExtraSets) {
+            long width = tree.getWeight();
+            if (width <= 0) {
+                // An empty box is not visible
+                return;
+            }
+            if (fSize == fStarts.length) {
+                int capacity = fSize * 2;
+                fDepths = Arrays.copyOf(fDepths, capacity);
+                fStarts = Arrays.copyOf(fStarts, capacity);
+                fWidths = Arrays.copyOf(fWidths, capacity);
+                fTreeIndexes = Arrays.copyOf(fTreeIndexes, capacity);
+            }
+            int treeIndex = fTrees.size();
+            fTrees.add(tree);
+            fDepths[fSize] = depth;
+            fStarts[fSize] = start;
+            fWidths[fSize] = width;
+            fTreeIndexes[fSize] = treeIndex;
+            fSize++;
+            fMaxDepth = Math.max(fMaxDepth, depth + 1);
+
+            List<WeightedTree<N>> children = new ArrayList<>(tree.getChildren());
+            children.sort(comparator);
+            long childStart = start;
+            for (WeightedTree<N> child : children) {
+                add(child, depth + 1, childStart, comparator, nbExtraSets);
+                childStart += child.getWeight();
+            }
+
+            for (int set = 0; set < nbExtraSets; set++) {
+                Collection<WeightedTree<N>> extraTrees = tree.getExtraDataTrees(set);
+                if (extraTrees.isEmpty()) {
+                    continue;
+                }
+                fHasExtraData[set] = true;
+                long extraStart = start;
+                for (WeightedTree<N> extraTree : extraTrees) {
+                    int count = fExtraCounts[set];
+                    if (count == fExtraTimes[set].length) {
+                        fExtraTimes[set] = Arrays.copyOf(fExtraTimes[set], count * 2);
+                        fExtraTrees[set] = Arrays.copyOf(fExtraTrees[set], count * 2);
+                    }
+                    fExtraTimes[set][count] = extraStart;
+                    fExtraTrees[set][count] = fTrees.size();
+                    fTrees.add(extraTree);
+                    fExtraCounts[set] = count + 1;
+                    extraStart += extraTree.getWeight();
+                }
+            }
+        }
+    }
+}
@@ -70,6 +70,32 @@ public class AggregatedCalledFunction extends AggregatedCallSite {
         fProcessId = -1;
     }
 
+    /**
+     * Constructor of a function restored from a saved call graph. Its
+     * statistics are to be restored by the caller and its children added with
+     * {@link #addChild(WeightedTree)}.
+     *
+     * @param symbol
+     *            The symbol of the function
+     * @param processId
+     *            The process ID
+     * @param duration
+     *            The total duration of the calls
+     * @param selfTime
+     *            The total self time of the calls
+     * @param cpuTime
+     *            The total CPU time of the calls, or
+     *            {@link IHostModel#TIME_UNKNOWN}
+     */
+    AggregatedCalledFunction(ICallStackSymbol symbol, int processId, long duration, long selfTime, long cpuTime) {
+        super(symbol, 0);
+        fStatistics = new AggregatedCalledFunctionStatistics();
+        fProcessId = processId;
+        fDuration = duration;
+        fSelfTime = selfTime;
+        fCpuTime = cpuTime;
+    }
+
     /**
      * copy constructor
      *
@@ -142,9 +168,26 @@ public class AggregatedCalledFunction extends AggregatedCallSite {
      *            The aggregated data of the callee
      */
     public synchronized void addChild(AbstractCalledFunction child, AggregatedCalledFunction aggregatedChild) {
+        addChild(child, aggregatedChild, true);
+    }
+
+    /**
+     * Add a new callee into the Callees list, like
+     * {@link #addChild(AbstractCalledFunction, AggregatedCalledFunction)},
+     * but possibly without counting it as a call
+     *
+     * @param child
+     *            The callee to add to this function
+     * @param aggregatedChild
+     *            The aggregated data of the callee
+     * @param isCall
+     *            Whether the callee is counted as a call, see
+     *            {@link #addFunctionCall(AbstractCalledFunction, boolean)}
+     */
+    public synchronized void addChild(AbstractCalledFunction child, AggregatedCalledFunction aggregatedChild, boolean isCall) {
         // Update the child's statistics with itself
         fSelfTime -= aggregatedChild.getDuration();
-        aggregatedChild.addFunctionCall(child);
+        aggregatedChild.addFunctionCall(child, isCall);
         super.addChild(aggregatedChild);
     }
 
@@ -158,13 +201,32 @@ public class AggregatedCalledFunction extends AggregatedCallSite {
      *            The function that was called
      */
     public synchronized void addFunctionCall(AbstractCalledFunction function) {
+        addFunctionCall(function, true);
+    }
+
+    /**
+     * Adds a function call to this aggregated called function data, like
+     * {@link #addFunctionCall(AbstractCalledFunction)}. A function that is
+     * not a call is the part of a call that was already counted in another
+     * call graph, for instance the rest of a call that started before the
+     * time range of this call graph: its durations are added, but it is not
+     * added to the statistics, so it does not count as a call.
+     *
+     * @param function
+     *            The function that was called
+     * @param isCall
+     *            Whether the function is counted as a call
+     */
+    public synchronized void addFunctionCall(AbstractCalledFunction function, boolean isCall) {
         // FIXME: Aren't the statistics enough? Do we really need duration, self
         // time and cpu time here?
         addToDuration(function.getLength());
         addToSelfTime(function.getSelfTime());
         addToCpuTime(function.getCpuTime());
         fProcessId = function.getProcessId();
-        getFunctionStatistics().update(function);
+        if (isCall) {
+            getFunctionStatistics().update(function);
+        }
     }
 
     /**
@@ -306,6 +368,19 @@ public class AggregatedCalledFunction extends AggregatedCallSite {
         status.update(interval);
     }
 
+    /**
+     * Add the time spent in a process status, restored from a saved call graph
+     *
+     * @param processStatus
+     *            The process status
+     * @param duration
+     *            The time spent in this status
+     */
+    void addKernelStatus(ProcessStatus processStatus, long duration) {
+        AggregatedThreadStatus status = fProcessStatuses.computeIfAbsent(processStatus, AggregatedThreadStatus::new);
+        status.addToWeight(duration);
+    }
+
     @Override
     public @NonNull Collection<@NonNull WeightedTree<@NonNull ICallStackSymbol>> getExtraDataTrees(int index) {
         if (index == 0) {
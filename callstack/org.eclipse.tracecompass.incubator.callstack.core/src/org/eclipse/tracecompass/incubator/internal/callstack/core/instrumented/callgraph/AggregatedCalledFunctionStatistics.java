@@ -12,7 +12,6 @@
 package org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph;
 
 import org.eclipse.tracecompass.analysis.timing.core.statistics.IStatistics;
-import org.eclipse.tracecompass.analysis.timing.core.statistics.Statistics;
 import org.eclipse.tracecompass.incubator.callstack.core.instrumented.ICalledFunction;
 
 /**
@@ -25,23 +24,23 @@ public class AggregatedCalledFunctionStatistics {
 
     // Duration statistics will be kept for all calls of the method, so we make
     // them on the called function themselves
-    private final IStatistics<ICalledFunction> fDurations;
+    private final CallStatistics fDurations;
     // Self time statistics are on aggregated called function because self times
     // are known only at the end, once the aggregation is over
-    private final IStatistics<ICalledFunction> fSelfTimes;
-    private final IStatistics<ICalledFunction> fCpuTimes;
+    private final CallStatistics fSelfTimes;
+    private final CallStatistics fCpuTimes;
     // FIXME: Should this class manage the number of calls, or the callsite?
     // Common info with sampling, so maybe callsite
-    private final IStatistics<ICalledFunction> fNbCalls;
+    private final CallStatistics fNbCalls;
 
     /**
      * Constructor
      */
     public AggregatedCalledFunctionStatistics() {
-        fDurations = new Statistics<>(f -> f.getLength());
-        fSelfTimes = new Statistics<>(f -> f.getSelfTime());
-        fCpuTimes = new Statistics<>(f -> f.getCpuTime());
-        fNbCalls = new Statistics<>(f -> f.getCpuTime());
+        fDurations = new CallStatistics(f -> f.getLength());
+        fSelfTimes = new CallStatistics(f -> f.getSelfTime());
+        fCpuTimes = new CallStatistics(f -> f.getCpuTime());
+        fNbCalls = new CallStatistics(f -> f.getCpuTime());
     }
 
     /**
@@ -11,11 +11,22 @@
 
 package org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -41,17 +52,23 @@ import org.eclipse.tracecompass.incubator.callstack.core.symbol.CallStackSymbolF
 import org.eclipse.tracecompass.incubator.internal.callstack.core.Activator;
 import org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.InstrumentedCallStackElement;
 import org.eclipse.tracecompass.incubator.internal.callstack.core.palette.FlameWithKernelPalette;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.symbol.ResolvableSymbol;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.symbol.SymbolCache;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.analysis.TmfAbstractAnalysisModule;
-import org.eclipse.tracecompass.tmf.core.symbols.ISymbolProvider;
-import org.eclipse.tracecompass.tmf.core.symbols.SymbolProviderManager;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 
@@ -94,6 +111,16 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
             new MetricType(SELF_TIME_TITLE, DataType.NANOSECONDS, null, true),
             new MetricType(CPU_TIME_TITLE, DataType.NANOSECONDS, null, true),
             new MetricType(NB_CALLS_TITLE, DataType.NUMBER, null, false));
+    /** Suffix of the supplementary file of the call graph of the full trace */
+    private static final String CALLGRAPH_FILE_SUFFIX = ".callgraph"; //$NON-NLS-1$
+    /** Maximum number of call stacks to iterate over concurrently */
+    private static final int MAX_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    /**
+     * Pool shared by all the call graph analyses to iterate over the call
+     * stacks, so that concurrent analyses do not use more threads than there
+     * are processors
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(MAX_THREADS);
 
     // ------------------------------------------------------------------------
     // Attributes
@@ -102,8 +129,10 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
     private final IFlameChartProvider fCsProvider;
     private final CallGraph fCallGraph = new CallGraph();
 
-    private @Nullable Collection<ISymbolProvider> fSymbolProviders = null;
-    private boolean fHasKernelStatuses = false;
+    private volatile boolean fHasKernelStatuses = false;
+    private boolean fSingleSweep = true;
+    private volatile int fNbRangeBuckets = 0;
+    private volatile @Nullable CallGraphBucketIndex fBucketIndex = null;
 
     // Keep a very small cache of selection callgraphs, to avoid having to
     // compute again
@@ -112,8 +141,16 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
             .build(new CacheLoader<TmfTimeRange, CallGraph>() {
                 @Override
                 public CallGraph load(TmfTimeRange range) {
+                    IProgressMonitor monitor = new NullProgressMonitor();
+                    CallGraphBucketIndex index = fBucketIndex;
+                    if (index != null) {
+                        CallGraph cg = index.getCallGraph(range.getStartTime().toNanos(), range.getEndTime().toNanos(), CallGraphAnalysis.this::executeForRange, monitor);
+                        if (cg != null) {
+                            return cg;
+                        }
+                    }
                     CallGraph cg = new CallGraph();
-                    executeForRange(cg, range, new NullProgressMonitor());
+                    executeForRange(cg, range, monitor);
                     return cg;
                 }
             }));
@@ -158,10 +195,177 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
 
     @Override
     protected boolean executeAnalysis(@Nullable IProgressMonitor monitor) {
-        return executeForRange(fCallGraph, TmfTimeRange.ETERNITY, monitor);
+        if (monitor == null) {
+            return false;
+        }
+        if (!loadCallGraph(monitor)) {
+            if (!executeForRange(fCallGraph, TmfTimeRange.ETERNITY, monitor)) {
+                return false;
+            }
+            saveCallGraph();
+        }
+        boolean success = buildBucketIndex(monitor);
+        monitor.done();
+        return success;
+    }
+
+    /**
+     * Get the file in which the call graph of the full trace is saved
+     */
+    private @Nullable Path getCallGraphFile() {
+        return getCallGraphFile(CALLGRAPH_FILE_SUFFIX);
+    }
+
+    /**
+     * Get the file in which the call graphs of the range buckets are saved,
+     * the layout of the buckets depends on their number
+     */
+    private @Nullable Path getBucketsFile(int nbBuckets) {
+        return getCallGraphFile(CALLGRAPH_FILE_SUFFIX + '.' + nbBuckets);
+    }
+
+    private @Nullable Path getCallGraphFile(String suffix) {
+        ITmfTrace trace = getTrace();
+        if (trace == null) {
+            return null;
+        }
+        return Paths.get(TmfTraceManager.getSupplementaryFileDir(trace), fCsProvider.getId() + suffix);
+    }
+
+    private static @Nullable ITmfStateSystem getStateSystem(CallStackSeries series) {
+        for (ICallStackElement element : series.getRootElements()) {
+            if (element instanceof InstrumentedCallStackElement) {
+                return ((InstrumentedCallStackElement) element).getStateSystem();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the call graph of the full trace from the supplementary files, if
+     * it was saved from the same state system as the current one
+     */
+    private boolean loadCallGraph(IProgressMonitor monitor) {
+        Path file = getCallGraphFile();
+        List<CallGraph> callgraphs = file == null ? null : readCallGraphs(file, monitor);
+        CallStackSeries series = fCsProvider.getCallStackSeries();
+        if (callgraphs == null || callgraphs.size() != 1 || series == null) {
+            return false;
+        }
+        CallGraph callgraph = callgraphs.get(0);
+        List<ICallStackElement> leaves = new ArrayList<>();
+        for (ICallStackElement element : series.getRootElements()) {
+            collectLeafElements(element, leaves);
+        }
+        for (ICallStackElement leaf : leaves) {
+            for (AggregatedCallSite callsite : callgraph.getCallingContextTree(leaf)) {
+                fCallGraph.addAggregatedCallSite(leaf, callsite);
+            }
+            if (leaf instanceof InstrumentedCallStackElement && ((InstrumentedCallStackElement) leaf).getCallStack().hasKernelStatuses()) {
+                fHasKernelStatuses = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Save the call graph of the full trace in the supplementary files, so
+     * that it does not have to be computed again when the trace is reopened
+     */
+    private void saveCallGraph() {
+        Path file = getCallGraphFile();
+        if (file != null) {
+            writeCallGraphs(Collections.singletonList(fCallGraph), file);
+        }
+    }
+
+    /**
+     * Read the call graphs of the range buckets from the supplementary files,
+     * or compute them and save them. The buckets are computed as part of the
+     * analysis, so that their computation can be cancelled like the one of
+     * the full call graph.
+     */
+    private boolean buildBucketIndex(IProgressMonitor monitor) {
+        int nbBuckets = fNbRangeBuckets;
+        ITmfTrace trace = getTrace();
+        if (nbBuckets <= 0 || trace == null) {
+            return true;
+        }
+        long start = trace.getStartTime().toNanos();
+        long end = trace.getEndTime().toNanos();
+        Path file = getBucketsFile(nbBuckets);
+        List<CallGraph> buckets = file == null ? null : readCallGraphs(file, monitor);
+        CallGraphBucketIndex index = buckets == null ? null : CallGraphBucketIndex.create(start, end, nbBuckets, buckets);
+        if (index == null) {
+            index = CallGraphBucketIndex.build(start, end, nbBuckets, this::executeForRange, monitor);
+            if (index == null) {
+                return false;
+            }
+            if (file != null) {
+                writeCallGraphs(index.getBuckets(), file);
+            }
+        }
+        // The number of buckets may have changed in the meantime
+        if (fNbRangeBuckets == nbBuckets) {
+            fBucketIndex = index;
+        }
+        return true;
+    }
+
+    /**
+     * Read call graphs from the supplementary files, if they were saved from
+     * the same state system as the current one
+     */
+    private @Nullable List<CallGraph> readCallGraphs(Path file, IProgressMonitor monitor) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        fCsProvider.schedule();
+        fCsProvider.waitForCompletion(monitor);
+        CallStackSeries series = fCsProvider.getCallStackSeries();
+        ITmfStateSystem stateSystem = series == null ? null : getStateSystem(series);
+        if (series == null || stateSystem == null || !stateSystem.waitUntilBuilt(0) || monitor.isCanceled()) {
+            return null;
+        }
+        IHostModel model = ModelManager.getModelFor(fCsProvider.getHostId());
+        try {
+            return CallGraphSerializer.read(file, stateSystem, series.getRootElements(), model);
+        } catch (IOException e) {
+            Activator.getInstance().logWarning("Cannot read the saved call graph " + file, e); //$NON-NLS-1$
+            return null;
+        }
+    }
+
+    private void writeCallGraphs(List<CallGraph> callgraphs, Path file) {
+        CallStackSeries series = fCsProvider.getCallStackSeries();
+        ITmfStateSystem stateSystem = series == null ? null : getStateSystem(series);
+        if (stateSystem == null || !stateSystem.waitUntilBuilt(0)) {
+            return;
+        }
+        try {
+            CallGraphSerializer.write(callgraphs, stateSystem, ModelManager.getModelFor(fCsProvider.getHostId()), file);
+        } catch (IOException e) {
+            Activator.getInstance().logWarning("Cannot save the call graph to " + file, e); //$NON-NLS-1$
+        }
+    }
+
+    private boolean executeForRange(CallGraph callgraph, long start, long end, boolean countOngoingCalls, IProgressMonitor monitor) {
+        return executeForRange(callgraph, new TmfTimeRange(TmfTimestamp.fromNanos(start), TmfTimestamp.fromNanos(end)), countOngoingCalls, monitor);
     }
 
     private boolean executeForRange(CallGraph callgraph, TmfTimeRange range, @Nullable IProgressMonitor monitor) {
+        return executeForRange(callgraph, range, true, monitor);
+    }
+
+    /**
+     * Fill a call graph with the calls of a time range
+     *
+     * @param countOngoingCalls
+     *            Whether the calls ongoing at the start of the range are
+     *            counted as calls. They are not when the call graph is merged
+     *            with the one of the previous range, where they were counted.
+     */
+    private boolean executeForRange(CallGraph callgraph, TmfTimeRange range, boolean countOngoingCalls, @Nullable IProgressMonitor monitor) {
         ITmfTrace trace = getTrace();
         if (monitor == null || trace == null) {
             return false;
@@ -186,7 +390,7 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
                 long time1 = range.getEndTime().toNanos();
                 long start = Math.min(time0, time1);
                 long end = Math.max(time0, time1);
-                if (!iterateOverCallstackSerie(callstack, model, callgraph, start, end, monitor)) {
+                if (!iterateOverCallstackSerie(callstack, model, callgraph, start, end, countOngoingCalls, true, monitor)) {
                     return false;
                 }
             }
@@ -198,7 +402,8 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
 
     /**
      * Iterate over a callstack series. It will do a depth-first search to create
-     * the callgraph
+     * the callgraph. The call stacks of the series are iterated over
+     * concurrently, so the host model needs to be thread-safe.
      *
      * @param callstackSerie
      *            The series to iterate over
@@ -216,29 +421,101 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
      */
     @VisibleForTesting
     protected boolean iterateOverCallstackSerie(CallStackSeries callstackSerie, IHostModel model, CallGraph callgraph, long start, long end, IProgressMonitor monitor) {
+        return iterateOverCallstackSerie(callstackSerie, model, callgraph, start, end, monitor, true);
+    }
+
+    /**
+     * Iterate over a callstack series, iterating over its call stacks one after
+     * the other or concurrently. Both give the same call graph.
+     *
+     * @param callstackSerie
+     *            The series to iterate over
+     * @param model
+     *            The model of the host on which this callstack was running
+     * @param callgraph
+     *            The callgraph to fill
+     * @param start
+     *            the start time of the request
+     * @param end
+     *            The end time of the request
+     * @param monitor
+     *            A progress monitor
+     * @param parallel
+     *            Whether to iterate over the call stacks concurrently
+     * @return Whether the series was successfully iterated over
+     */
+    @VisibleForTesting
+    protected boolean iterateOverCallstackSerie(CallStackSeries callstackSerie, IHostModel model, CallGraph callgraph, long start, long end, IProgressMonitor monitor, boolean parallel) {
+        return iterateOverCallstackSerie(callstackSerie, model, callgraph, start, end, true, parallel, monitor);
+    }
+
+    private boolean iterateOverCallstackSerie(CallStackSeries callstackSerie, IHostModel model, CallGraph callgraph, long start, long end, boolean countOngoingCalls, boolean parallel, IProgressMonitor monitor) {
         // The root elements are the same as the one from the callstack series
         Collection<ICallStackElement> rootElements = callstackSerie.getRootElements();
+        List<ICallStackElement> leaves = new ArrayList<>();
         for (ICallStackElement element : rootElements) {
-            if (monitor.isCanceled()) {
-                return false;
+            collectLeafElements(element, leaves);
+        }
+        if (!parallel || leaves.size() <= 1) {
+            for (ICallStackElement leaf : leaves) {
+                if (!iterateOverLeafElement(leaf, model, callgraph, start, end, countOngoingCalls, monitor)) {
+                    return false;
+                }
             }
-            iterateOverElement(element, model, callgraph, start, end, monitor);
+            return true;
+        }
+
+        /*
+         * Each leaf is an independent call stack, build the aggregated tree of
+         * each leaf in a call graph of its own concurrently, then add them to
+         * the call graph in the order of the leaves, so the result does not
+         * depend on the scheduling of the tasks.
+         */
+        List<Callable<@Nullable CallGraph>> tasks = new ArrayList<>();
+        for (ICallStackElement leaf : leaves) {
+            tasks.add(() -> {
+                CallGraph leafGraph = new CallGraph();
+                return iterateOverLeafElement(leaf, model, leafGraph, start, end, countOngoingCalls, monitor) ? leafGraph : null;
+            });
+        }
+        try {
+            List<Future<@Nullable CallGraph>> results = POOL.invokeAll(tasks);
+            for (int i = 0; i < leaves.size(); i++) {
+                CallGraph leafGraph = results.get(i).get();
+                if (leafGraph == null || monitor.isCanceled()) {
+                    return false;
+                }
+                ICallStackElement leaf = leaves.get(i);
+                for (AggregatedCallSite callsite : leafGraph.getCallingContextTree(leaf)) {
+                    callgraph.addAggregatedCallSite(leaf, callsite);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            Activator.getInstance().logError("Error building the call graph", cause); //$NON-NLS-1$
+            return false;
         }
         return true;
     }
 
-    private void iterateOverElement(ICallStackElement element, IHostModel model, CallGraph callgraph, long start, long end, IProgressMonitor monitor) {
+    private static void collectLeafElements(ICallStackElement element, List<ICallStackElement> leaves) {
         // Iterator over the children of the element until we reach the leaves
         if (element.isLeaf()) {
-            iterateOverLeafElement(element, model, callgraph, start, end, monitor);
+            leaves.add(element);
             return;
         }
         for (ICallStackElement child : element.getChildrenElements()) {
-            iterateOverElement(child, model, callgraph, start, end, monitor);
+            collectLeafElements(child, leaves);
         }
     }
 
-    private void iterateOverLeafElement(ICallStackElement element, IHostModel model, CallGraph callgraph, long start, long end, IProgressMonitor monitor) {
+    private boolean iterateOverLeafElement(ICallStackElement element, IHostModel model, CallGraph callgraph, long start, long end, boolean countOngoingCalls, IProgressMonitor monitor) {
         if (!(element instanceof InstrumentedCallStackElement)) {
             throw new IllegalStateException("Call Graph Analysis: The element does not have the right type"); //$NON-NLS-1$
         }
@@ -247,15 +524,24 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
 
         // If there is no children for this callstack, just return
         if (callStack.getMaxDepth() == 0) {
-            return;
+            return true;
+        }
+        if (callStack.hasKernelStatuses()) {
+            fHasKernelStatuses = true;
+        }
+        boolean[] ongoingDepths = countOngoingCalls ? new boolean[callStack.getMaxDepth() + 1] : getOngoingDepths(insElement, callStack, start);
+        if (fSingleSweep) {
+            return sweepLeafElement(element, callStack, model, callgraph, start, end, ongoingDepths, monitor);
         }
-        fHasKernelStatuses |= callStack.hasKernelStatuses();
         // Start with the first function
         AbstractCalledFunction nextFunction = (AbstractCalledFunction) callStack.getNextFunction(callStack.getStartTime(), 1, null, model, start, end);
         while (nextFunction != null) {
+            if (monitor.isCanceled()) {
+                return false;
+            }
             AggregatedCalledFunction aggregatedChild = createCallSite(CallStackSymbolFactory.createSymbol(nextFunction.getSymbol(), element, nextFunction.getStart()));
-            iterateOverCallstack(element, callStack, nextFunction, 2, aggregatedChild, model, start, end, monitor);
-            aggregatedChild.addFunctionCall(nextFunction);
+            iterateOverCallstack(element, callStack, nextFunction, 2, aggregatedChild, model, start, end, ongoingDepths, monitor);
+            aggregatedChild.addFunctionCall(nextFunction, isCall(nextFunction, 1, start, ongoingDepths));
             // Add the kernel statuses if available
             Iterable<ProcessStatusInterval> kernelStatuses = callStack.getKernelStatuses(nextFunction, Collections.emptyList());
             for (ProcessStatusInterval status : kernelStatuses) {
@@ -264,9 +550,109 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
             callgraph.addAggregatedCallSite(element, aggregatedChild);
             nextFunction = (AbstractCalledFunction) callStack.getNextFunction(nextFunction.getEnd(), 1, null, model, start, end);
         }
+        return true;
+    }
+
+    /**
+     * Build the call graph of a leaf from the function calls of its callstack
+     * consumed in post-order. The aggregated call site of a function is
+     * completed by the time the function is consumed, so it is added to the
+     * one of its parent, which is kept until the parent itself is consumed.
+     * The sampling data is added the same way as in
+     * {@link #iterateOverCallstack}.
+     */
+    private boolean sweepLeafElement(ICallStackElement element, CallStack callStack, IHostModel model, CallGraph callgraph, long start, long end, boolean[] ongoingDepths, IProgressMonitor monitor) {
+        int maxDepth = callStack.getMaxDepth();
+        Map<ICalledFunction, SweepFrame> frames = new IdentityHashMap<>();
+        return callStack.iterateOverCallStack(start, end, model, monitor, function -> {
+            SweepFrame frame = frames.remove(function);
+            if (frame == null) {
+                frame = new SweepFrame(element, function, start);
+            }
+            int threadId = function.getThreadId();
+            int depth = getDepth(function);
+            if (depth < maxDepth && threadId > 0) {
+                // Get the sampling to the end of the function
+                Collection<AggregatedCallSite> samplingData = model.getSamplingData(threadId, frame.fLastSampleEnd, function.getEnd() - frame.fLastSampleEnd);
+                samplingData.forEach(frame.fCallSite::addChild);
+            }
+            ICalledFunction parent = function.getParent();
+            if (parent == null) {
+                frame.fCallSite.addFunctionCall((AbstractCalledFunction) function, isCall(function, depth, start, ongoingDepths));
+                // Add the kernel statuses if available
+                Iterable<ProcessStatusInterval> kernelStatuses = callStack.getKernelStatuses(function, Collections.emptyList());
+                for (ProcessStatusInterval status : kernelStatuses) {
+                    frame.fCallSite.addKernelStatus(status);
+                }
+                callgraph.addAggregatedCallSite(element, frame.fCallSite);
+                return;
+            }
+            SweepFrame parentFrame = frames.computeIfAbsent(parent, p -> new SweepFrame(element, p, start));
+            int parentThreadId = parent.getThreadId();
+            if (parentThreadId > 0) {
+                // Add sampling data of the time between the previous call and this one
+                Collection<AggregatedCallSite> samplingData = model.getSamplingData(parentThreadId, parentFrame.fLastSampleEnd, function.getStart());
+                samplingData.forEach(parentFrame.fCallSite::addChild);
+                parentFrame.fLastSampleEnd = function.getEnd();
+            }
+            parentFrame.fCallSite.addChild((AbstractCalledFunction) function, frame.fCallSite, isCall(function, depth, start, ongoingDepths));
+        });
+    }
+
+    /**
+     * Get the depths of a callstack at which a call is ongoing at the start of
+     * a range, ie it started before the range. Those calls are clipped at the
+     * start of the range.
+     */
+    private static boolean[] getOngoingDepths(InstrumentedCallStackElement element, CallStack callStack, long start) {
+        boolean[] ongoingDepths = new boolean[callStack.getMaxDepth() + 1];
+        ITmfStateSystem stateSystem = element.getStateSystem();
+        if (start <= stateSystem.getStartTime() || start > stateSystem.getCurrentEndTime()) {
+            return ongoingDepths;
+        }
+        try {
+            for (int depth = 1; depth <= callStack.getMaxDepth(); depth++) {
+                ITmfStateInterval interval = stateSystem.querySingleState(start, callStack.getQuarkAtDepth(depth));
+                ongoingDepths[depth] = !interval.getStateValue().isNull() && interval.getStartTime() < start;
+            }
+        } catch (StateSystemDisposedException e) {
+            // The calls will be counted
+        }
+        return ongoingDepths;
+    }
+
+    /**
+     * Get whether a function is counted as a call, it is not if it is the
+     * part of an ongoing call clipped at the start of the range
+     */
+    private static boolean isCall(ICalledFunction function, int depth, long start, boolean[] ongoingDepths) {
+        return function.getStart() != start || !ongoingDepths[depth];
     }
 
-    private void iterateOverCallstack(ICallStackElement element, CallStack callstack, ICalledFunction function, int nextLevel, AggregatedCalledFunction aggregatedCall, IHostModel model, long start, long end, IProgressMonitor monitor) {
+    private static int getDepth(ICalledFunction function) {
+        int depth = 1;
+        ICalledFunction parent = function.getParent();
+        while (parent != null) {
+            depth++;
+            parent = parent.getParent();
+        }
+        return depth;
+    }
+
+    /**
+     * The aggregated call site of a function whose children are being consumed
+     */
+    private final class SweepFrame {
+        private final AggregatedCalledFunction fCallSite;
+        private long fLastSampleEnd;
+
+        public SweepFrame(ICallStackElement element, ICalledFunction function, long start) {
+            fCallSite = createCallSite(CallStackSymbolFactory.createSymbol(function.getSymbol(), element, function.getStart()));
+            fLastSampleEnd = start;
+        }
+    }
+
+    private void iterateOverCallstack(ICallStackElement element, CallStack callstack, ICalledFunction function, int nextLevel, AggregatedCalledFunction aggregatedCall, IHostModel model, long start, long end, boolean[] ongoingDepths, IProgressMonitor monitor) {
         if (nextLevel > callstack.getMaxDepth()) {
             return;
         }
@@ -283,8 +669,8 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
                 lastSampleEnd = nextFunction.getEnd();
             }
             AggregatedCalledFunction aggregatedChild = createCallSite(CallStackSymbolFactory.createSymbol(nextFunction.getSymbol(), element, nextFunction.getStart()));
-            iterateOverCallstack(element, callstack, nextFunction, nextLevel + 1, aggregatedChild, model, start, end, monitor);
-            aggregatedCall.addChild(nextFunction, aggregatedChild);
+            iterateOverCallstack(element, callstack, nextFunction, nextLevel + 1, aggregatedChild, model, start, end, ongoingDepths, monitor);
+            aggregatedCall.addChild(nextFunction, aggregatedChild, isCall(nextFunction, nextLevel, start, ongoingDepths));
             nextFunction = (AbstractCalledFunction) callstack.getNextFunction(nextFunction.getEnd(), nextLevel, function, model, Math.max(function.getStart(), start), Math.min(function.getEnd(), end));
         }
         // Get the sampling to the end of the function
@@ -311,6 +697,45 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
         return series;
     }
 
+    /**
+     * Set how the function calls of the callstacks are read to build the call
+     * graph. The single sweep reads all the depths of a callstack with 2D
+     * queries of the state system over consecutive time windows and rebuilds
+     * the nesting of the calls as it goes, while the other builder queries the
+     * next function of each depth one at a time, which does more random reads
+     * of the history. Both keep only the current calls in memory, plus the
+     * intervals of one window for the single sweep.
+     *
+     * @param singleSweep
+     *            Whether to read the callstacks with a single sweep, the
+     *            default, or depth by depth
+     */
+    public void setSingleSweep(boolean singleSweep) {
+        fSingleSweep = singleSweep;
+    }
+
+    /**
+     * Set the number of time buckets of the index used to compute the call
+     * graphs of time ranges. The call graph of each bucket is computed by the
+     * analysis, after the call graph of the full trace, and saved in the
+     * supplementary files. The call graph of a range then merges the buckets
+     * it fully covers and computes only its partial buckets. See
+     * {@link CallGraphBucketIndex} for the differences with a call graph
+     * computed at once.
+     *
+     * This needs to be set before the analysis is executed, the index is not
+     * used if the number of buckets changes afterwards.
+     *
+     * @param nbBuckets
+     *            The number of buckets, or 0 to compute each range from the
+     *            state system, the default
+     */
+    public synchronized void setRangeBucketCount(int nbBuckets) {
+        fNbRangeBuckets = Math.max(0, nbBuckets);
+        fBucketIndex = null;
+        fRangeCallgraphs.invalidateAll();
+    }
+
     @Override
     protected void canceling() {
         // Do nothing
@@ -365,16 +790,17 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
 
     @Override
     public String toDisplayString(AggregatedCallSite callsite) {
-        Collection<ISymbolProvider> symbolProviders = fSymbolProviders;
-        if (symbolProviders == null) {
-            ITmfTrace trace = getTrace();
-            if (trace == null) {
-                return String.valueOf(callsite.getObject());
-            }
-            symbolProviders = SymbolProviderManager.getInstance().getSymbolProviders(trace);
-            fSymbolProviders  = symbolProviders;
+        ITmfTrace trace = getTrace();
+        if (trace == null) {
+            return String.valueOf(callsite.getObject());
+        }
+        SymbolCache symbolCache = SymbolCache.getInstance(trace);
+        ICallStackSymbol symbol = callsite.getObject();
+        if (symbol instanceof ResolvableSymbol) {
+            ResolvableSymbol resolvable = (ResolvableSymbol) symbol;
+            return symbolCache.resolve(resolvable.getPid(), resolvable.getTimestamp(), resolvable.getAddress());
         }
-        return callsite.getObject().resolve(symbolProviders);
+        return symbol.resolve(symbolCache.getSymbolProviders());
     }
 
     @Override
@@ -397,6 +823,27 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
         return StringUtils.EMPTY;
     }
 
+    /**
+     * The properties of the analysis include the statistics of the symbol
+     * cache of the trace, which is shared with the other call stack analyses
+     * and views of the trace
+     */
+    @Override
+    public @NonNull Map<@NonNull String, @NonNull String> getProperties() {
+        Map<@NonNull String, @NonNull String> properties = new LinkedHashMap<>(super.getProperties());
+        ITmfTrace trace = getTrace();
+        if (trace == null) {
+            return properties;
+        }
+        SymbolCache symbolCache = SymbolCache.getInstance(trace);
+        CacheStats stats = symbolCache.getStats();
+        properties.put(String.valueOf(Messages.CallGraphAnalysis_SymbolCacheSize), String.valueOf(symbolCache.size()));
+        properties.put(String.valueOf(Messages.CallGraphAnalysis_SymbolCacheHits), String.valueOf(stats.hitCount()));
+        properties.put(String.valueOf(Messages.CallGraphAnalysis_SymbolCacheMisses), String.valueOf(stats.missCount()));
+        properties.put(String.valueOf(Messages.CallGraphAnalysis_SymbolCacheHitRate), String.format("%.1f %%", stats.hitRate() * 100)); //$NON-NLS-1$
+        return properties;
+    }
+
     @Override
     public String getTitle() {
         return Objects.requireNonNull(Messages.CallGraphAnalysis_Title);
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.analysis.core.concepts.AggregatedCallSite;
+import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackElement;
+import org.eclipse.tracecompass.incubator.callstack.core.callgraph.CallGraph;
+
+/**
+ * Index of the partial call graphs of consecutive time buckets. The call graph
+ * of a time range is obtained by merging copies of the call graphs of the
+ * buckets fully covered by the range, so that only the partial buckets at both
+ * ends of the range need to be computed.
+ *
+ * The calls that cross the boundary between two buckets are split between
+ * them. They are counted as a call only in the first bucket they overlap, the
+ * other buckets only add their durations. The durations, self times and
+ * number of calls of a merged call graph are the same as if the range was
+ * computed at once, but the duration statistics of such a call only have its
+ * part in the first bucket, which affects the minimum, maximum, average and
+ * standard deviation of the calls.
+ */
+final class CallGraphBucketIndex {
+
+    /**
+     * Computes the call graph of a time range
+     */
+    @FunctionalInterface
+    interface IRangeCallGraphBuilder {
+        /**
+         * Fill the call graph with the calls in a time range
+         *
+         * @param callgraph
+         *            The call graph to fill
+         * @param start
+         *            The start of the range
+         * @param end
+         *            The end of the range
+         * @param countOngoingCalls
+         *            Whether the calls that started before the range are
+         *            counted as calls, or only add their durations
+         * @param monitor
+         *            The progress monitor
+         * @return Whether the call graph was successfully computed
+         */
+        boolean build(CallGraph callgraph, long start, long end, boolean countOngoingCalls, IProgressMonitor monitor);
+    }
+
+    private final long fStart;
+    private final long fEnd;
+    private final long fBucketDuration;
+    private final CallGraph[] fBuckets;
+
+    private CallGraphBucketIndex(long start, long end, long bucketDuration, CallGraph[] buckets) {
+        fStart = start;
+        fEnd = end;
+        fBucketDuration = bucketDuration;
+        fBuckets = buckets;
+    }
+
+    /**
+     * Compute the call graphs of the buckets of a time range
+     *
+     * @param start
+     *            The start of the indexed range
+     * @param end
+     *            The end of the indexed range
+     * @param nbBuckets
+     *            The number of buckets to split the range in
+     * @param builder
+     *            The builder of the call graph of a bucket
+     * @param monitor
+     *            The progress monitor
+     * @return The index, or <code>null</code> if a bucket could not be
+     *         computed
+     */
+    public static @Nullable CallGraphBucketIndex build(long start, long end, int nbBuckets, IRangeCallGraphBuilder builder, IProgressMonitor monitor) {
+        long bucketDuration = getBucketDuration(start, end, nbBuckets);
+        CallGraph[] buckets = new CallGraph[getBucketCount(start, end, bucketDuration)];
+        for (int i = 0; i < buckets.length; i++) {
+            CallGraph bucket = new CallGraph();
+            long bucketStart = start + i * bucketDuration;
+            if (monitor.isCanceled() || !builder.build(bucket, bucketStart, Math.min(end, bucketStart + bucketDuration), false, monitor)) {
+                return null;
+            }
+            buckets[i] = bucket;
+        }
+        return new CallGraphBucketIndex(start, end, bucketDuration, buckets);
+    }
+
+    /**
+     * Create an index from the call graphs of its buckets, for instance read
+     * from a file
+     *
+     * @param start
+     *            The start of the indexed range
+     * @param end
+     *            The end of the indexed range
+     * @param nbBuckets
+     *            The number of buckets the range was split in
+     * @param buckets
+     *            The call graphs of the buckets, as returned by
+     *            {@link #getBuckets()}
+     * @return The index, or <code>null</code> if the call graphs are not the
+     *         ones of the buckets of this range
+     */
+    public static @Nullable CallGraphBucketIndex create(long start, long end, int nbBuckets, List<CallGraph> buckets) {
+        long bucketDuration = getBucketDuration(start, end, nbBuckets);
+        if (buckets.size() != getBucketCount(start, end, bucketDuration)) {
+            return null;
+        }
+        return new CallGraphBucketIndex(start, end, bucketDuration, buckets.toArray(new CallGraph[buckets.size()]));
+    }
+
+    private static long getBucketDuration(long start, long end, int nbBuckets) {
+        return Math.max(1L, (end - start) / Math.max(1, nbBuckets) + 1);
+    }
+
+    private static int getBucketCount(long start, long end, long bucketDuration) {
+        return (int) Math.max(1L, divideCeil(end - start, bucketDuration));
+    }
+
+    /**
+     * Get the call graphs of the buckets, in time order
+     *
+     * @return The call graphs of the buckets
+     */
+    public List<CallGraph> getBuckets() {
+        return Arrays.asList(fBuckets);
+    }
+
+    /**
+     * Get the call graph of a time range
+     *
+     * @param start
+     *            The start of the range
+     * @param end
+     *            The end of the range
+     * @param builder
+     *            The builder of the call graph of the partial buckets
+     * @param monitor
+     *            The progress monitor
+     * @return The call graph of the range, or <code>null</code> if it could
+     *         not be computed
+     */
+    public @Nullable CallGraph getCallGraph(long start, long end, IRangeCallGraphBuilder builder, IProgressMonitor monitor) {
+        CallGraph callgraph = new CallGraph();
+        /*
+         * Index of the first and last buckets fully covered by the range. The
+         * calls ongoing at the start of the range are counted in the first
+         * part, so unless the range starts with the trace, the first bucket
+         * is computed even if it is fully covered.
+         */
+        int first = (int) Math.min(fBuckets.length, start <= fStart ? 0 : (start - fStart) / fBucketDuration + 1);
+        int last = (int) Math.min(fBuckets.length, (Math.min(end, fEnd) - fStart) / fBucketDuration) - 1;
+        if (Math.min(end, fEnd) == fEnd) {
+            // The last bucket may be shorter than the others
+            last = fBuckets.length - 1;
+        }
+        if (start > end || first > last) {
+            return builder.build(callgraph, start, end, true, monitor) ? callgraph : null;
+        }
+        long coveredStart = fStart + first * fBucketDuration;
+        long coveredEnd = Math.min(fEnd, fStart + (last + 1) * fBucketDuration);
+        if (start < coveredStart && !builder.build(callgraph, start, coveredStart, true, monitor)) {
+            return null;
+        }
+        for (int i = first; i <= last; i++) {
+            if (monitor.isCanceled()) {
+                return null;
+            }
+            CallGraph bucket = fBuckets[i];
+            for (ICallStackElement element : bucket.getElements()) {
+                addCopies(callgraph, bucket, element);
+            }
+        }
+        if (coveredEnd < end && !builder.build(callgraph, coveredEnd, end, false, monitor)) {
+            return null;
+        }
+        return callgraph;
+    }
+
+    private static void addCopies(CallGraph callgraph, CallGraph bucket, ICallStackElement element) {
+        // The merge modifies the call sites, so do not share those of the bucket
+        for (AggregatedCallSite callsite : bucket.getCallingContextTree(element)) {
+            callgraph.addAggregatedCallSite(element, callsite.copyOf());
+        }
+        for (ICallStackElement child : element.getChildrenElements()) {
+            addCopies(callgraph, bucket, child);
+        }
+    }
+
+    private static long divideCeil(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,544 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.os.linux.core.model.ProcessStatus;
+import org.eclipse.tracecompass.analysis.timing.core.statistics.IStatistics;
+import org.eclipse.tracecompass.incubator.analysis.core.concepts.AggregatedCallSite;
+import org.eclipse.tracecompass.incubator.analysis.core.concepts.ICallStackSymbol;
+import org.eclipse.tracecompass.incubator.analysis.core.model.IHostModel;
+import org.eclipse.tracecompass.incubator.analysis.core.weighted.tree.WeightedTree;
+import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackElement;
+import org.eclipse.tracecompass.incubator.callstack.core.callgraph.CallGraph;
+import org.eclipse.tracecompass.incubator.callstack.core.instrumented.ICalledFunction;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.InstrumentedCallStackElement;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.symbol.ResolvableSymbol;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.symbol.StringSymbol;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+
+/**
+ * Saves aggregated call graphs, like the one of the full trace or the ones of
+ * the range buckets, to a file and reads them back, so that they do not need
+ * to be computed again when the trace is reopened.
+ *
+ * The file starts with a header identifying the state system the call graphs
+ * were computed from, then the table of the symbols used in the call graphs,
+ * followed by the number of call graphs and, for each call graph, the
+ * aggregated tree of each element, identified by its quark. Integers are
+ * written as variable-length numbers.
+ *
+ * Only call graphs of instrumented call stacks, whose call sites are all
+ * {@link AggregatedCalledFunction}, can be saved. The minimum and maximum
+ * calls of the statistics are restored with their times, IDs and symbol only,
+ * see {@link CallStatistics}.
+ */
+public final class CallGraphSerializer {
+
+    private static final int MAGIC = 0x43474641; // "CGFA"
+    private static final int VERSION = 2;
+
+    private static final byte RESOLVABLE_SYMBOL = 0;
+    private static final byte STRING_SYMBOL = 1;
+    private static final byte PROCESS_STATUS = 2;
+
+    private CallGraphSerializer() {
+        // Do nothing
+    }
+
+    /**
+     * Thrown when the call graph contains data that cannot be saved
+     */
+    private static final class UnsupportedDataException extends IOException {
+        private static final long serialVersionUID = -2722475870264386126L;
+
+        public UnsupportedDataException(String message) {
+            super(message);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Write
+    // ------------------------------------------------------------------------
+
+    /**
+     * Save a call graph to a file. The file is first written to a temporary
+     * file, then moved to its final location, so that a partial file is never
+     * read.
+     *
+     * @param callgraph
+     *            The call graph to save
+     * @param stateSystem
+     *            The state system the call graph was computed from
+     * @param model
+     *            The model of the host of the call stacks
+     * @param file
+     *            The file to write to
+     * @return Whether the call graph was saved. A call graph with sampled data
+     *         or unknown symbols cannot be saved.
+     * @throws IOException
+     *             Exception thrown by the file operations
+     */
+    public static boolean write(CallGraph callgraph, ITmfStateSystem stateSystem, IHostModel model, Path file) throws IOException {
+        return write(Collections.singletonList(callgraph), stateSystem, model, file);
+    }
+
+    /**
+     * Save call graphs to a file, like {@link #write(CallGraph, ITmfStateSystem, IHostModel, Path)}
+     *
+     * @param callgraphs
+     *            The call graphs to save
+     * @param stateSystem
+     *            The state system the call graph was computed from
+     * @param model
+     *            The model of the host of the call stacks
+     * @param file
+     *            The file to write to
+     * @return Whether the call graphs were saved. A call graph with sampled
+     *         data or unknown symbols cannot be saved.
+     * @throws IOException
+     *             Exception thrown by the file operations
+     */
+    public static boolean write(List<CallGraph> callgraphs, ITmfStateSystem stateSystem, IHostModel model, Path file) throws IOException {
+        Map<Object, Integer> symbols = new LinkedHashMap<>();
+        try {
+            for (CallGraph callgraph : callgraphs) {
+                for (ICallStackElement element : getElements(callgraph)) {
+                    for (AggregatedCallSite callsite : callgraph.getCallingContextTree(element)) {
+                        internSymbols(callsite, symbols);
+                    }
+                }
+            }
+        } catch (UnsupportedDataException e) {
+            return false;
+        }
+
+        Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp"); //$NON-NLS-1$
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+            writeHeader(out, stateSystem, model);
+            writeVarLong(out, symbols.size());
+            for (Object symbol : symbols.keySet()) {
+                writeSymbol(out, symbol);
+            }
+            writeVarLong(out, callgraphs.size());
+            for (CallGraph callgraph : callgraphs) {
+                writeCallGraph(out, callgraph, symbols);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpFile);
+            if (e instanceof UnsupportedDataException) {
+                return false;
+            }
+            throw e;
+        }
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * Get the elements of a call graph that have call sites, the call graph
+     * only keeps its root elements
+     */
+    private static List<ICallStackElement> getElements(CallGraph callgraph) {
+        List<ICallStackElement> elements = new ArrayList<>();
+        for (ICallStackElement element : callgraph.getElements()) {
+            addElements(callgraph, element, elements);
+        }
+        return elements;
+    }
+
+    private static void addElements(CallGraph callgraph, ICallStackElement element, List<ICallStackElement> elements) {
+        if (!callgraph.getCallingContextTree(element).isEmpty()) {
+            elements.add(element);
+        }
+        for (ICallStackElement child : element.getChildrenElements()) {
+            addElements(callgraph, child, elements);
+        }
+    }
+
+    private static void writeCallGraph(DataOutput out, CallGraph callgraph, Map<Object, Integer> symbols) throws IOException {
+        List<ICallStackElement> elements = getElements(callgraph);
+        writeVarLong(out, elements.size());
+        for (ICallStackElement element : elements) {
+            if (!(element instanceof InstrumentedCallStackElement)) {
+                throw new UnsupportedDataException("Element without a quark: " + element); //$NON-NLS-1$
+            }
+            writeVarLong(out, ((InstrumentedCallStackElement) element).getQuark());
+            Collection<AggregatedCallSite> callsites = callgraph.getCallingContextTree(element);
+            writeVarLong(out, callsites.size());
+            for (AggregatedCallSite callsite : callsites) {
+                writeNode(out, (AggregatedCalledFunction) callsite, symbols);
+            }
+        }
+    }
+
+    private static void internSymbols(AggregatedCallSite callsite, Map<Object, Integer> symbols) throws UnsupportedDataException {
+        if (!(callsite instanceof AggregatedCalledFunction)) {
+            throw new UnsupportedDataException("Unsupported call site: " + callsite); //$NON-NLS-1$
+        }
+        ICallStackSymbol symbol = callsite.getObject();
+        if (symbol instanceof StringSymbol && !(((StringSymbol) symbol).getSymbol() instanceof String)) {
+            throw new UnsupportedDataException("Unsupported symbol: " + symbol); //$NON-NLS-1$
+        }
+        if (!(symbol instanceof ResolvableSymbol) && !(symbol instanceof StringSymbol)) {
+            throw new UnsupportedDataException("Unsupported symbol: " + symbol); //$NON-NLS-1$
+        }
+        symbols.putIfAbsent(symbol, symbols.size());
+        for (WeightedTree<ICallStackSymbol> status : callsite.getExtraDataTrees(0)) {
+            symbols.putIfAbsent(((AggregatedThreadStatus) status).getProcessStatus(), symbols.size());
+        }
+        for (WeightedTree<ICallStackSymbol> child : callsite.getChildren()) {
+            internSymbols((AggregatedCallSite) child, symbols);
+        }
+    }
+
+    private static void writeHeader(DataOutput out, ITmfStateSystem stateSystem, IHostModel model) throws IOException {
+        out.writeInt(MAGIC);
+        writeVarLong(out, VERSION);
+        out.writeUTF(stateSystem.getSSID());
+        out.writeLong(stateSystem.getStartTime());
+        out.writeLong(stateSystem.getCurrentEndTime());
+        writeVarLong(out, stateSystem.getNbAttributes());
+        out.writeBoolean(model.isThreadStatusAvailable());
+    }
+
+    private static void writeSymbol(DataOutput out, Object symbol) throws IOException {
+        if (symbol instanceof ResolvableSymbol) {
+            ResolvableSymbol resolvable = (ResolvableSymbol) symbol;
+            out.writeByte(RESOLVABLE_SYMBOL);
+            writeVarLong(out, resolvable.getAddress());
+            writeSignedVarLong(out, resolvable.getPid());
+            writeSignedVarLong(out, resolvable.getTimestamp());
+        } else if (symbol instanceof StringSymbol) {
+            out.writeByte(STRING_SYMBOL);
+            out.writeUTF((String) ((StringSymbol) symbol).getSymbol());
+        } else {
+            out.writeByte(PROCESS_STATUS);
+            out.writeUTF(((ProcessStatus) symbol).name());
+        }
+    }
+
+    private static void writeNode(DataOutput out, AggregatedCalledFunction function, Map<Object, Integer> symbols) throws IOException {
+        writeVarLong(out, getSymbolId(symbols, function.getObject()));
+        writeSignedVarLong(out, function.getProcessId());
+        writeSignedVarLong(out, function.getDuration());
+        writeSignedVarLong(out, function.getSelfTime());
+        writeSignedVarLong(out, function.getCpuTime());
+        AggregatedCalledFunctionStatistics statistics = function.getFunctionStatistics();
+        writeStatistics(out, statistics.getDurationStatistics());
+        writeStatistics(out, statistics.getSelfTimeStatistics());
+        writeStatistics(out, statistics.getCpuTimesStatistics());
+
+        Collection<WeightedTree<ICallStackSymbol>> statuses = function.getExtraDataTrees(0);
+        writeVarLong(out, statuses.size());
+        for (WeightedTree<ICallStackSymbol> status : statuses) {
+            writeVarLong(out, getSymbolId(symbols, ((AggregatedThreadStatus) status).getProcessStatus()));
+            writeSignedVarLong(out, status.getWeight());
+        }
+
+        Collection<WeightedTree<ICallStackSymbol>> children = function.getChildren();
+        writeVarLong(out, children.size());
+        for (WeightedTree<ICallStackSymbol> child : children) {
+            writeNode(out, (AggregatedCalledFunction) child, symbols);
+        }
+    }
+
+    private static int getSymbolId(Map<Object, Integer> symbols, Object symbol) throws IOException {
+        Integer id = symbols.get(symbol);
+        if (id == null) {
+            throw new IOException("Symbol not in the symbol table: " + symbol); //$NON-NLS-1$
+        }
+        return id;
+    }
+
+    private static void writeStatistics(DataOutput out, IStatistics<ICalledFunction> stats) throws IOException {
+        if (!(stats instanceof CallStatistics)) {
+            throw new UnsupportedDataException("Unsupported statistics: " + stats); //$NON-NLS-1$
+        }
+        CallStatistics statistics = (CallStatistics) stats;
+        writeVarLong(out, statistics.getNbElements());
+        if (statistics.getNbElements() == 0) {
+            return;
+        }
+        writeSignedVarLong(out, statistics.getMin());
+        writeSignedVarLong(out, statistics.getMax());
+        out.writeDouble(statistics.getMean());
+        out.writeDouble(statistics.getVariance());
+        out.writeDouble(statistics.getTotal());
+        writeCall(out, statistics.getMinObject());
+        writeCall(out, statistics.getMaxObject());
+    }
+
+    private static void writeCall(DataOutput out, @Nullable ICalledFunction function) throws IOException {
+        out.writeBoolean(function != null);
+        if (function == null) {
+            return;
+        }
+        writeSignedVarLong(out, function.getStart());
+        writeVarLong(out, function.getLength());
+        writeSignedVarLong(out, function.getProcessId());
+        writeSignedVarLong(out, function.getThreadId());
+    }
+
+    // ------------------------------------------------------------------------
+    // Read
+    // ------------------------------------------------------------------------
+
+    /**
+     * Read a call graph from a file. The call graph is read only if it was
+     * computed from the same state system as the one of the elements.
+     *
+     * @param file
+     *            The file to read
+     * @param stateSystem
+     *            The state system of the call stacks
+     * @param rootElements
+     *            The root elements of the call stack series
+     * @param model
+     *            The model of the host of the call stacks
+     * @param callgraph
+     *            The call graph to fill
+     * @return Whether the call graph was read. If <code>false</code>, the
+     *         call graph was not modified.
+     * @throws IOException
+     *             Exception thrown by the file operations or if the file is
+     *             corrupted
+     */
+    public static boolean read(Path file, ITmfStateSystem stateSystem, Collection<ICallStackElement> rootElements, IHostModel model, CallGraph callgraph) throws IOException {
+        List<CallGraph> callgraphs = read(file, stateSystem, rootElements, model);
+        if (callgraphs == null || callgraphs.size() != 1) {
+            return false;
+        }
+        CallGraph read = callgraphs.get(0);
+        for (ICallStackElement element : getElements(read)) {
+            for (AggregatedCallSite callsite : read.getCallingContextTree(element)) {
+                callgraph.addAggregatedCallSite(element, callsite);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the call graphs of a file. The call graphs are read only if they
+     * were computed from the same state system as the one of the elements.
+     *
+     * @param file
+     *            The file to read
+     * @param stateSystem
+     *            The state system of the call stacks
+     * @param rootElements
+     *            The root elements of the call stack series
+     * @param model
+     *            The model of the host of the call stacks
+     * @return The call graphs, in the order they were written, or
+     *         <code>null</code> if the file does not exist or is not for this
+     *         state system
+     * @throws IOException
+     *             Exception thrown by the file operations or if the file is
+     *             corrupted
+     */
+    public static @Nullable List<CallGraph> read(Path file, ITmfStateSystem stateSystem, Collection<ICallStackElement> rootElements, IHostModel model) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        Map<Integer, ICallStackElement> elements = new HashMap<>();
+        for (ICallStackElement element : rootElements) {
+            mapElements(element, elements);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (!readHeader(in, stateSystem, model)) {
+                return null;
+            }
+            int nbSymbols = (int) readVarLong(in);
+            List<Object> symbols = new ArrayList<>(nbSymbols);
+            for (int i = 0; i < nbSymbols; i++) {
+                symbols.add(readSymbol(in));
+            }
+            int nbCallGraphs = (int) readVarLong(in);
+            List<CallGraph> callgraphs = new ArrayList<>(nbCallGraphs);
+            for (int i = 0; i < nbCallGraphs; i++) {
+                callgraphs.add(readCallGraph(in, elements, symbols, model));
+            }
+            return callgraphs;
+        } catch (IllegalArgumentException | ClassCastException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted call graph file " + file, e); //$NON-NLS-1$
+        }
+    }
+
+    private static CallGraph readCallGraph(DataInput in, Map<Integer, ICallStackElement> elements, List<Object> symbols, IHostModel model) throws IOException {
+        CallGraph callgraph = new CallGraph();
+        long nbElements = readVarLong(in);
+        for (long i = 0; i < nbElements; i++) {
+            int quark = (int) readVarLong(in);
+            ICallStackElement element = elements.get(quark);
+            if (element == null) {
+                throw new IOException("No element for quark " + quark); //$NON-NLS-1$
+            }
+            long nbCallsites = readVarLong(in);
+            for (long j = 0; j < nbCallsites; j++) {
+                callgraph.addAggregatedCallSite(element, readNode(in, symbols, model));
+            }
+        }
+        return callgraph;
+    }
+
+    private static void mapElements(ICallStackElement element, Map<Integer, ICallStackElement> elements) {
+        if (element instanceof InstrumentedCallStackElement) {
+            elements.put(((InstrumentedCallStackElement) element).getQuark(), element);
+        }
+        for (ICallStackElement child : element.getChildrenElements()) {
+            mapElements(child, elements);
+        }
+    }
+
+    private static boolean readHeader(DataInput in, ITmfStateSystem stateSystem, IHostModel model) throws IOException {
+        return in.readInt() == MAGIC
+                && readVarLong(in) == VERSION
+                && in.readUTF().equals(stateSystem.getSSID())
+                && in.readLong() == stateSystem.getStartTime()
+                && in.readLong() == stateSystem.getCurrentEndTime()
+                && readVarLong(in) == stateSystem.getNbAttributes()
+                && in.readBoolean() == model.isThreadStatusAvailable();
+    }
+
+    private static Object readSymbol(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+        case RESOLVABLE_SYMBOL:
+            long address = readVarLong(in);
+            int pid = (int) readSignedVarLong(in);
+            return new ResolvableSymbol(address, pid, readSignedVarLong(in));
+        case STRING_SYMBOL:
+            return new StringSymbol(in.readUTF());
+        case PROCESS_STATUS:
+            return ProcessStatus.valueOf(in.readUTF());
+        default:
+            throw new IOException("Unknown symbol kind " + kind); //$NON-NLS-1$
+        }
+    }
+
+    private static AggregatedCalledFunction readNode(DataInput in, List<Object> symbols, IHostModel model) throws IOException {
+        ICallStackSymbol symbol = (ICallStackSymbol) symbols.get((int) readVarLong(in));
+        int processId = (int) readSignedVarLong(in);
+        long duration = readSignedVarLong(in);
+        long selfTime = readSignedVarLong(in);
+        long cpuTime = readSignedVarLong(in);
+        AggregatedCalledFunction function = new AggregatedCalledFunction(symbol, processId, duration, selfTime, cpuTime);
+
+        // The value of the symbol, to create the minimum and maximum calls
+        Object symbolValue = symbol instanceof ResolvableSymbol ? Long.valueOf(((ResolvableSymbol) symbol).getAddress()) : ((StringSymbol) symbol).getSymbol();
+        AggregatedCalledFunctionStatistics statistics = function.getFunctionStatistics();
+        readStatistics(in, statistics.getDurationStatistics(), symbolValue, model);
+        readStatistics(in, statistics.getSelfTimeStatistics(), symbolValue, model);
+        readStatistics(in, statistics.getCpuTimesStatistics(), symbolValue, model);
+
+        long nbStatuses = readVarLong(in);
+        for (long i = 0; i < nbStatuses; i++) {
+            ProcessStatus status = (ProcessStatus) symbols.get((int) readVarLong(in));
+            function.addKernelStatus(status, readSignedVarLong(in));
+        }
+
+        long nbChildren = readVarLong(in);
+        for (long i = 0; i < nbChildren; i++) {
+            function.addChild(readNode(in, symbols, model));
+        }
+        return function;
+    }
+
+    private static void readStatistics(DataInput in, IStatistics<ICalledFunction> stats, Object symbolValue, IHostModel model) throws IOException {
+        long nbElements = readVarLong(in);
+        if (nbElements == 0) {
+            return;
+        }
+        if (!(stats instanceof CallStatistics)) {
+            throw new IOException("Unsupported statistics: " + stats); //$NON-NLS-1$
+        }
+        long min = readSignedVarLong(in);
+        long max = readSignedVarLong(in);
+        double mean = in.readDouble();
+        double variance = in.readDouble();
+        double total = in.readDouble();
+        ICalledFunction minObject = readCall(in, symbolValue, model);
+        ICalledFunction maxObject = readCall(in, symbolValue, model);
+        ((CallStatistics) stats).restore(nbElements, min, max, mean, variance, total, minObject, maxObject);
+    }
+
+    /*
+     * The restored call has no parent nor children, so its self time is its
+     * length. It is only used as the minimum or maximum call of statistics,
+     * whose users, the go to minimum and maximum actions of the flame graph,
+     * only need its time range.
+     */
+    private static @Nullable ICalledFunction readCall(DataInput in, Object symbolValue, IHostModel model) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long start = readSignedVarLong(in);
+        long length = readVarLong(in);
+        int processId = (int) readSignedVarLong(in);
+        int threadId = (int) readSignedVarLong(in);
+        return CalledFunctionFactory.create(start, start + length, symbolValue, processId, threadId, null, model);
+    }
+
+    // ------------------------------------------------------------------------
+    // Variable-length numbers
+    // ------------------------------------------------------------------------
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.writeByte((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.writeByte((int) remaining);
+    }
+
+    private static void writeSignedVarLong(DataOutput out, long value) throws IOException {
+        // Zigzag encoding, so that small negative values also take few bytes
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length number"); //$NON-NLS-1$
+    }
+
+    private static long readSignedVarLong(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph;
+
+import java.util.function.ToLongFunction;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.timing.core.statistics.IStatistics;
+import org.eclipse.tracecompass.analysis.timing.core.statistics.Statistics;
+import org.eclipse.tracecompass.incubator.callstack.core.instrumented.ICalledFunction;
+
+/**
+ * Statistics on a metric of the called functions that can be saved and
+ * restored without the calls themselves. The calls are added to generic
+ * {@link Statistics}, which do not expose their state, so the restored state
+ * is kept aside and combined with them when the statistics are read.
+ *
+ * The minimum and maximum calls of restored statistics are the ones created
+ * by {@link CallGraphSerializer}: they only have their times, process and
+ * thread IDs and symbol, no parent nor children. Their users only need their
+ * time range, to go to the minimum or maximum call from the flame graph.
+ */
+final class CallStatistics implements IStatistics<ICalledFunction> {
+
+    private final Statistics<ICalledFunction> fCalls;
+    private @Nullable State fRestored = null;
+
+    /**
+     * The state of statistics, as in the online algorithm of the generic
+     * statistics
+     */
+    private static final class State {
+        private final long fNbElements;
+        private final long fMin;
+        private final long fMax;
+        private final double fMean;
+        /** The sum of the squared differences to the mean */
+        private final double fVariance;
+        private final double fTotal;
+        private final @Nullable ICalledFunction fMinObject;
+        private final @Nullable ICalledFunction fMaxObject;
+
+        public State(long nbElements, long min, long max, double mean, double variance, double total, @Nullable ICalledFunction minObject, @Nullable ICalledFunction maxObject) {
+            fNbElements = nbElements;
+            fMin = min;
+            fMax = max;
+            fMean = mean;
+            fVariance = variance;
+            fTotal = total;
+            fMinObject = minObject;
+            fMaxObject = maxObject;
+        }
+
+        public static State of(IStatistics<ICalledFunction> stats) {
+            long nbElements = stats.getNbElements();
+            double variance = 0.0;
+            if (nbElements > 2) {
+                double stdDev = stats.getStdDev();
+                variance = stdDev * stdDev * (nbElements - 1);
+            } else if (nbElements == 2) {
+                // The standard deviation is not available for 2 elements
+                double delta = (double) stats.getMax() - stats.getMin();
+                variance = delta * delta / 2;
+            }
+            return new State(nbElements, stats.getMin(), stats.getMax(), stats.getMean(), variance, stats.getTotal(), stats.getMinObject(), stats.getMaxObject());
+        }
+
+        public static State combine(State first, State second) {
+            if (second.fNbElements == 0) {
+                return first;
+            }
+            if (first.fNbElements == 0) {
+                return second;
+            }
+            long nbElements = first.fNbElements + second.fNbElements;
+            double mean = (first.fNbElements * first.fMean + second.fNbElements * second.fMean) / nbElements;
+            double delta = second.fMean - first.fMean;
+            double variance = first.fVariance + second.fVariance + delta * delta * first.fNbElements * second.fNbElements / nbElements;
+            boolean secondMin = second.fMin < first.fMin;
+            boolean secondMax = second.fMax > first.fMax;
+            return new State(nbElements,
+                    secondMin ? second.fMin : first.fMin,
+                    secondMax ? second.fMax : first.fMax,
+                    mean, variance, first.fTotal + second.fTotal,
+                    secondMin ? second.fMinObject : first.fMinObject,
+                    secondMax ? second.fMaxObject : first.fMaxObject);
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param mapper
+     *            The function returning the value of a called function
+     */
+    public CallStatistics(ToLongFunction<ICalledFunction> mapper) {
+        fCalls = new Statistics<>(f -> mapper.applyAsLong(f));
+    }
+
+    /**
+     * Set the state of these statistics, that was previously saved. No call
+     * should have been added to these statistics yet.
+     *
+     * @param nbElements
+     *            The number of elements
+     * @param min
+     *            The minimum value
+     * @param max
+     *            The maximum value
+     * @param mean
+     *            The mean value
+     * @param variance
+     *            The sum of the squared differences to the mean
+     * @param total
+     *            The total of the values
+     * @param minObject
+     *            The element with the minimum value
+     * @param maxObject
+     *            The element with the maximum value
+     */
+    void restore(long nbElements, long min, long max, double mean, double variance, double total, @Nullable ICalledFunction minObject, @Nullable ICalledFunction maxObject) {
+        if (fCalls.getNbElements() != 0) {
+            throw new IllegalStateException("Statistics can only be restored before adding calls"); //$NON-NLS-1$
+        }
+        fRestored = new State(nbElements, min, max, mean, variance, total, minObject, maxObject);
+    }
+
+    private State getState() {
+        State restored = fRestored;
+        return restored == null ? State.of(fCalls) : State.combine(restored, State.of(fCalls));
+    }
+
+    /**
+     * Get the sum of the squared differences to the mean, to save the state of
+     * the statistics
+     *
+     * @return The sum of the squared differences to the mean
+     */
+    double getVariance() {
+        return getState().fVariance;
+    }
+
+    @Override
+    public long getMin() {
+        return fRestored == null ? fCalls.getMin() : getState().fMin;
+    }
+
+    @Override
+    public long getMax() {
+        return fRestored == null ? fCalls.getMax() : getState().fMax;
+    }
+
+    @Override
+    public @Nullable ICalledFunction getMinObject() {
+        return fRestored == null ? fCalls.getMinObject() : getState().fMinObject;
+    }
+
+    @Override
+    public @Nullable ICalledFunction getMaxObject() {
+        return fRestored == null ? fCalls.getMaxObject() : getState().fMaxObject;
+    }
+
+    @Override
+    public long getNbElements() {
+        return fRestored == null ? fCalls.getNbElements() : getState().fNbElements;
+    }
+
+    @Override
+    public double getMean() {
+        return fRestored == null ? fCalls.getMean() : getState().fMean;
+    }
+
+    @Override
+    public double getStdDev() {
+        if (fRestored == null) {
+            return fCalls.getStdDev();
+        }
+        State state = getState();
+        return state.fNbElements > 2 ? Math.sqrt(state.fVariance / (state.fNbElements - 1)) : Double.NaN;
+    }
+
+    @Override
+    public double getTotal() {
+        return fRestored == null ? fCalls.getTotal() : getState().fTotal;
+    }
+
+    @Override
+    public void update(ICalledFunction input) {
+        fCalls.update(input);
+    }
+
+    @Override
+    public void merge(IStatistics<ICalledFunction> o) {
+        if (!(o instanceof CallStatistics)) {
+            throw new IllegalArgumentException("Can only merge statistics of the same class"); //$NON-NLS-1$
+        }
+        CallStatistics other = (CallStatistics) o;
+        fCalls.merge(other.fCalls);
+        State restored = fRestored;
+        State otherRestored = other.fRestored;
+        if (otherRestored != null) {
+            fRestored = restored == null ? otherRestored : State.combine(restored, otherRestored);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Min: " + getMin() + ", Max: " + getMax() + ", Mean: " + getMean() + ", Count: " + getNbElements(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+}
@@ -56,6 +56,14 @@ public class Messages extends NLS {
     public static @Nullable String CallGraphStats_CpuTime;
     /** Number of calls statistics title */
     public static @Nullable String CallGraphStats_NbCalls;
+    /** Property of the number of names in the symbol cache */
+    public static @Nullable String CallGraphAnalysis_SymbolCacheSize;
+    /** Property of the number of names found in the symbol cache */
+    public static @Nullable String CallGraphAnalysis_SymbolCacheHits;
+    /** Property of the number of names missing from the symbol cache */
+    public static @Nullable String CallGraphAnalysis_SymbolCacheMisses;
+    /** Property of the hit rate of the symbol cache */
+    public static @Nullable String CallGraphAnalysis_SymbolCacheHitRate;
     static {
         // initialize resource bundle
         NLS.initializeMessages(BUNDLE_NAME, Messages.class);
@@ -34,6 +34,7 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.tracecompass.analysis.os.linux.core.model.HostThread;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils.FlowScopeLog;
@@ -49,6 +50,8 @@ import org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.I
 import org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.provider.FlameChartEntryModel.EntryType;
 import org.eclipse.tracecompass.incubator.internal.callstack.core.palette.FlameDefaultPalette;
 import org.eclipse.tracecompass.incubator.internal.callstack.core.palette.FlameWithKernelPalette;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.symbol.SymbolCache;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.symbol.SymbolCache.SymbolRequest;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.threadstatus.ThreadEntryModel;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.threadstatus.ThreadStatusDataProvider;
 import org.eclipse.tracecompass.internal.tmf.core.model.filters.FetchParametersUtils;
@@ -79,15 +82,9 @@ import org.eclipse.tracecompass.tmf.core.response.ITmfResponse;
 import org.eclipse.tracecompass.tmf.core.response.ITmfResponse.Status;
 import org.eclipse.tracecompass.tmf.core.response.TmfModelResponse;
 import org.eclipse.tracecompass.tmf.core.symbols.ISymbolProvider;
-import org.eclipse.tracecompass.tmf.core.symbols.SymbolProviderManager;
-import org.eclipse.tracecompass.tmf.core.symbols.SymbolProviderUtils;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
-import org.eclipse.tracecompass.tmf.core.util.Pair;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.ImmutableList;
@@ -111,6 +108,12 @@ public class FlameChartDataProvider extends AbstractTmfTraceDataProvider impleme
      * Provider ID.
      */
     public static final String ID = "org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.provider.flamechart"; //$NON-NLS-1$
+    /**
+     * The key used to request that consecutive calls shorter than the
+     * resolution of the requested times be summarized into a single state per
+     * depth. Its value is a boolean.
+     */
+    public static final String SUMMARIZE_KEY = "summarize"; //$NON-NLS-1$
     private static final Pattern REGEX = Pattern.compile("[0-9a-fA-F]+"); //$NON-NLS-1$
     private static final AtomicLong ENTRY_ID = new AtomicLong();
     /**
@@ -122,7 +125,6 @@ public class FlameChartDataProvider extends AbstractTmfTraceDataProvider impleme
     // Key is the row ID that requires linked data (for instance a kernel row) and
     // value is the row being linked to (the one from the callstack)
     private final BiMap<Long, Long> fLinkedEntries = HashBiMap.create();
-    private final Collection<ISymbolProvider> fProviders = new ArrayList<>();
     private final BiMap<Long, CallStackDepth> fIdToCallstack = HashBiMap.create();
     private final BiMap<Long, ICallStackElement> fIdToElement = HashBiMap.create();
     private final long fTraceId = ENTRY_ID.getAndIncrement();
@@ -190,41 +192,7 @@ public class FlameChartDataProvider extends AbstractTmfTraceDataProvider impleme
 
     }
 
-    private final LoadingCache<Pair<Integer, ICalledFunction>, @Nullable String> fTimeEventNames = Objects.requireNonNull(CacheBuilder.newBuilder()
-            .maximumSize(1000)
-            .build(new CacheLoader<Pair<Integer, ICalledFunction>, @Nullable String>() {
-                @Override
-                public @Nullable String load(Pair<Integer, ICalledFunction> pidInterval) {
-                    Integer pid = pidInterval.getFirst();
-                    ICalledFunction interval = pidInterval.getSecond();
-
-                    Object nameValue = interval.getSymbol();
-                    Long address = null;
-                    String name = null;
-                    if (nameValue instanceof String) {
-                        name = (String) nameValue;
-
-                        if (REGEX.matcher(name).matches()) {
-                            try {
-                                address = Long.parseLong(name, 16);
-                            } catch (NumberFormatException e) {
-                                // leave address as null
-                            }
-                        }
-                    } else if (nameValue instanceof Integer) {
-                        Integer intValue = (Integer) nameValue;
-                        name = "0x" + Integer.toUnsignedString(intValue, 16); //$NON-NLS-1$
-                        address = intValue.longValue();
-                    } else if (nameValue instanceof Long) {
-                        address = (long) nameValue;
-                        name = "0x" + Long.toUnsignedString(address, 16); //$NON-NLS-1$
-                    }
-                    if (address != null) {
-                        name = SymbolProviderUtils.getSymbolText(fProviders, pid, interval.getStart(), address);
-                    }
-                    return name;
-                }
-            }));
+    private final SymbolCache fSymbolCache;
 
     private final IFlameChartProvider fFcProvider;
 
@@ -248,6 +216,7 @@ public class FlameChartDataProvider extends AbstractTmfTraceDataProvider impleme
         fFcProvider = module;
         fAnalysisId = secondaryId;
         fArrowProvider = new FlameChartArrowProvider(trace);
+        fSymbolCache = SymbolCache.getInstance(trace);
         resetFunctionNames(new NullProgressMonitor());
     }
 
@@ -617,6 +586,7 @@ public class FlameChartDataProvider extends AbstractTmfTraceDataProvider impleme
 
         List<Long> times = DataProviderParameterUtils.extractTimeRequested(fetchParameters);
         Collections.sort(times);
+        long resolution = Boolean.parseBoolean(String.valueOf(fetchParameters.get(SUMMARIZE_KEY))) ? getResolution(Objects.requireNonNull(times)) : 0;
         Multimap<CallStackDepth, ISegment> csFunctions = fFcProvider.queryCallStacks(csEntries.values(), Objects.requireNonNull(times));
 
         // Prepare the regexes
@@ -635,11 +605,16 @@ public class FlameChartDataProvider extends AbstractTmfTraceDataProvider impleme
 
             // Create the time graph states for this row
             List<ITimeGraphState> eventList = new ArrayList<>(states.size());
-            states.forEach(state -> {
-                ITimeGraphState timeGraphState = createTimeGraphState(state);
-                applyFilterAndAddState(eventList, timeGraphState, key, predicates, subMonitor);
-            });
-            eventList.sort(Comparator.comparingLong(ITimeGraphState::getStartTime));
+            resolveFunctionNames(states);
+            if (resolution > 1) {
+                summarize(states, resolution).forEach(timeGraphState -> applyFilterAndAddState(eventList, timeGraphState, key, predicates, subMonitor));
+            } else {
+                states.forEach(state -> {
+                    ITimeGraphState timeGraphState = createTimeGraphState(state);
+                    applyFilterAndAddState(eventList, timeGraphState, key, predicates, subMonitor);
+                });
+                eventList.sort(Comparator.comparingLong(ITimeGraphState::getStartTime));
+            }
             rows.put(entry.getKey(), eventList);
 
             // See if any more row needs to be filled with these function's data
@@ -665,6 +640,85 @@ public class FlameChartDataProvider extends AbstractTmfTraceDataProvider impleme
         return rows;
     }
 
+    /**
+     * Get the average time between two requested times, ie the duration of a
+     * pixel
+     */
+    private static long getResolution(List<Long> sortedTimes) {
+        if (sortedTimes.size() < 2) {
+            return 0;
+        }
+        return (sortedTimes.get(sortedTimes.size() - 1) - sortedTimes.get(0)) / (sortedTimes.size() - 1);
+    }
+
+    /**
+     * Create the states of a row, where the runs of consecutive calls shorter
+     * than the resolution are merged into one state. The merged state spans
+     * from the start of the first call to the end of the last one, its label
+     * gives the number of calls and the symbol that takes most of the time,
+     * whose style it takes. The calls are those returned by the query at the
+     * requested times, so the count is a lower bound of the actual number of
+     * calls.
+     */
+    private List<ITimeGraphState> summarize(Collection<ISegment> segments, long resolution) {
+        List<ISegment> sorted = new ArrayList<>(segments);
+        sorted.sort(Comparator.comparingLong(ISegment::getStart));
+        List<ITimeGraphState> states = new ArrayList<>(sorted.size());
+        List<ISegment> run = new ArrayList<>();
+        for (ISegment segment : sorted) {
+            if (segment.getLength() < resolution) {
+                run.add(segment);
+                continue;
+            }
+            addSummarizedRun(run, states);
+            run.clear();
+            states.add(createTimeGraphState(segment));
+        }
+        addSummarizedRun(run, states);
+        return states;
+    }
+
+    private void addSummarizedRun(List<ISegment> run, List<ITimeGraphState> states) {
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < run.size(); i++) {
+            if (run.get(i) instanceof ICalledFunction) {
+                first = (first < 0) ? i : first;
+                last = i;
+            }
+        }
+        if (first == last) {
+            // Zero or one call, nothing to summarize
+            run.forEach(segment -> states.add(createTimeGraphState(segment)));
+            return;
+        }
+        // The gaps before the first call and after the last one are kept
+        for (int i = 0; i < first; i++) {
+            states.add(createTimeGraphState(run.get(i)));
+        }
+        Map<String, Long> durations = new HashMap<>();
+        Map<String, ITimeGraphState> styles = new HashMap<>();
+        int count = 0;
+        for (int i = first; i <= last; i++) {
+            ISegment segment = run.get(i);
+            if (segment instanceof ICalledFunction) {
+                ITimeGraphState state = createTimeGraphState(segment);
+                String label = String.valueOf(state.getLabel());
+                durations.merge(label, segment.getLength(), Long::sum);
+                styles.putIfAbsent(label, state);
+                count++;
+            }
+        }
+        String dominant = Collections.max(durations.entrySet(), Entry.comparingByValue()).getKey();
+        ITimeGraphState dominantState = Objects.requireNonNull(styles.get(dominant));
+        long start = run.get(first).getStart();
+        long end = run.get(last).getEnd();
+        states.add(new TimeGraphState(start, end - start, NLS.bind(Messages.FlameChartDataProvider_SummarizedCalls, count, dominant), dominantState.getStyle()));
+        for (int i = last + 1; i < run.size(); i++) {
+            states.add(createTimeGraphState(run.get(i)));
+        }
+    }
+
     private Map<Long, List<ITimeGraphState>> getKernelStates(List<TidInformation> tids, List<Long> times, Map<Integer, Predicate<Multimap<String, Object>>> predicates, SubMonitor monitor) {
         // Get the thread statuses from the thread status provider
         ThreadData threadData = fThreadData;
@@ -784,30 +838,79 @@ public class FlameChartDataProvider extends AbstractTmfTraceDataProvider impleme
             return new TimeGraphState(state.getStart(), state.getLength(), Integer.MIN_VALUE);
         }
         ICalledFunction function = (ICalledFunction) state;
-        Integer pid = function.getProcessId();
-        String name = String.valueOf(fTimeEventNames.getUnchecked(new Pair<>(pid, function)));
+        String name = String.valueOf(getFunctionName(function));
         return new TimeGraphState(function.getStart(), function.getLength(), name, FlameDefaultPalette.getInstance().getStyleFor(state));
     }
 
+    private @Nullable String getFunctionName(ICalledFunction function) {
+        Object nameValue = function.getSymbol();
+        Long address = getAddress(nameValue);
+        if (address != null) {
+            return fSymbolCache.resolve(function.getProcessId(), function.getStart(), address);
+        }
+        return (nameValue instanceof String) ? (String) nameValue : null;
+    }
+
+    /**
+     * Resolve the names of the functions of a row in one batch, so that each
+     * symbol missing from the symbol cache is resolved only once, before the
+     * states of the row get their names from the cache
+     */
+    private void resolveFunctionNames(Collection<ISegment> segments) {
+        List<SymbolRequest> requests = new ArrayList<>();
+        for (ISegment segment : segments) {
+            if (segment instanceof ICalledFunction) {
+                ICalledFunction function = (ICalledFunction) segment;
+                Long address = getAddress(function.getSymbol());
+                if (address != null) {
+                    requests.add(new SymbolRequest(function.getProcessId(), function.getStart(), address));
+                }
+            }
+        }
+        if (!requests.isEmpty()) {
+            fSymbolCache.resolveAll(requests);
+        }
+    }
+
+    /**
+     * Get the address of a function symbol, if it is an address: a number or
+     * a string of hexadecimal digits
+     */
+    private static @Nullable Long getAddress(Object nameValue) {
+        if (nameValue instanceof String) {
+            String name = (String) nameValue;
+            if (REGEX.matcher(name).matches()) {
+                try {
+                    return Long.parseLong(name, 16);
+                } catch (NumberFormatException e) {
+                    // Not an address
+                }
+            }
+            return null;
+        } else if (nameValue instanceof Integer) {
+            return ((Integer) nameValue).longValue();
+        } else if (nameValue instanceof Long) {
+            return (Long) nameValue;
+        }
+        return null;
+    }
+
     /**
      * Invalidate the function names cache and load the symbol providers. This
      * function should be used at the beginning of the provider, or whenever new
-     * symbol providers are added
+     * symbol providers are added. The function names are shared with the other
+     * views of the trace, so they are invalidated for those views too.
      *
      * @param monitor
      *            A progress monitor to follow this operation
      */
     public void resetFunctionNames(IProgressMonitor monitor) {
-        fTimeEventNames.invalidateAll();
-        synchronized (fProviders) {
-            Collection<@NonNull ISymbolProvider> symbolProviders = SymbolProviderManager.getInstance().getSymbolProviders(getTrace());
-            SubMonitor sub = SubMonitor.convert(monitor, "CallStackDataProvider#resetFunctionNames", symbolProviders.size()); //$NON-NLS-1$
-            fProviders.clear();
-            for (ISymbolProvider symbolProvider : symbolProviders) {
-                fProviders.add(symbolProvider);
-                symbolProvider.loadConfiguration(sub);
-                sub.worked(1);
-            }
+        fSymbolCache.invalidate();
+        Collection<ISymbolProvider> symbolProviders = fSymbolCache.getSymbolProviders();
+        SubMonitor sub = SubMonitor.convert(monitor, "CallStackDataProvider#resetFunctionNames", symbolProviders.size()); //$NON-NLS-1$
+        for (ISymbolProvider symbolProvider : symbolProviders) {
+            symbolProvider.loadConfiguration(sub);
+            sub.worked(1);
         }
     }
 
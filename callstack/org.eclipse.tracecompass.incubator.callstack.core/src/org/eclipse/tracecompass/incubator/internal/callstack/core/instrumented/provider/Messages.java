@@ -36,6 +36,9 @@ public class Messages extends NLS {
     /** Messages.FlameChartDataProvider_Title */
     public static @Nullable String FlameChartDataProvider_Description;
 
+    /** Label of a state summarizing many calls */
+    public static @Nullable String FlameChartDataProvider_SummarizedCalls;
+
     static {
         // initialize resource bundle
         NLS.initializeMessages(BUNDLE_NAME, Messages.class);
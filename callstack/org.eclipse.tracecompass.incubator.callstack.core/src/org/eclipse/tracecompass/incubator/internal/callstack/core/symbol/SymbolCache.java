@@ -0,0 +1,318 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.callstack.core.symbol;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
+import org.eclipse.tracecompass.tmf.core.signal.TmfSignalManager;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceClosedSignal;
+import org.eclipse.tracecompass.tmf.core.symbols.ISymbolProvider;
+import org.eclipse.tracecompass.tmf.core.symbols.SymbolProviderManager;
+import org.eclipse.tracecompass.tmf.core.symbols.SymbolProviderUtils;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A cache of the names of the symbols of a trace, shared by all the call stack
+ * analyses and data providers of this trace, so that each address is resolved
+ * only once with the symbol providers.
+ *
+ * The symbols are keyed by process ID, address and time window. The symbol
+ * providers may map an address to different symbols over time, but they do
+ * not tell for how long a symbol is valid, so the time is split in windows of
+ * an arbitrary duration and a name resolved at a time is reused for the other
+ * times in the same window. A symbol that changes within a window, for
+ * instance when a library is loaded at the address of another one, keeps the
+ * name it had when it was first resolved in this window.
+ *
+ * The cache of a trace is removed when the trace is closed. It only keeps a
+ * weak reference to its trace, so that a trace that is not closed, for
+ * instance in tests, can still be garbage collected with its cache.
+ */
+public final class SymbolCache {
+
+    /**
+     * The duration of the time window in which a resolved symbol is reused,
+     * one second. It is not the validity of the symbols, which the symbol
+     * providers do not give.
+     */
+    private static final long TIME_WINDOW = 1000000000L;
+    private static final long MAXIMUM_SIZE = 100000;
+
+    private static final LoadingCache<ITmfTrace, SymbolCache> INSTANCES = Objects.requireNonNull(CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<ITmfTrace, SymbolCache>() {
+                @Override
+                public SymbolCache load(ITmfTrace trace) {
+                    return new SymbolCache(trace);
+                }
+            }));
+
+    private static @Nullable TraceClosedListener sListener = null;
+
+    private final WeakReference<ITmfTrace> fTrace;
+    private final Cache<SymbolKey, String> fNames = Objects.requireNonNull(CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .recordStats()
+            .build());
+    private volatile @Nullable List<ISymbolProvider> fProviders = null;
+
+    /**
+     * The key of a symbol: its process ID, address and time window
+     */
+    private static final class SymbolKey {
+        private final int fPid;
+        private final long fAddress;
+        private final long fWindow;
+
+        public SymbolKey(int pid, long address, long time) {
+            fPid = pid;
+            fAddress = address;
+            fWindow = Math.floorDiv(time, TIME_WINDOW);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fPid, fAddress, fWindow);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof SymbolKey)) {
+                return false;
+            }
+            SymbolKey other = (SymbolKey) obj;
+            return fPid == other.fPid && fAddress == other.fAddress && fWindow == other.fWindow;
+        }
+    }
+
+    /**
+     * A request to resolve a symbol, for batch resolution
+     */
+    public static final class SymbolRequest {
+        private final int fPid;
+        private final long fTime;
+        private final long fAddress;
+
+        /**
+         * Constructor
+         *
+         * @param pid
+         *            The process ID
+         * @param time
+         *            The time at which to resolve the address
+         * @param address
+         *            The address to resolve
+         */
+        public SymbolRequest(int pid, long time, long address) {
+            fPid = pid;
+            fTime = time;
+            fAddress = address;
+        }
+    }
+
+    /**
+     * Signal listener that removes the symbol caches of the closed traces
+     */
+    public static final class TraceClosedListener {
+
+        /**
+         * Remove the symbol caches of a closed trace, and of the traces of a
+         * closed experiment
+         *
+         * @param signal
+         *            The trace closed signal
+         */
+        @TmfSignalHandler
+        public void traceClosed(TmfTraceClosedSignal signal) {
+            for (ITmfTrace trace : TmfTraceManager.getTraceSetWithExperiment(signal.getTrace())) {
+                INSTANCES.invalidate(trace);
+            }
+        }
+    }
+
+    private SymbolCache(ITmfTrace trace) {
+        fTrace = new WeakReference<>(trace);
+    }
+
+    /**
+     * Register the listener that removes the symbol caches of the closed
+     * traces. Called when the plug-in starts.
+     */
+    public static synchronized void init() {
+        if (sListener == null) {
+            TraceClosedListener listener = new TraceClosedListener();
+            TmfSignalManager.register(listener);
+            sListener = listener;
+        }
+    }
+
+    /**
+     * Deregister the listener of the closed traces and remove all the symbol
+     * caches. Called when the plug-in stops.
+     */
+    public static synchronized void dispose() {
+        TraceClosedListener listener = sListener;
+        if (listener != null) {
+            TmfSignalManager.deregister(listener);
+            sListener = null;
+        }
+        INSTANCES.invalidateAll();
+    }
+
+    /**
+     * Get the symbol cache of a trace
+     *
+     * @param trace
+     *            The trace
+     * @return The symbol cache of this trace
+     */
+    public static SymbolCache getInstance(ITmfTrace trace) {
+        return INSTANCES.getUnchecked(trace);
+    }
+
+    /**
+     * Get the symbol providers of the trace
+     *
+     * @return The symbol providers
+     */
+    public Collection<ISymbolProvider> getSymbolProviders() {
+        List<ISymbolProvider> providers = fProviders;
+        if (providers == null) {
+            ITmfTrace trace = fTrace.get();
+            if (trace == null) {
+                return Collections.emptyList();
+            }
+            providers = ImmutableList.copyOf(SymbolProviderManager.getInstance().getSymbolProviders(trace));
+            fProviders = providers;
+        }
+        return providers;
+    }
+
+    /**
+     * Get the name of the symbol at an address
+     *
+     * @param pid
+     *            The process ID
+     * @param time
+     *            The time at which to resolve the address
+     * @param address
+     *            The address to resolve
+     * @return The name of the symbol, or the address in hexadecimal if no
+     *         provider can resolve it
+     */
+    public String resolve(int pid, long time, long address) {
+        SymbolKey key = new SymbolKey(pid, address, time);
+        String name = fNames.getIfPresent(key);
+        if (name == null) {
+            name = SymbolProviderUtils.getSymbolText(getSymbolProviders(), pid, time, address);
+            fNames.put(key, name);
+        }
+        return name;
+    }
+
+    /**
+     * Get the names of many symbols. The requests for the same symbol are
+     * merged and the symbols that are not in the cache are each resolved only
+     * once, even if they are requested many times.
+     *
+     * @param requests
+     *            The symbols to resolve
+     * @return The names of the symbols, in the order of the requests
+     */
+    public String[] resolveAll(List<SymbolRequest> requests) {
+        Map<SymbolKey, SymbolRequest> unique = new LinkedHashMap<>();
+        SymbolKey[] keys = new SymbolKey[requests.size()];
+        for (int i = 0; i < keys.length; i++) {
+            SymbolRequest request = requests.get(i);
+            SymbolKey key = new SymbolKey(request.fPid, request.fAddress, request.fTime);
+            keys[i] = key;
+            unique.putIfAbsent(key, request);
+        }
+        Map<SymbolKey, String> names = new LinkedHashMap<>(fNames.getAllPresent(unique.keySet()));
+        if (names.size() < unique.size()) {
+            Collection<ISymbolProvider> providers = getSymbolProviders();
+            Map<SymbolKey, String> missing = new LinkedHashMap<>();
+            for (Map.Entry<SymbolKey, SymbolRequest> entry : unique.entrySet()) {
+                if (!names.containsKey(entry.getKey())) {
+                    SymbolRequest request = entry.getValue();
+                    missing.put(entry.getKey(), SymbolProviderUtils.getSymbolText(providers, request.fPid, request.fTime, request.fAddress));
+                }
+            }
+            fNames.putAll(missing);
+            names.putAll(missing);
+        }
+        String[] result = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = Objects.requireNonNull(names.get(keys[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Get the statistics of the cache: the hits and misses of the names
+     * requested since the cache was created
+     *
+     * @return The statistics of the cache
+     */
+    public CacheStats getStats() {
+        return fNames.stats();
+    }
+
+    /**
+     * Get the number of names in the cache
+     *
+     * @return The number of names
+     */
+    public long size() {
+        return fNames.size();
+    }
+
+    /**
+     * Clear the resolved names and get the symbol providers again, for
+     * instance when the configuration of the symbol providers changed
+     */
+    public void invalidate() {
+        fProviders = null;
+        fNames.invalidateAll();
+    }
+
+    /**
+     * Set the symbol providers to use instead of the ones of the trace, and
+     * clear the resolved names. The providers of the trace are used again
+     * after {@link #invalidate()}.
+     *
+     * @param providers
+     *            The symbol providers
+     */
+    @VisibleForTesting
+    public void setSymbolProviders(Collection<ISymbolProvider> providers) {
+        fProviders = ImmutableList.copyOf(providers);
+        fNames.invalidateAll();
+    }
+}
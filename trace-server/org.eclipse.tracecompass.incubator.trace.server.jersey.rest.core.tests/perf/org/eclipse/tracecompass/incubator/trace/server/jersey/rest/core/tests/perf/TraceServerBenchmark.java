@@ -0,0 +1,318 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.perf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.model.views.QueryParameters;
+import org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.stubs.ExperimentModelStub;
+import org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.stubs.TgEntryModelStub;
+import org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.stubs.TgStatesOutputResponseStub;
+import org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.stubs.TgTreeOutputResponseStub;
+import org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.stubs.TimeGraphEntryStub;
+import org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.stubs.TimeGraphRowStub;
+import org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.stubs.TimeGraphStateStub;
+import org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.utils.RestServerTest;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Load test of the trace server REST layer. The test web application is
+ * started on the test port with the bundled test traces, and concurrent
+ * clients replay the session of a front-end opening a time graph view: fetch
+ * the tree, fetch the states of all entries, fetch a tooltip, then zoom in on
+ * a random range.
+ *
+ * All the clients run each step together, so that the elapsed time, CPU time
+ * and heap usage measured by the performance meter of a step, and the bytes
+ * allocated during the step, can be attributed to its endpoint. The latency
+ * of each request is also recorded, and the median and 99th percentile
+ * latencies and the bytes allocated per request of each endpoint are printed
+ * next to the results of the meters. The number of concurrent clients and of
+ * sessions per client can be specified with the
+ * {@value #PROPERTY_CONCURRENCY} and {@value #PROPERTY_SESSIONS} system
+ * properties.
+ */
+public class TraceServerBenchmark extends RestServerTest {
+
+    /**
+     * Test ID for the trace server benchmarks
+     */
+    public static final String TEST_ID = "org.eclipse.tracecompass.incubator#TraceServer#";
+
+    private static final String PROPERTY_CONCURRENCY = "traceserver.benchmark.concurrency";
+    private static final String PROPERTY_SESSIONS = "traceserver.benchmark.sessions";
+    private static final int CONCURRENCY = Math.max(1, Integer.getInteger(PROPERTY_CONCURRENCY, 4));
+    private static final int SESSIONS = Math.max(1, Integer.getInteger(PROPERTY_SESSIONS, 20));
+
+    private static final String CALL_STACK_DATAPROVIDER_ID = "org.eclipse.tracecompass.internal.analysis.profiling.callstack.provider.CallStackDataProvider";
+    private static final String REQUESTED_TIMERANGE_KEY = "requested_timerange";
+    private static final String REQUESTED_TIMES_KEY = "requested_times";
+    private static final String REQUESTED_ITEMS_KEY = "requested_items";
+    private static final String REQUESTED_ELEMENT_KEY = "requested_element";
+    private static final String ELEMENT_TYPE = "elementType";
+    private static final String STATE = "state";
+    private static final String TIME = "time";
+    private static final String DURATION = "duration";
+    private static final String START = "start";
+    private static final String END = "end";
+    private static final String NB_TIMES = "nbTimes";
+    /** Number of samples of a time graph view of typical width */
+    private static final int VIEW_WIDTH = 1000;
+    private static final int MAX_ITER = 100;
+
+    private static final byte[] SEED = { 0x54, 0x53, 0x50 };
+
+    private enum Step {
+        TREE("Tree"),
+        STATES("States"),
+        TOOLTIP("Tooltip"),
+        ZOOM("Zoomed states");
+
+        private final String fLabel;
+
+        Step(String label) {
+            fLabel = label;
+        }
+    }
+
+    /**
+     * Run the load test with the callstack time graph of the UST trace
+     *
+     * @throws InterruptedException
+     *             if the benchmark is interrupted
+     * @throws ExecutionException
+     *             if a client fails
+     */
+    @Test
+    public void runTimeGraphSessions() throws InterruptedException, ExecutionException {
+        ExperimentModelStub exp = assertPostExperiment(CONTEXT_SWITCHES_UST_STUB.getName(), CONTEXT_SWITCHES_UST_STUB);
+        String expUUID = exp.getUUID().toString();
+        long start = exp.getStart();
+        long end = exp.getEnd();
+        List<Integer> items = waitForTree(expUUID, start, end);
+
+        Performance perf = Performance.getDefault();
+        Map<Step, PerformanceMeter> meters = new HashMap<>();
+        for (Step step : Step.values()) {
+            PerformanceMeter pm = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + step.fLabel));
+            perf.tagAsSummary(pm, step.fLabel, Dimension.ELAPSED_PROCESS);
+            meters.put(step, pm);
+        }
+        Map<Step, List<Long>> latencies = new HashMap<>();
+        Map<Step, long[]> allocations = new HashMap<>();
+        for (Step step : Step.values()) {
+            latencies.put(step, Collections.synchronizedList(new ArrayList<>()));
+            // Bytes allocated and nanoseconds elapsed during the step
+            allocations.put(step, new long[2]);
+        }
+
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        try {
+            SecureRandom random = new SecureRandom(SEED);
+            for (int session = 0; session < SESSIONS; session++) {
+                // Each client zooms in on its own range
+                List<long[]> zoomRanges = new ArrayList<>();
+                for (int client = 0; client < CONCURRENCY; client++) {
+                    long delta = end - start;
+                    long zoomStart = start + Math.floorMod(random.nextLong(), delta - delta / 10);
+                    zoomRanges.add(new long[] { zoomStart, zoomStart + delta / 10 });
+                }
+                List<TimeGraphStateStub> tooltipStates = new ArrayList<>();
+                List<Long> tooltipEntries = new ArrayList<>();
+                for (Step step : Step.values()) {
+                    List<Future<?>> futures = new ArrayList<>();
+                    long allocated = getAllocatedBytes();
+                    long stepStart = System.nanoTime();
+                    meters.get(step).start();
+                    for (int client = 0; client < CONCURRENCY; client++) {
+                        int clientIndex = client;
+                        futures.add(clients.submit(() -> {
+                            long requestStart = System.nanoTime();
+                            switch (step) {
+                            case TREE:
+                                fetchTree(expUUID, start, end);
+                                break;
+                            case STATES:
+                                TimeGraphRowStub row = fetchStates(expUUID, items, start, end).get(0);
+                                synchronized (tooltipStates) {
+                                    tooltipStates.add(row.getStates().get(0));
+                                    tooltipEntries.add(row.getEntryId());
+                                }
+                                break;
+                            case TOOLTIP:
+                                // Only read the state under the lock, the tooltips are fetched concurrently
+                                TimeGraphStateStub state;
+                                long entryId;
+                                synchronized (tooltipStates) {
+                                    state = tooltipStates.get(clientIndex);
+                                    entryId = tooltipEntries.get(clientIndex);
+                                }
+                                fetchTooltip(expUUID, entryId, state);
+                                break;
+                            case ZOOM:
+                            default:
+                                long[] range = zoomRanges.get(clientIndex);
+                                fetchStates(expUUID, items, range[0], range[1]);
+                                break;
+                            }
+                            latencies.get(step).add(System.nanoTime() - requestStart);
+                            return null;
+                        }));
+                    }
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                    meters.get(step).stop();
+                    long[] allocation = allocations.get(step);
+                    allocation[0] += getAllocatedBytes() - allocated;
+                    allocation[1] += System.nanoTime() - stepStart;
+                }
+            }
+        } finally {
+            clients.shutdown();
+            clients.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        System.out.println(String.format("Trace server benchmark: %d concurrent clients, %d sessions", CONCURRENCY, SESSIONS)); //$NON-NLS-1$
+        for (Step step : Step.values()) {
+            meters.get(step).commit();
+            List<Long> stepLatencies = new ArrayList<>(latencies.get(step));
+            Collections.sort(stepLatencies);
+            long[] allocation = allocations.get(step);
+            double seconds = allocation[1] / 1e9;
+            System.out.println(String.format("%-15s p50 %8.2f ms  p99 %8.2f ms  allocation %8.1f MB/s  %10d B/request", //$NON-NLS-1$
+                    step.fLabel,
+                    percentile(stepLatencies, 50) / 1e6,
+                    percentile(stepLatencies, 99) / 1e6,
+                    seconds > 0 ? allocation[0] / seconds / (1024 * 1024) : 0.0,
+                    allocation[0] / Math.max(1, stepLatencies.size())));
+        }
+    }
+
+    private static List<Integer> waitForTree(String expUUID, long start, long end) throws InterruptedException {
+        // Wait for the analysis to complete, so that the sessions only measure the queries
+        TgTreeOutputResponseStub responseModel = fetchTree(expUUID, start, end);
+        int iteration = 0;
+        while ((responseModel.isRunning() || responseModel.getModel() == null) && iteration < MAX_ITER) {
+            Thread.sleep(100);
+            responseModel = fetchTree(expUUID, start, end);
+            iteration++;
+        }
+        TgEntryModelStub model = responseModel.getModel();
+        assertNotNull("The model is null, maybe the analysis did not run long enough?" + responseModel, model);
+        List<Integer> items = new ArrayList<>();
+        for (TimeGraphEntryStub entry : model.getEntries()) {
+            items.add(entry.getId());
+        }
+        assertFalse(items.isEmpty());
+        return items;
+    }
+
+    private static TgTreeOutputResponseStub fetchTree(String expUUID, long start, long end) {
+        WebTarget tree = getTimeGraphTreeEndpoint(expUUID, CALL_STACK_DATAPROVIDER_ID);
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put(REQUESTED_TIMES_KEY, ImmutableList.of(start, end));
+        try (Response response = tree.request().post(Entity.json(new QueryParameters(parameters, Collections.emptyList())))) {
+            assertEquals(200, response.getStatus());
+            return Objects.requireNonNull(response.readEntity(TgTreeOutputResponseStub.class));
+        }
+    }
+
+    private static List<TimeGraphRowStub> fetchStates(String expUUID, List<Integer> items, long start, long end) {
+        WebTarget states = getTimeGraphStatesEndpoint(expUUID, CALL_STACK_DATAPROVIDER_ID);
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put(REQUESTED_TIMERANGE_KEY, ImmutableMap.of(START, start, END, end, NB_TIMES, VIEW_WIDTH));
+        parameters.put(REQUESTED_ITEMS_KEY, items);
+        try (Response response = states.request().post(Entity.json(new QueryParameters(parameters, Collections.emptyList())))) {
+            assertEquals(200, response.getStatus());
+            TgStatesOutputResponseStub model = Objects.requireNonNull(response.readEntity(TgStatesOutputResponseStub.class));
+            List<TimeGraphRowStub> rows = new ArrayList<>();
+            for (TimeGraphRowStub row : model.getModel().getRows()) {
+                if (!row.getStates().isEmpty()) {
+                    rows.add(row);
+                }
+            }
+            assertFalse(rows.isEmpty());
+            return rows;
+        }
+    }
+
+    private static void fetchTooltip(String expUUID, long entryId, TimeGraphStateStub state) {
+        WebTarget tooltip = getTimeGraphTooltipEndpoint(expUUID, CALL_STACK_DATAPROVIDER_ID);
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put(REQUESTED_ITEMS_KEY, Collections.singletonList(entryId));
+        parameters.put(REQUESTED_TIMES_KEY, Collections.singletonList(state.getStartTime()));
+        parameters.put(REQUESTED_ELEMENT_KEY, ImmutableMap.of(
+                ELEMENT_TYPE, STATE,
+                TIME, state.getStartTime(),
+                DURATION, state.getEndTime() - state.getStartTime()));
+        try (Response response = tooltip.request().post(Entity.json(new QueryParameters(parameters, Collections.emptyList())))) {
+            assertEquals(200, response.getStatus());
+        }
+    }
+
+    /**
+     * Get the number of bytes allocated by all the live threads of the JVM,
+     * the clients and the server threads. The threads are not created during
+     * the steps, as both use pools, so the difference between two calls is the
+     * allocation of the requests in between.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return 0L;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        long total = 0L;
+        for (long allocated : sunBean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    private static long percentile(List<Long> sortedValues, int percentile) {
+        if (sortedValues.isEmpty()) {
+            return 0L;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedValues.size()) - 1;
+        return sortedValues.get(Math.max(0, Math.min(index, sortedValues.size() - 1)));
+    }
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services.DataProviderResponseCache;
+import org.eclipse.tracecompass.tmf.core.model.CommonStatusMessage;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphRowModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphState;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphRowModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphState;
+import org.eclipse.tracecompass.tmf.core.response.ITmfResponse;
+import org.eclipse.tracecompass.tmf.core.response.TmfModelResponse;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+/**
+ * Test the {@link DataProviderResponseCache} class
+ */
+public class DataProviderResponseCacheTest {
+
+    private static final String OUTPUT_ID = "timegraph";
+    private static final String ENDPOINT = "states";
+
+    /**
+     * Fetcher of a time graph response with the given status and model,
+     * counting the number of times it is called
+     */
+    private static class FetcherStub {
+        private final ITmfResponse.Status fStatus;
+        private final TimeGraphModel fModel;
+        private final AtomicInteger fFetches = new AtomicInteger();
+
+        public FetcherStub(ITmfResponse.Status status, TimeGraphModel model) {
+            fStatus = status;
+            fModel = model;
+        }
+
+        public TmfModelResponse<TimeGraphModel> fetch() {
+            fFetches.incrementAndGet();
+            return new TmfModelResponse<>(fModel, fStatus, CommonStatusMessage.COMPLETED);
+        }
+
+        public int getFetchCount() {
+            return fFetches.get();
+        }
+    }
+
+    private static TimeGraphModel createModel(int nbStates, String label) {
+        ITimeGraphState state = new TimeGraphState(0, 10, 0, label);
+        List<@NonNull ITimeGraphState> states = Collections.nCopies(nbStates, state);
+        List<@NonNull ITimeGraphRowModel> rows = Collections.singletonList(new TimeGraphRowModel(1, states));
+        return new TimeGraphModel(rows);
+    }
+
+    private static Map<String, Object> createParameters(long start) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("requested_times", List.of(start, start + 100L));
+        params.put("requested_items", List.of(1L, 2L));
+        return params;
+    }
+
+    private static TmfModelResponse<TimeGraphModel> fetch(UUID expUUID, Map<String, Object> params, FetcherStub fetcher) {
+        return DataProviderResponseCache.getOrFetch(expUUID, OUTPUT_ID, ENDPOINT, params, fetcher::fetch);
+    }
+
+    /**
+     * Test that completed responses are served from the cache, also for
+     * equivalent parameters, while the responses that are running or failed
+     * are fetched again
+     */
+    @Test
+    public void testCompletedOnly() {
+        UUID expUUID = UUID.randomUUID();
+        FetcherStub completed = new FetcherStub(ITmfResponse.Status.COMPLETED, createModel(1, "state"));
+        TmfModelResponse<TimeGraphModel> response = fetch(expUUID, createParameters(0), completed);
+        assertSame(response, fetch(expUUID, createParameters(0), completed));
+        assertEquals(1, completed.getFetchCount());
+
+        // Same parameters in another order and with integers instead of longs
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("requested_items", List.of(1, 2));
+        params.put("requested_times", List.of(0, 100));
+        assertSame(response, fetch(expUUID, params, completed));
+        assertEquals(1, completed.getFetchCount());
+
+        // Another endpoint or output is not served the same response
+        DataProviderResponseCache.getOrFetch(expUUID, OUTPUT_ID, "xy", createParameters(0), completed::fetch);
+        DataProviderResponseCache.getOrFetch(expUUID, "other", ENDPOINT, createParameters(0), completed::fetch);
+        assertEquals(3, completed.getFetchCount());
+
+        FetcherStub running = new FetcherStub(ITmfResponse.Status.RUNNING, createModel(1, "state"));
+        fetch(expUUID, createParameters(1000), running);
+        fetch(expUUID, createParameters(1000), running);
+        assertEquals(2, running.getFetchCount());
+
+        FetcherStub failed = new FetcherStub(ITmfResponse.Status.FAILED, createModel(1, "state"));
+        fetch(expUUID, createParameters(2000), failed);
+        fetch(expUUID, createParameters(2000), failed);
+        assertEquals(2, failed.getFetchCount());
+
+        // The running response is cached once it is completed
+        FetcherStub done = new FetcherStub(ITmfResponse.Status.COMPLETED, createModel(1, "state"));
+        fetch(expUUID, createParameters(1000), done);
+        fetch(expUUID, createParameters(1000), done);
+        assertEquals(1, done.getFetchCount());
+    }
+
+    /**
+     * Test that the responses are weighed by their content, a response
+     * heavier than the default cache size being evicted while lighter ones are
+     * kept
+     */
+    @Test
+    public void testEviction() {
+        UUID expUUID = UUID.randomUUID();
+        // Each character weighs 2 bytes, make the model weigh more than 256 MB
+        // with the same state repeated
+        String label = Strings.repeat("x", 1024 * 1024);
+        FetcherStub heavy = new FetcherStub(ITmfResponse.Status.COMPLETED, createModel(200, label));
+        long evictions = DataProviderResponseCache.getStatistics().get("evictions");
+        fetch(expUUID, createParameters(0), heavy);
+        fetch(expUUID, createParameters(0), heavy);
+        assertEquals(2, heavy.getFetchCount());
+        assertTrue(DataProviderResponseCache.getStatistics().get("evictions") >= evictions + 2);
+
+        FetcherStub light = new FetcherStub(ITmfResponse.Status.COMPLETED, createModel(200, "state"));
+        fetch(expUUID, createParameters(1000), light);
+        fetch(expUUID, createParameters(1000), light);
+        assertEquals(1, light.getFetchCount());
+    }
+
+    /**
+     * Test that the responses of an experiment are fetched again after they
+     * are invalidated, as when the experiment is deleted, while those of other
+     * experiments are kept until all the responses are invalidated, as when a
+     * configuration changes
+     */
+    @Test
+    public void testInvalidation() {
+        UUID expUUID = UUID.randomUUID();
+        UUID otherUUID = UUID.randomUUID();
+        FetcherStub fetcher = new FetcherStub(ITmfResponse.Status.COMPLETED, createModel(1, "state"));
+        FetcherStub otherFetcher = new FetcherStub(ITmfResponse.Status.COMPLETED, createModel(1, "state"));
+
+        fetch(expUUID, createParameters(0), fetcher);
+        fetch(otherUUID, createParameters(0), otherFetcher);
+        fetch(expUUID, createParameters(0), fetcher);
+        fetch(otherUUID, createParameters(0), otherFetcher);
+        assertEquals(1, fetcher.getFetchCount());
+        assertEquals(1, otherFetcher.getFetchCount());
+
+        DataProviderResponseCache.invalidate(expUUID);
+        fetch(expUUID, createParameters(0), fetcher);
+        fetch(otherUUID, createParameters(0), otherFetcher);
+        assertEquals(2, fetcher.getFetchCount());
+        assertEquals(1, otherFetcher.getFetchCount());
+
+        DataProviderResponseCache.invalidateAll();
+        fetch(expUUID, createParameters(0), fetcher);
+        fetch(otherUUID, createParameters(0), otherFetcher);
+        assertEquals(3, fetcher.getFetchCount());
+        assertEquals(2, otherFetcher.getFetchCount());
+    }
+}
@@ -61,6 +61,12 @@ public class ExperimentManagerServiceTest extends RestServerTest {
     private static final String TEST = "test";
     private static final @NonNull ImmutableSet<TraceModelStub> CONTEXT_SWITCH_SET = ImmutableSet.of(CONTEXT_SWITCHES_KERNEL_STUB, CONTEXT_SWITCHES_UST_STUB);
     private static final @NonNull ExperimentModelStub EXPECTED = new ExperimentModelStub(TEST, CONTEXT_SWITCH_SET);
+    private static final String PREFER = "Prefer";
+    private static final String RESPOND_ASYNC = "respond-async";
+    private static final String PROGRESS = "progress";
+    private static final String NB_EVENTS = "nbEvents";
+    private static final String COMPLETED = "COMPLETED";
+    private static final int MAX_PROGRESS_POLLS = 20;
 
     /**
      * Basic test for the {@link ExperimentManagerService}
@@ -145,6 +151,48 @@ public class ExperimentManagerServiceTest extends RestServerTest {
 
     }
 
+    /**
+     * Test posting an experiment that is opened in the background, and waiting
+     * for its indexing progress
+     */
+    @Test
+    public void testAsyncPost() {
+        WebTarget application = getApplicationEndpoint();
+        WebTarget traces = application.path(TRACES);
+        WebTarget expTarget = application.path(EXPERIMENTS);
+
+        TraceModelStub ustStub = assertPost(traces, CONTEXT_SWITCHES_UST_STUB);
+        TraceModelStub kernelStub = assertPost(traces, CONTEXT_SWITCHES_KERNEL_STUB);
+
+        List<String> traceUUIDs = new ArrayList<>();
+        traceUUIDs.add(ustStub.getUUID().toString());
+        traceUUIDs.add(kernelStub.getUUID().toString());
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put(NAME, EXPECTED.getName());
+        parameters.put(TRACES, traceUUIDs);
+
+        Response response = expTarget.request().header(PREFER, RESPOND_ASYNC).post(Entity.json(new QueryParameters(parameters, Collections.emptyList())));
+        assertEquals("Status of asynchronous post", Status.ACCEPTED.getStatusCode(), response.getStatus());
+        ExperimentModelStub expStub = response.readEntity(ExperimentModelStub.class);
+        assertEquals("Failed to POST the experiment", EXPECTED, expStub);
+        response.close();
+
+        // Wait for the experiment to be opened and indexed
+        WebTarget progress = expTarget.path(expStub.getUUID().toString()).path(PROGRESS);
+        ExperimentModelStub progressStub = expStub;
+        for (int i = 0; i < MAX_PROGRESS_POLLS && !COMPLETED.equals(progressStub.getIndexingStatus()); i++) {
+            progressStub = progress.queryParam(NB_EVENTS, progressStub.getNbEvents()).request().get(ExperimentModelStub.class);
+        }
+        assertEquals("Experiment should be indexed", COMPLETED, progressStub.getIndexingStatus());
+        assertEquals("Failed to get the experiment progress", EXPECTED, progressStub);
+        assertTrue("Experiment should have events", progressStub.getNbEvents() > 0);
+        assertEquals("Failed to get the experiment by its UUID", EXPECTED, expTarget.path(expStub.getUUID().toString()).request().get(ExperimentModelStub.class));
+
+        assertEquals("Failed to DELETE the experiment", EXPECTED, expTarget.path(expStub.getUUID().toString()).request().delete().readEntity(ExperimentModelStub.class));
+        assertEquals("experiment set should be empty at this point", Collections.emptySet(), getExperiments(expTarget));
+    }
+
     /**
      * Test posting an experiment with different conflicting situations
      */
@@ -12,6 +12,7 @@
 package org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.services;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Map;
 
@@ -45,6 +46,10 @@ public class HealthServiceTest extends RestServerTest {
         assertEquals("Health reponse should be OK", 200, response.getStatus());
         Map<Object, Object> responseValues = response.readEntity(Map.class);
         assertEquals("UP", responseValues.get("status"));
+        Object cacheStatistics = responseValues.get("responseCache");
+        assertTrue(cacheStatistics instanceof Map);
+        assertTrue(((Map<?, ?>) cacheStatistics).containsKey("hits"));
+        assertTrue(((Map<?, ?>) cacheStatistics).containsKey("misses"));
 
     }
 
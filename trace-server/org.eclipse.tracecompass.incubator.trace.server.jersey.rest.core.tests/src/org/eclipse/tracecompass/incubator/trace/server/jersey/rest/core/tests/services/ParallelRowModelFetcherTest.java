@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services.ParallelRowModelFetcher;
+import org.eclipse.tracecompass.tmf.core.dataprovider.DataProviderParameterUtils;
+import org.eclipse.tracecompass.tmf.core.model.CommonStatusMessage;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphArrow;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphDataProvider;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphEntryModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphRowModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphRowModel;
+import org.eclipse.tracecompass.tmf.core.model.tree.TmfTreeModel;
+import org.eclipse.tracecompass.tmf.core.response.ITmfResponse;
+import org.eclipse.tracecompass.tmf.core.response.TmfModelResponse;
+import org.junit.Test;
+
+/**
+ * Test the {@link ParallelRowModelFetcher} class
+ */
+public class ParallelRowModelFetcherTest {
+
+    private static final int NB_ITEMS = 1000;
+    /* Maximum time for a chunk to wait for the cancellation, in seconds */
+    private static final long CANCEL_TIMEOUT = 10;
+
+    /**
+     * Time graph provider with one empty row per requested item. The chunk
+     * with the first item is the slowest to complete, or fails and the other
+     * chunks wait until the request is cancelled.
+     */
+    private static class TimeGraphProviderStub implements ITimeGraphDataProvider<@NonNull ITimeGraphEntryModel> {
+        private final boolean fFailFirst;
+        private final AtomicInteger fFetches = new AtomicInteger();
+        private final AtomicInteger fCancelled = new AtomicInteger();
+
+        public TimeGraphProviderStub(boolean failFirst) {
+            fFailFirst = failFirst;
+        }
+
+        public int getFetchCount() {
+            return fFetches.get();
+        }
+
+        public int getCancelledCount() {
+            return fCancelled.get();
+        }
+
+        @Override
+        public TmfModelResponse<TimeGraphModel> fetchRowModel(Map<String, Object> fetchParameters, @Nullable IProgressMonitor monitor) {
+            fFetches.incrementAndGet();
+            List<Long> items = DataProviderParameterUtils.extractSelectedItems(fetchParameters);
+            assertNotNull(items);
+            boolean first = items.contains(0L);
+            if (first && fFailFirst) {
+                return new TmfModelResponse<>(null, ITmfResponse.Status.FAILED, "Failed chunk");
+            }
+            try {
+                if (first) {
+                    // Complete after the other chunks
+                    Thread.sleep(100);
+                } else if (fFailFirst && monitor != null) {
+                    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CANCEL_TIMEOUT);
+                    while (!monitor.isCanceled() && System.nanoTime() < deadline) {
+                        Thread.sleep(1);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (monitor != null && monitor.isCanceled()) {
+                fCancelled.incrementAndGet();
+                return new TmfModelResponse<>(null, ITmfResponse.Status.CANCELLED, CommonStatusMessage.TASK_CANCELLED);
+            }
+            List<@NonNull ITimeGraphRowModel> rows = new ArrayList<>();
+            for (Long item : items) {
+                rows.add(new TimeGraphRowModel(item, Collections.emptyList()));
+            }
+            return new TmfModelResponse<>(new TimeGraphModel(rows), ITmfResponse.Status.COMPLETED, CommonStatusMessage.COMPLETED);
+        }
+
+        @Override
+        public TmfModelResponse<TmfTreeModel<@NonNull ITimeGraphEntryModel>> fetchTree(Map<String, Object> fetchParameters, @Nullable IProgressMonitor monitor) {
+            return new TmfModelResponse<>(null, ITmfResponse.Status.COMPLETED, CommonStatusMessage.COMPLETED);
+        }
+
+        @Override
+        public TmfModelResponse<List<ITimeGraphArrow>> fetchArrows(Map<String, Object> fetchParameters, @Nullable IProgressMonitor monitor) {
+            return new TmfModelResponse<>(null, ITmfResponse.Status.COMPLETED, CommonStatusMessage.COMPLETED);
+        }
+
+        @Override
+        public TmfModelResponse<Map<String, String>> fetchTooltip(Map<String, Object> fetchParameters, @Nullable IProgressMonitor monitor) {
+            return new TmfModelResponse<>(null, ITmfResponse.Status.COMPLETED, CommonStatusMessage.COMPLETED);
+        }
+
+        @Override
+        public String getId() {
+            return "timegraph";
+        }
+    }
+
+    private static List<Long> createItems() {
+        List<Long> items = new ArrayList<>();
+        for (long item = 0; item < NB_ITEMS; item++) {
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static Map<String, Object> createParameters(List<Long> items) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(DataProviderParameterUtils.REQUESTED_TIME_KEY, List.of(0L, 100L));
+        params.put(DataProviderParameterUtils.REQUESTED_ITEMS_KEY, items);
+        return params;
+    }
+
+    /**
+     * Test that the rows of the chunks are merged in the order of the
+     * requested items, even if the first chunk completes last
+     */
+    @Test
+    public void testMergeInOrder() {
+        TimeGraphProviderStub provider = new TimeGraphProviderStub(false);
+        List<Long> items = createItems();
+        IProgressMonitor monitor = new NullProgressMonitor();
+        TmfModelResponse<TimeGraphModel> response = ParallelRowModelFetcher.fetchRowModel(provider, createParameters(items), items, monitor);
+
+        assertEquals(ITmfResponse.Status.COMPLETED, response.getStatus());
+        TimeGraphModel model = response.getModel();
+        assertNotNull(model);
+        List<@NonNull ITimeGraphRowModel> rows = model.getRows();
+        assertEquals(NB_ITEMS, rows.size());
+        for (int i = 0; i < NB_ITEMS; i++) {
+            assertEquals(items.get(i).longValue(), rows.get(i).getEntryID());
+        }
+        assertFalse(monitor.isCanceled());
+    }
+
+    /**
+     * Test that a failed chunk fails the request and cancels the shared
+     * monitor, so that the other chunks stop early
+     */
+    @Test
+    public void testCancelOnFailure() {
+        TimeGraphProviderStub provider = new TimeGraphProviderStub(true);
+        List<Long> items = createItems();
+        IProgressMonitor monitor = new NullProgressMonitor();
+        TmfModelResponse<TimeGraphModel> response = ParallelRowModelFetcher.fetchRowModel(provider, createParameters(items), items, monitor);
+
+        assertEquals(ITmfResponse.Status.FAILED, response.getStatus());
+        assertEquals("Failed chunk", response.getStatusMessage());
+        assertNull(response.getModel());
+
+        assumeTrue("The request is not split with a single fan out thread", provider.getFetchCount() > 1);
+        assertTrue(monitor.isCanceled());
+        assertEquals(provider.getFetchCount() - 1, provider.getCancelledCount());
+    }
+}
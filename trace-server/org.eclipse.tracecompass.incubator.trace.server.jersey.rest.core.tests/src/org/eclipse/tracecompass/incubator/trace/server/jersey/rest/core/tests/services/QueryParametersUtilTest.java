@@ -49,6 +49,8 @@ public class QueryParametersUtilTest {
     private static final String REQUESTED_TIMES = "requested_times";
     private static final String MISSING_REQUESTED_TIMES = "Missing query parameters: requested_times";
     private static final String INVALID_REQUESTED_TIMES = "Invalid query parameters: requested_times";
+    private static final String SINCE = "since";
+    private static final String INVALID_SINCE = "Invalid query parameters: since";
     private static final String TRACES = "traces";
     private static final String MISSING_TRACES = "Missing query parameters: traces";
     private static final String INVALID_TRACES = "Invalid query parameters: traces";
@@ -218,6 +220,42 @@ public class QueryParametersUtilTest {
         assertNull(QueryParametersUtil.validateRequestedQueryParameters(params));
         assertEquals(Arrays.asList(0L, 1000L), params.get(REQUESTED_TIMES));
         assertNull(params.get(REQUESTED_TIMERANGE));
+
+        /* Test the since parameter of incremental queries */
+        assertEquals(INVALID_SINCE,
+                QueryParametersUtil.validateRequestedQueryParameters(Maps.newHashMap(ImmutableMap.of(
+                        REQUESTED_TIMERANGE, ImmutableMap.of(START, 0L, END, 1000L, NB_TIMES, 5),
+                        REQUESTED_ITEMS, Arrays.asList(0L, 1L, 2L),
+                        SINCE, "500"))));
+
+        params = Maps.newHashMap(ImmutableMap.of(
+                REQUESTED_TIMERANGE, ImmutableMap.of(START, 0L, END, 1000L, NB_TIMES, 5),
+                REQUESTED_ITEMS, Arrays.asList(0L, 1L, 2L),
+                SINCE, 600L));
+        assertNull(QueryParametersUtil.validateRequestedQueryParameters(params));
+        assertEquals(Arrays.asList(600L, 750L, 1000L), params.get(REQUESTED_TIMES));
+        assertNull(params.get(SINCE));
+
+        params = Maps.newHashMap(ImmutableMap.of(
+                REQUESTED_TIMERANGE, ImmutableMap.of(START, 0L, END, 1000L, NB_TIMES, 5),
+                REQUESTED_ITEMS, Arrays.asList(0L, 1L, 2L),
+                SINCE, 750L));
+        assertNull(QueryParametersUtil.validateRequestedQueryParameters(params));
+        assertEquals(Arrays.asList(750L, 1000L), params.get(REQUESTED_TIMES));
+
+        params = Maps.newHashMap(ImmutableMap.of(
+                REQUESTED_TIMERANGE, ImmutableMap.of(START, 0L, END, 1000L, NB_TIMES, 5),
+                REQUESTED_ITEMS, Arrays.asList(0L, 1L, 2L),
+                SINCE, 0L));
+        assertNull(QueryParametersUtil.validateRequestedQueryParameters(params));
+        assertEquals(Arrays.asList(0L, 250L, 500L, 750L, 1000L), params.get(REQUESTED_TIMES));
+
+        params = Maps.newHashMap(ImmutableMap.of(
+                REQUESTED_TIMERANGE, ImmutableMap.of(START, 0L, END, 1000L, NB_TIMES, 5),
+                REQUESTED_ITEMS, Arrays.asList(0L, 1L, 2L),
+                SINCE, 2000L));
+        assertNull(QueryParametersUtil.validateRequestedQueryParameters(params));
+        assertEquals(Arrays.asList(1000L), params.get(REQUESTED_TIMES));
     }
 
     /**
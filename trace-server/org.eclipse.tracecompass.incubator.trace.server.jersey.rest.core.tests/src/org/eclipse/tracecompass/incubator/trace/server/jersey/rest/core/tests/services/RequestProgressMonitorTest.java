@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services.RequestProgressMonitor;
+import org.eclipse.tracecompass.tmf.core.model.CommonStatusMessage;
+import org.eclipse.tracecompass.tmf.core.response.ITmfResponse;
+import org.eclipse.tracecompass.tmf.core.response.TmfModelResponse;
+import org.junit.Test;
+
+/**
+ * Test the {@link RequestProgressMonitor} class
+ */
+public class RequestProgressMonitorTest {
+
+    /** Time after which a fetch that is not cancelled completes */
+    private static final long FETCH_DURATION_MS = 5000;
+
+    /**
+     * Fetch that checks the monitor like a data provider does, and completes
+     * after the given duration if it is not cancelled
+     */
+    private static TmfModelResponse<Long> fetch(IProgressMonitor monitor, long durationMs) throws InterruptedException {
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(durationMs)) {
+            if (monitor.isCanceled()) {
+                return new TmfModelResponse<>(null, ITmfResponse.Status.CANCELLED, CommonStatusMessage.TASK_CANCELLED);
+            }
+            Thread.sleep(5);
+        }
+        return new TmfModelResponse<>(System.nanoTime() - start, ITmfResponse.Status.COMPLETED, CommonStatusMessage.COMPLETED);
+    }
+
+    /**
+     * Test that the deadline of the X-Request-Timeout header cancels a fetch
+     *
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void testDeadlineCancelsFetch() throws InterruptedException {
+        IProgressMonitor monitor = RequestProgressMonitor.create("100", null);
+        assertFalse(monitor.isCanceled());
+
+        long start = System.nanoTime();
+        TmfModelResponse<Long> response = fetch(monitor, FETCH_DURATION_MS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(ITmfResponse.Status.CANCELLED, response.getStatus());
+        assertTrue(monitor.isCanceled());
+        assertTrue("Cancelled after " + elapsedMs + " ms", elapsedMs >= 100 && elapsedMs < FETCH_DURATION_MS);
+    }
+
+    /**
+     * Test that a fetch shorter than the deadline completes
+     *
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void testFetchBeforeDeadline() throws InterruptedException {
+        IProgressMonitor monitor = RequestProgressMonitor.create(" 10000 ", null);
+        TmfModelResponse<Long> response = fetch(monitor, 50);
+        assertEquals(ITmfResponse.Status.COMPLETED, response.getStatus());
+        assertFalse(monitor.isCanceled());
+    }
+
+    /**
+     * Test a request without a valid deadline, it is never cancelled by time
+     *
+     * @throws InterruptedException
+     *             if the test is interrupted
+     */
+    @Test
+    public void testNoDeadline() throws InterruptedException {
+        IProgressMonitor monitor = RequestProgressMonitor.create(null, null);
+        assertEquals(ITmfResponse.Status.COMPLETED, fetch(monitor, 50).getStatus());
+        assertFalse(monitor.isCanceled());
+
+        monitor = RequestProgressMonitor.create("abc", null);
+        assertEquals(ITmfResponse.Status.COMPLETED, fetch(monitor, 50).getStatus());
+        assertFalse(monitor.isCanceled());
+    }
+
+    /**
+     * Test that a deadline already passed cancels the request right away, and
+     * that an explicit cancellation is kept
+     */
+    @Test
+    public void testExpiredDeadline() {
+        assertTrue(RequestProgressMonitor.create("0", null).isCanceled());
+        assertTrue(RequestProgressMonitor.create("-10", null).isCanceled());
+
+        IProgressMonitor monitor = RequestProgressMonitor.create(null, null);
+        monitor.setCanceled(true);
+        assertTrue(monitor.isCanceled());
+    }
+}
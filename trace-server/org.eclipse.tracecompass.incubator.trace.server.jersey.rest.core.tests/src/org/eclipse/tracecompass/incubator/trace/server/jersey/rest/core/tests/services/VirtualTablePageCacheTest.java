@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.model.views.VirtualTableModelWrapper;
+import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services.VirtualTablePageCache;
+import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.ITmfVirtualTableDataProvider;
+import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.ITmfVirtualTableModel;
+import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.IVirtualTableLine;
+import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.TmfVirtualTableModel;
+import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.VirtualTableCell;
+import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.VirtualTableLine;
+import org.eclipse.tracecompass.tmf.core.dataprovider.DataProviderParameterUtils;
+import org.eclipse.tracecompass.tmf.core.model.CommonStatusMessage;
+import org.eclipse.tracecompass.tmf.core.model.tree.ITmfTreeDataModel;
+import org.eclipse.tracecompass.tmf.core.model.tree.TmfTreeModel;
+import org.eclipse.tracecompass.tmf.core.response.ITmfResponse;
+import org.eclipse.tracecompass.tmf.core.response.TmfModelResponse;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+/**
+ * Test the {@link VirtualTablePageCache} class
+ */
+@SuppressWarnings("restriction")
+public class VirtualTablePageCacheTest {
+
+    private static final String OUTPUT_ID = "table";
+    private static final int PAGE_SIZE = VirtualTablePageCache.getPageSize();
+
+    /**
+     * Table provider whose line of each rank has the rank as content, counting
+     * the number of times each page is fetched
+     */
+    private static class TableProviderStub implements ITmfVirtualTableDataProvider<@NonNull VirtualTableLine, @NonNull ITmfTreeDataModel> {
+        private final long fSize;
+        private final String fContent;
+        private final Map<Long, AtomicInteger> fFetches = new ConcurrentHashMap<>();
+
+        public TableProviderStub(long size, String content) {
+            fSize = size;
+            fContent = content;
+        }
+
+        public int getFetchCount(long page) {
+            AtomicInteger count = fFetches.get(page);
+            return count == null ? 0 : count.get();
+        }
+
+        @Override
+        public TmfModelResponse<ITmfVirtualTableModel<@NonNull VirtualTableLine>> fetchLines(Map<String, Object> fetchParameters, @Nullable IProgressMonitor monitor) {
+            long index = ((Number) fetchParameters.get(DataProviderParameterUtils.REQUESTED_TABLE_INDEX_KEY)).longValue();
+            int count = ((Number) fetchParameters.get(DataProviderParameterUtils.REQUESTED_TABLE_COUNT_KEY)).intValue();
+            fFetches.computeIfAbsent(index / PAGE_SIZE, p -> new AtomicInteger()).incrementAndGet();
+            List<@NonNull VirtualTableLine> lines = new ArrayList<>();
+            for (long rank = index; rank < Math.min(fSize, index + count); rank++) {
+                lines.add(new VirtualTableLine(rank, Collections.singletonList(new VirtualTableCell(fContent.isEmpty() ? String.valueOf(rank) : fContent))));
+            }
+            return new TmfModelResponse<>(new TmfVirtualTableModel<>(Collections.singletonList(0L), lines, index, fSize), ITmfResponse.Status.COMPLETED, CommonStatusMessage.COMPLETED);
+        }
+
+        @Override
+        public TmfModelResponse<TmfTreeModel<@NonNull ITmfTreeDataModel>> fetchTree(Map<String, Object> fetchParameters, @Nullable IProgressMonitor monitor) {
+            return new TmfModelResponse<>(null, ITmfResponse.Status.COMPLETED, CommonStatusMessage.COMPLETED);
+        }
+
+        @Override
+        public String getId() {
+            return OUTPUT_ID;
+        }
+    }
+
+    private static VirtualTableModelWrapper fetch(UUID expUUID, TableProviderStub provider, long index, int count) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(DataProviderParameterUtils.REQUESTED_TABLE_INDEX_KEY, index);
+        params.put(DataProviderParameterUtils.REQUESTED_TABLE_COUNT_KEY, count);
+        TmfModelResponse<VirtualTableModelWrapper> response = VirtualTablePageCache.fetchLines(expUUID, OUTPUT_ID, provider, params, null);
+        assertNotNull(response);
+        assertEquals(ITmfResponse.Status.COMPLETED, response.getStatus());
+        VirtualTableModelWrapper model = response.getModel();
+        assertNotNull(model);
+        return model;
+    }
+
+    private static void assertLines(VirtualTableModelWrapper model, long index, int count) {
+        assertEquals(index, model.getLowIndex());
+        List<IVirtualTableLine> lines = model.getLines();
+        assertEquals(count, lines.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(index + i, lines.get(i).getIndex());
+        }
+    }
+
+    /**
+     * Test that the lines of a request are served from the cached pages, also
+     * when the request covers two pages
+     */
+    @Test
+    public void testPageHits() {
+        UUID expUUID = UUID.randomUUID();
+        // One full page and a partial one, so that there is nothing to prefetch
+        // after the second page
+        TableProviderStub provider = new TableProviderStub(PAGE_SIZE + PAGE_SIZE / 2, "");
+
+        VirtualTableModelWrapper model = fetch(expUUID, provider, 10, 20);
+        assertLines(model, 10, 20);
+        assertEquals(PAGE_SIZE + PAGE_SIZE / 2, model.getSize());
+        assertEquals(1, provider.getFetchCount(0));
+
+        // Same page, served from the cache
+        assertLines(fetch(expUUID, provider, 0, 50), 0, 50);
+        assertLines(fetch(expUUID, provider, PAGE_SIZE - 10, 10), PAGE_SIZE - 10, 10);
+        assertEquals(1, provider.getFetchCount(0));
+
+        // Across the boundary with the partial last page, which is not cached
+        // since it may still grow
+        int lastPageFetches = provider.getFetchCount(1);
+        assertLines(fetch(expUUID, provider, PAGE_SIZE - 5, 10), PAGE_SIZE - 5, 10);
+        assertEquals(1, provider.getFetchCount(0));
+        assertTrue(provider.getFetchCount(1) > lastPageFetches);
+
+        // Requests past the end of the table only return the existing lines
+        assertLines(fetch(expUUID, provider, PAGE_SIZE + PAGE_SIZE / 2 - 3, 10), PAGE_SIZE + PAGE_SIZE / 2 - 3, 3);
+    }
+
+    /**
+     * Test that the pages of an experiment are fetched again after they are
+     * invalidated, and that the pages of other experiments are kept
+     */
+    @Test
+    public void testInvalidation() {
+        UUID expUUID = UUID.randomUUID();
+        UUID otherUUID = UUID.randomUUID();
+        TableProviderStub provider = new TableProviderStub(PAGE_SIZE, "");
+        TableProviderStub otherProvider = new TableProviderStub(PAGE_SIZE, "");
+
+        assertLines(fetch(expUUID, provider, 0, 10), 0, 10);
+        assertLines(fetch(otherUUID, otherProvider, 0, 10), 0, 10);
+        assertEquals(1, provider.getFetchCount(0));
+        assertEquals(1, otherProvider.getFetchCount(0));
+
+        VirtualTablePageCache.invalidate(expUUID);
+        assertLines(fetch(expUUID, provider, 0, 10), 0, 10);
+        assertLines(fetch(otherUUID, otherProvider, 0, 10), 0, 10);
+        assertEquals(2, provider.getFetchCount(0));
+        assertEquals(1, otherProvider.getFetchCount(0));
+
+        VirtualTablePageCache.invalidateAll();
+        assertLines(fetch(expUUID, provider, 0, 10), 0, 10);
+        assertLines(fetch(otherUUID, otherProvider, 0, 10), 0, 10);
+        assertEquals(3, provider.getFetchCount(0));
+        assertEquals(2, otherProvider.getFetchCount(0));
+    }
+
+    /**
+     * Test that the pages are weighed by their content and evicted when they
+     * exceed the cache size, a page heavier than the default cache size never
+     * being kept
+     */
+    @Test
+    public void testEviction() {
+        UUID expUUID = UUID.randomUUID();
+        // Each character weighs 2 bytes, make a page weigh more than 64 MB
+        String content = Strings.repeat("x", (int) (64L * 1024 * 1024 / PAGE_SIZE));
+        TableProviderStub provider = new TableProviderStub(PAGE_SIZE, content);
+
+        assertLines(fetch(expUUID, provider, 0, 10), 0, 10);
+        assertLines(fetch(expUUID, provider, 0, 10), 0, 10);
+        assertEquals(2, provider.getFetchCount(0));
+
+        // Pages of a lighter table of the same experiment are kept
+        TableProviderStub lightProvider = new TableProviderStub(PAGE_SIZE, "");
+        Map<String, Object> params = new HashMap<>();
+        params.put(DataProviderParameterUtils.REQUESTED_TABLE_INDEX_KEY, 0L);
+        params.put(DataProviderParameterUtils.REQUESTED_TABLE_COUNT_KEY, 10);
+        params.put("other", "parameter");
+        assertNotNull(VirtualTablePageCache.fetchLines(expUUID, OUTPUT_ID, lightProvider, params, null));
+        assertNotNull(VirtualTablePageCache.fetchLines(expUUID, OUTPUT_ID, lightProvider, new HashMap<>(params), null));
+        assertEquals(1, lightProvider.getFetchCount(0));
+    }
+
+    /**
+     * Test that the queries that cannot be served from pages are left to the
+     * data provider
+     */
+    @Test
+    public void testUncachedQueries() {
+        UUID expUUID = UUID.randomUUID();
+        TableProviderStub provider = new TableProviderStub(PAGE_SIZE, "");
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(DataProviderParameterUtils.REQUESTED_TABLE_INDEX_KEY, 0L);
+        params.put(DataProviderParameterUtils.REQUESTED_TABLE_COUNT_KEY, 10);
+        params.put(DataProviderParameterUtils.REQUESTED_TIME_KEY, Collections.singletonList(0L));
+        assertNull(VirtualTablePageCache.fetchLines(expUUID, OUTPUT_ID, provider, params, null));
+
+        params.remove(DataProviderParameterUtils.REQUESTED_TIME_KEY);
+        params.put(DataProviderParameterUtils.REQUESTED_TABLE_COUNT_KEY, 0);
+        assertNull(VirtualTablePageCache.fetchLines(expUUID, OUTPUT_ID, provider, params, null));
+        assertEquals(0, provider.getFetchCount(0));
+    }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.trace.server.jersey.rest.core.tests.webapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.ws.rs.core.MediaType;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.webapp.ColumnarModelWriter;
+import org.eclipse.tracecompass.tmf.core.model.OutputElementStyle;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphRowModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphState;
+import org.eclipse.tracecompass.tmf.core.response.ITmfResponse;
+import org.eclipse.tracecompass.tmf.core.response.TmfModelResponse;
+import org.junit.Test;
+
+/**
+ * Test the {@link ColumnarModelWriter} class
+ */
+public class ColumnarModelWriterTest {
+
+    private static final int MAGIC = 0x43505354;
+    private static final short VERSION = 1;
+    private static final short KIND_NONE = 0;
+    private static final short KIND_TIME_GRAPH = 2;
+    private static final byte STATUS_RUNNING = 0;
+    private static final byte STATUS_COMPLETED = 1;
+    private static final byte STATUS_FAILED = 2;
+    private static final byte STATUS_CANCELLED = 3;
+
+    private static final String STYLE = "style";
+    private static final String LABEL = "label";
+
+    /**
+     * Test that the writer only accepts model responses with the columnar
+     * media type
+     */
+    @Test
+    public void testIsWriteable() {
+        ColumnarModelWriter writer = new ColumnarModelWriter();
+        assertTrue(writer.isWriteable(TmfModelResponse.class, null, null, ColumnarModelWriter.MEDIA_TYPE_COLUMNAR));
+        assertFalse(writer.isWriteable(TmfModelResponse.class, null, null, MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(writer.isWriteable(String.class, null, null, ColumnarModelWriter.MEDIA_TYPE_COLUMNAR));
+    }
+
+    /**
+     * Test the header and status codes of responses without a model
+     *
+     * @throws IOException
+     *             if the writer fails
+     */
+    @Test
+    public void testNoModel() throws IOException {
+        assertStatusCode(ITmfResponse.Status.RUNNING, STATUS_RUNNING);
+        assertStatusCode(ITmfResponse.Status.COMPLETED, STATUS_COMPLETED);
+        assertStatusCode(ITmfResponse.Status.FAILED, STATUS_FAILED);
+        assertStatusCode(ITmfResponse.Status.CANCELLED, STATUS_CANCELLED);
+    }
+
+    /**
+     * Test writing a time graph states model
+     *
+     * @throws IOException
+     *             if the writer fails
+     */
+    @Test
+    public void testTimeGraphModel() throws IOException {
+        TimeGraphRowModel row1 = new TimeGraphRowModel(1, Arrays.asList(
+                new TimeGraphState(10, 5, LABEL, new OutputElementStyle(STYLE)),
+                new TimeGraphState(15, 20, 3),
+                new TimeGraphState(40, 2, Integer.MIN_VALUE)));
+        TimeGraphRowModel row2 = new TimeGraphRowModel(2, Arrays.asList(
+                new TimeGraphState(100, 1, null, new OutputElementStyle(STYLE))));
+        ByteBuffer buffer = write(new TmfModelResponse<>(new TimeGraphModel(Arrays.asList(row1, row2)), ITmfResponse.Status.COMPLETED, "done"));
+        assertHeader(buffer, KIND_TIME_GRAPH, STATUS_COMPLETED, "done");
+
+        // String table
+        assertEquals(3, buffer.getInt());
+        assertEquals(STYLE, readString(buffer));
+        assertEquals(LABEL, readString(buffer));
+        assertEquals("3", readString(buffer));
+
+        assertEquals(2, buffer.getInt());
+        // First row, with delta-encoded start times
+        assertEquals(1, buffer.getLong());
+        assertEquals(3, buffer.getInt());
+        assertEquals(10, buffer.getLong());
+        assertEquals(5, buffer.getLong());
+        assertEquals(25, buffer.getLong());
+        assertEquals(5, buffer.getLong());
+        assertEquals(20, buffer.getLong());
+        assertEquals(2, buffer.getLong());
+        assertEquals(0, buffer.getInt());
+        assertEquals(2, buffer.getInt());
+        assertEquals(-1, buffer.getInt());
+        assertEquals(1, buffer.getInt());
+        assertEquals(-1, buffer.getInt());
+        assertEquals(-1, buffer.getInt());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buffer.getInt());
+        }
+        // Second row
+        assertEquals(2, buffer.getLong());
+        assertEquals(1, buffer.getInt());
+        assertEquals(100, buffer.getLong());
+        assertEquals(1, buffer.getLong());
+        assertEquals(0, buffer.getInt());
+        assertEquals(-1, buffer.getInt());
+        assertEquals(0, buffer.getInt());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    private static void assertStatusCode(ITmfResponse.Status status, byte code) throws IOException {
+        ByteBuffer buffer = write(new TmfModelResponse<>(null, status, status.name()));
+        assertHeader(buffer, KIND_NONE, code, status.name());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    private static void assertHeader(ByteBuffer buffer, short kind, byte status, String statusMessage) {
+        assertEquals(MAGIC, buffer.getInt());
+        assertEquals(VERSION, buffer.getShort());
+        assertEquals(kind, buffer.getShort());
+        assertEquals(status, buffer.get());
+        assertEquals(statusMessage, readString(buffer));
+    }
+
+    private static ByteBuffer write(TmfModelResponse<?> response) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ColumnarModelWriter().writeTo(response, TmfModelResponse.class, null, null, ColumnarModelWriter.MEDIA_TYPE_COLUMNAR, null, output);
+        return ByteBuffer.wrap(output.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static @Nullable String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            assertEquals(-1, length);
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -37,4 +37,10 @@ public interface ExperimentQueryParameters {
     @NonNull
     @ArraySchema(arraySchema = @Schema(description = "The unique identifiers of the traces to encapsulate in this experiment", required = true))
     List<@NonNull UUID> getTraces();
+
+    /**
+     * @return The analyses.
+     */
+    @ArraySchema(arraySchema = @Schema(description = "The IDs of the analyses to schedule once the experiment is opened", required = false))
+    List<@NonNull String> getAnalyses();
 }
@@ -45,5 +45,9 @@ public interface RequestedQueryParameters {
         @JsonProperty("filter_query_parameters")
         @Schema(required = false)
         RequestedFilterQueryParameters getFilterQueryParameters();
+
+        @JsonProperty("since")
+        @Schema(required = false, description = "Watermark returned in the X-Watermark header of a previous response. When present, only the data from this time onwards is returned.")
+        long getSince();
     }
 }
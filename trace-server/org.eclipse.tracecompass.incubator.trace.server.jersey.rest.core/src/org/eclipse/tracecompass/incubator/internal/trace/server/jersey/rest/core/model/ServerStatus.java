@@ -11,6 +11,8 @@
 
 package org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.model;
 
+import java.util.Map;
+
 import io.swagger.v3.oas.annotations.media.Schema;
 
 /**
@@ -30,4 +32,10 @@ public interface ServerStatus {
      */
     @Schema(description = "The status of the server")
     Status getStatus();
+
+    /**
+     * @return The response cache statistics.
+     */
+    @Schema(description = "The statistics of the server's response cache: number of hits, misses, evictions and the current number of cached responses")
+    Map<String, Long> getResponseCache();
 }
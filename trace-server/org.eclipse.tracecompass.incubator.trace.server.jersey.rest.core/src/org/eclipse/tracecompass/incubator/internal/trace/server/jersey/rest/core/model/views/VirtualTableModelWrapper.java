@@ -25,7 +25,10 @@ import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.IVirtu
  */
 public class VirtualTableModelWrapper {
 
-    private final ITmfVirtualTableModel fWrapper;
+    private final List<Long> fColumnIds;
+    private final List<IVirtualTableLine> fLines;
+    private final long fLowIndex;
+    private final long fSize;
 
     /**
      * Constructor
@@ -34,7 +37,29 @@ public class VirtualTableModelWrapper {
      *            The model to wrap
      */
     public VirtualTableModelWrapper(ITmfVirtualTableModel model) {
-        fWrapper = model;
+        this(model == null ? Collections.emptyList() : model.getColumnIds(),
+                model == null ? Collections.emptyList() : model.getLines(),
+                model == null ? 0 : model.getIndex(),
+                model == null ? 0 : model.getSize());
+    }
+
+    /**
+     * Constructor for lines assembled from several models
+     *
+     * @param columnIds
+     *            The list of column IDs
+     * @param lines
+     *            The lines
+     * @param lowIndex
+     *            The index of the first line
+     * @param size
+     *            The number of table entries that match the filter
+     */
+    public VirtualTableModelWrapper(List<Long> columnIds, List<IVirtualTableLine> lines, long lowIndex, long size) {
+        fColumnIds = columnIds;
+        fLines = lines;
+        fLowIndex = lowIndex;
+        fSize = size;
     }
 
     /**
@@ -43,7 +68,7 @@ public class VirtualTableModelWrapper {
      * @return The list of column IDs in order that they are sorted
      */
     public List<Long> getColumnIds() {
-        return fWrapper == null ? Collections.emptyList() : fWrapper.getColumnIds();
+        return fColumnIds;
     }
 
     /**
@@ -54,7 +79,7 @@ public class VirtualTableModelWrapper {
      * @return The list of lines
      */
     public List<IVirtualTableLine> getLines() {
-        return fWrapper == null ? Collections.emptyList() : fWrapper.getLines();
+        return fLines;
     }
 
     /**
@@ -63,7 +88,7 @@ public class VirtualTableModelWrapper {
      * @return The top index
      */
     public long getLowIndex() {
-        return fWrapper == null ? 0 : fWrapper.getIndex();
+        return fLowIndex;
     }
 
     /**
@@ -74,7 +99,7 @@ public class VirtualTableModelWrapper {
      * @return The total number of table entries that matches a filter
      */
     public long getSize() {
-        return fWrapper == null ? 0 : fWrapper.getSize();
+        return fSize;
     }
 
 }
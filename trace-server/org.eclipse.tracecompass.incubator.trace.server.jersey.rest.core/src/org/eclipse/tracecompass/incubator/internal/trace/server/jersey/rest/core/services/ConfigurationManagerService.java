@@ -160,6 +160,8 @@ public class ConfigurationManagerService {
 
         try {
             ITmfConfiguration config = configurationSource.create(params);
+            DataProviderResponseCache.invalidateAll();
+            VirtualTablePageCache.invalidateAll();
             return Response.ok(config).build();
         } catch (TmfConfigurationException e) {
             return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
@@ -241,6 +243,8 @@ public class ConfigurationManagerService {
         @NonNull Map<@NonNull String, @NonNull Object> params = queryParameters.getParameters();
         try {
             ITmfConfiguration config = configurationSource.update(configId, params);
+            DataProviderResponseCache.invalidateAll();
+            VirtualTablePageCache.invalidateAll();
             return Response.ok(config).build();
         } catch (TmfConfigurationException e) {
             return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
@@ -279,6 +283,8 @@ public class ConfigurationManagerService {
         if (config == null) {
             return Response.status(Status.BAD_REQUEST).entity("Failed removing configuration instance").build(); //$NON-NLS-1$
         }
+        DataProviderResponseCache.invalidateAll();
+        VirtualTablePageCache.invalidateAll();
         return Response.ok(config).build();
     }
 }
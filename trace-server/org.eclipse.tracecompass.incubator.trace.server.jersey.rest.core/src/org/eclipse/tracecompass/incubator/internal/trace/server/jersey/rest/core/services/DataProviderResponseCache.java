@@ -0,0 +1,215 @@
+/**********************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphRowModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphState;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphModel;
+import org.eclipse.tracecompass.tmf.core.model.xy.ISeriesModel;
+import org.eclipse.tracecompass.tmf.core.model.xy.ITmfXyModel;
+import org.eclipse.tracecompass.tmf.core.response.ITmfResponse;
+import org.eclipse.tracecompass.tmf.core.response.TmfModelResponse;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Bounded cache of the data provider responses, shared by all the clients of
+ * the server. Responses are keyed by experiment, output, endpoint and the
+ * canonical form of the query parameters, and weighed by an estimate of their
+ * memory footprint. Only {@link ITmfResponse.Status#COMPLETED} responses are
+ * cached.
+ * <p>
+ * The maximum weight, in bytes, can be specified using the system property
+ * {@value #PROPERTY_CACHE_SIZE}. A value of 0 disables the cache.
+ */
+public final class DataProviderResponseCache {
+
+    private static final String PROPERTY_CACHE_SIZE = "traceserver.responseCacheSize"; //$NON-NLS-1$
+    private static final long DEFAULT_CACHE_SIZE = 256L * 1024 * 1024;
+    private static final long CACHE_SIZE = Long.getLong(PROPERTY_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+
+    /* Rough estimates, in bytes, of the footprint of the model objects */
+    private static final int MODEL_WEIGHT = 64;
+    private static final int ROW_WEIGHT = 48;
+    private static final int STATE_WEIGHT = 72;
+    private static final int SERIES_WEIGHT = 64;
+    private static final int POINT_WEIGHT = Long.BYTES + Double.BYTES;
+    private static final int DEFAULT_WEIGHT = 1024;
+
+    private static final Cache<Key, TmfModelResponse<?>> CACHE = CacheBuilder.newBuilder()
+            .maximumWeight(CACHE_SIZE)
+            .weigher((Key key, TmfModelResponse<?> value) -> weigh(value))
+            .recordStats()
+            .build();
+
+    private DataProviderResponseCache() {
+        // Utility class
+    }
+
+    /**
+     * Get the cached response of a query, or fetch and cache it
+     *
+     * @param expUUID
+     *            the experiment UUID
+     * @param outputId
+     *            the output ID
+     * @param endpoint
+     *            the name of the queried endpoint
+     * @param params
+     *            the validated query parameters
+     * @param fetcher
+     *            the function to fetch the response from the data provider
+     * @return the response
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> TmfModelResponse<T> getOrFetch(UUID expUUID, String outputId, String endpoint, Map<String, Object> params, Supplier<TmfModelResponse<T>> fetcher) {
+        if (CACHE_SIZE <= 0) {
+            return fetcher.get();
+        }
+        Key key = new Key(expUUID, outputId, endpoint, canonicalize(params));
+        TmfModelResponse<?> cached = CACHE.getIfPresent(key);
+        if (cached != null) {
+            return (TmfModelResponse<T>) cached;
+        }
+        TmfModelResponse<T> response = fetcher.get();
+        if (response.getStatus() == ITmfResponse.Status.COMPLETED && response.getModel() != null) {
+            CACHE.put(key, response);
+        }
+        return response;
+    }
+
+    /**
+     * Invalidate the responses of an experiment, for instance when it is
+     * closed
+     *
+     * @param expUUID
+     *            the experiment UUID
+     */
+    public static void invalidate(UUID expUUID) {
+        CACHE.asMap().keySet().removeIf(key -> key.fExpUUID.equals(expUUID));
+    }
+
+    /**
+     * Invalidate all the responses, for instance when a configuration changes
+     */
+    public static void invalidateAll() {
+        CACHE.invalidateAll();
+    }
+
+    /**
+     * Get the statistics of the cache
+     *
+     * @return a map of the statistic names to their values
+     */
+    public static Map<String, Long> getStatistics() {
+        CacheStats stats = CACHE.stats();
+        return ImmutableMap.of(
+                "hits", stats.hitCount(), //$NON-NLS-1$
+                "misses", stats.missCount(), //$NON-NLS-1$
+                "evictions", stats.evictionCount(), //$NON-NLS-1$
+                "size", CACHE.size()); //$NON-NLS-1$
+    }
+
+    /**
+     * Canonicalize the parameters so that equivalent queries have equal keys:
+     * maps are sorted by key and integral numbers are converted to longs.
+     */
+    static @Nullable Object canonicalize(@Nullable Object value) {
+        if (value instanceof Map) {
+            Map<String, @Nullable Object> map = new TreeMap<>();
+            for (Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                map.put(String.valueOf(entry.getKey()), canonicalize(entry.getValue()));
+            }
+            return map;
+        }
+        if (value instanceof Collection) {
+            List<@Nullable Object> list = new ArrayList<>();
+            for (Object element : (Collection<?>) value) {
+                list.add(canonicalize(element));
+            }
+            return list;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
+    private static int weigh(TmfModelResponse<?> response) {
+        Object model = response.getModel();
+        long weight = MODEL_WEIGHT;
+        if (model instanceof TimeGraphModel) {
+            for (ITimeGraphRowModel row : ((TimeGraphModel) model).getRows()) {
+                weight += ROW_WEIGHT;
+                for (ITimeGraphState state : row.getStates()) {
+                    String label = state.getLabel();
+                    weight += STATE_WEIGHT + (label == null ? 0 : 2L * label.length());
+                }
+            }
+        } else if (model instanceof ITmfXyModel) {
+            for (ISeriesModel series : ((ITmfXyModel) model).getSeriesData()) {
+                weight += SERIES_WEIGHT + (long) POINT_WEIGHT * series.getXAxis().length;
+            }
+        } else {
+            weight = DEFAULT_WEIGHT;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+
+    private static final class Key {
+        private final UUID fExpUUID;
+        private final String fOutputId;
+        private final String fEndpoint;
+        private final @Nullable Object fParameters;
+
+        public Key(UUID expUUID, String outputId, String endpoint, @Nullable Object parameters) {
+            fExpUUID = expUUID;
+            fOutputId = outputId;
+            fEndpoint = endpoint;
+            fParameters = parameters;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fExpUUID, fOutputId, fEndpoint, fParameters);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return fExpUUID.equals(other.fExpUUID)
+                    && fOutputId.equals(other.fOutputId)
+                    && fEndpoint.equals(other.fEndpoint)
+                    && Objects.equals(fParameters, other.fParameters);
+        }
+    }
+}
@@ -49,6 +49,7 @@ import static org.eclipse.tracecompass.incubator.internal.trace.server.jersey.re
 import static org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services.EndpointConstants.ONE_OF;
 import static org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services.EndpointConstants.OUTPUT_ID;
 import static org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services.EndpointConstants.PROVIDER_NOT_FOUND;
+import static org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services.EndpointConstants.SINCE;
 import static org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services.EndpointConstants.STY;
 import static org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services.EndpointConstants.TABLE_TIMES;
 import static org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services.EndpointConstants.TGR;
@@ -78,6 +79,7 @@ import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -85,10 +87,16 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Providers;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
@@ -119,6 +127,7 @@ import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core
 import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.model.views.TableColumnHeader;
 import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.model.views.TreeModelWrapper;
 import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.model.views.VirtualTableModelWrapper;
+import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.webapp.ColumnarModelWriter;
 import org.eclipse.tracecompass.internal.analysis.timing.core.event.matching.EventMatchingLatencyAnalysis;
 import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.ITmfVirtualTableDataProvider;
 import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.ITmfVirtualTableModel;
@@ -148,10 +157,13 @@ import org.eclipse.tracecompass.tmf.core.model.annotations.TraceAnnotationProvid
 import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphArrow;
 import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphDataProvider;
 import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphEntryModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphRowModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphState;
 import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphModel;
 import org.eclipse.tracecompass.tmf.core.model.tree.ITmfTreeDataModel;
 import org.eclipse.tracecompass.tmf.core.model.tree.ITmfTreeDataProvider;
 import org.eclipse.tracecompass.tmf.core.model.tree.TmfTreeModel;
+import org.eclipse.tracecompass.tmf.core.model.xy.ISeriesModel;
 import org.eclipse.tracecompass.tmf.core.model.xy.ITmfTreeXYDataProvider;
 import org.eclipse.tracecompass.tmf.core.model.xy.ITmfXyModel;
 import org.eclipse.tracecompass.tmf.core.response.ITmfResponse;
@@ -161,6 +173,7 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 import org.w3c.dom.Element;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
@@ -186,8 +199,26 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 public class DataProviderService {
     private static final @NonNull Logger LOGGER = TraceCompassLog.getLogger(DataProviderService.class);
 
+    /**
+     * Number of requested items above which the time graph states are streamed
+     * to the client, one chunk of items at a time. It can be specified using
+     * the system property {@value #PROPERTY_STREAMING_CHUNK_SIZE}.
+     */
+    private static final String PROPERTY_STREAMING_CHUNK_SIZE = "traceserver.streamingChunkSize"; //$NON-NLS-1$
+    private static final int DEFAULT_STREAMING_CHUNK_SIZE = 500;
+    private static final int STREAMING_CHUNK_SIZE = Math.max(1, Integer.getInteger(PROPERTY_STREAMING_CHUNK_SIZE, DEFAULT_STREAMING_CHUNK_SIZE));
+
     private final DataProviderManager manager = DataProviderManager.getInstance();
 
+    @Context
+    private Providers fProviders;
+
+    @Context
+    private HttpHeaders fHeaders;
+
+    @Context
+    private HttpServletRequest fRequest;
+
     /**
      * Getter for the list of data provider descriptions
      *
@@ -341,7 +372,7 @@ public class DataProviderService {
     @Path("/XY/{outputId}/xy")
     @Tag(name = X_Y)
     @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({ MediaType.APPLICATION_JSON, ColumnarModelWriter.MEDIA_TYPE })
     @Operation(summary = "API to get the XY model", description = "Unique endpoint for all xy models, " +
             "ensures that the same template is followed for all endpoints.", responses = {
                     @ApiResponse(responseCode = "200", description = "Return the queried XYResponse", content = @Content(schema = @Schema(implementation = XYResponse.class))),
@@ -352,7 +383,7 @@ public class DataProviderService {
     public Response getXY(
             @Parameter(description = EXP_UUID) @PathParam("expUUID") UUID expUUID,
             @Parameter(description = OUTPUT_ID) @PathParam("outputId") String outputId,
-            @RequestBody(description = "Query parameters to fetch the XY model. " + TIMERANGE + " " + ITEMS_XY, content = {
+            @RequestBody(description = "Query parameters to fetch the XY model. " + TIMERANGE + " " + ITEMS_XY + " " + SINCE, content = {
                     @Content(examples = @ExampleObject("{\"parameters\":{" + TIMERANGE_EX + "," + ITEMS_EX +
                             "}}"), schema = @Schema(implementation = RequestedQueryParameters.class))
             }, required = true) QueryParameters queryParameters) {
@@ -387,8 +418,10 @@ public class DataProviderService {
                 return Response.status(Status.BAD_REQUEST).entity(errorMessage).build();
             }
 
-            TmfModelResponse<@NonNull ITmfXyModel> response = provider.fetchXY(params, null);
-            return Response.ok(response).build();
+            ITmfTreeXYDataProvider<@NonNull ITmfTreeDataModel> xyProvider = provider;
+            TmfModelResponse<@NonNull ITmfXyModel> response = DataProviderResponseCache.getOrFetch(expUUID, outputId, X_Y, params,
+                    () -> xyProvider.fetchXY(params, createMonitor()));
+            return okWithWatermark(response);
         }
     }
 
@@ -470,7 +503,7 @@ public class DataProviderService {
     @Path("/timeGraph/{outputId}/states")
     @Tag(name = TGR)
     @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({ MediaType.APPLICATION_JSON, ColumnarModelWriter.MEDIA_TYPE })
     @Operation(summary = "API to get the Time Graph states", description = "Unique entry point for all TimeGraph states, ensures that the same template is followed for all views", responses = {
             @ApiResponse(responseCode = "200", description = "Returns a list of time graph rows", content = @Content(schema = @Schema(implementation = TimeGraphStatesResponse.class))),
             @ApiResponse(responseCode = "400", description = MISSING_PARAMETERS, content = @Content(schema = @Schema(implementation = String.class))),
@@ -480,7 +513,7 @@ public class DataProviderService {
     public Response getStates(
             @Parameter(description = EXP_UUID) @PathParam("expUUID") UUID expUUID,
             @Parameter(description = OUTPUT_ID) @PathParam("outputId") String outputId,
-            @RequestBody(description = "Query parameters to fetch the timegraph states. " + TIMERANGE + " " + ITEMS + " " + FILTER_QUERY_PARAMETERS, content = {
+            @RequestBody(description = "Query parameters to fetch the timegraph states. " + TIMERANGE + " " + ITEMS + " " + FILTER_QUERY_PARAMETERS + " " + SINCE, content = {
                     @Content(examples = @ExampleObject("{\"parameters\":{" + TIMERANGE_EX + "," + ITEMS_EX + "," + FILTER_QUERY_PARAMETERS_EX +
                             "}}"), schema = @Schema(implementation = RequestedQueryParameters.class))
             }, required = true) QueryParameters queryParameters) {
@@ -504,6 +537,8 @@ public class DataProviderService {
             }
 
             Map<String, Object> params = queryParameters.getParameters();
+            // The since parameter is consumed by the validation
+            boolean incremental = params.containsKey(EndpointConstants.SINCE_KEY);
             String errorMessage = QueryParametersUtil.validateRequestedQueryParameters(params);
             if (errorMessage != null) {
                 return Response.status(Status.BAD_REQUEST).entity(errorMessage).build();
@@ -514,8 +549,22 @@ public class DataProviderService {
                 return Response.status(Status.BAD_REQUEST).entity(errorMessage).build();
             }
 
-            TmfModelResponse<TimeGraphModel> response = provider.fetchRowModel(params, null);
-            return Response.ok(response).build();
+            List<Long> items = DataProviderParameterUtils.extractSelectedItems(params);
+            IProgressMonitor monitor = createMonitor();
+            ObjectMapper mapper = getObjectMapper();
+            if (items != null && items.size() > STREAMING_CHUNK_SIZE && mapper != null && !isColumnarRequested() && !incremental) {
+                /*
+                 * Write the rows as they are fetched instead of building the
+                 * whole model. The headers are sent before the rows, so an
+                 * incremental query, which needs the watermark header, is not
+                 * streamed.
+                 */
+                return Response.ok(new TimeGraphStatesStreamingOutput(provider, params, items, STREAMING_CHUNK_SIZE, mapper, monitor)).build();
+            }
+
+            TmfModelResponse<TimeGraphModel> response = DataProviderResponseCache.getOrFetch(expUUID, outputId, TGR, params,
+                    () -> items != null ? ParallelRowModelFetcher.fetchRowModel(provider, params, items, monitor) : provider.fetchRowModel(params, monitor));
+            return okWithWatermark(response);
         }
     }
 
@@ -575,7 +624,7 @@ public class DataProviderService {
                 return Response.status(Status.BAD_REQUEST).entity(errorMessage).build();
             }
 
-            TmfModelResponse<@NonNull List<@NonNull ITimeGraphArrow>> response = provider.fetchArrows(params, null);
+            TmfModelResponse<@NonNull List<@NonNull ITimeGraphArrow>> response = provider.fetchArrows(params, createMonitor());
             return Response.ok(response).build();
         }
     }
@@ -650,6 +699,7 @@ public class DataProviderService {
                 return Response.status(Status.METHOD_NOT_ALLOWED).entity(NO_PROVIDER).build();
             }
 
+            IProgressMonitor monitor = createMonitor();
             boolean isComplete = true;
             AnnotationCategoriesModel model = null;
             // Fetch trace annotation categories
@@ -659,7 +709,7 @@ public class DataProviderService {
                 @NonNull Map<@NonNull String, @NonNull Object> params =
                         (markerSetId == null) ? Collections.emptyMap() :
                             ImmutableMap.of(DataProviderParameterUtils.REQUESTED_MARKER_SET_KEY, markerSetId);
-                TmfModelResponse<@NonNull AnnotationCategoriesModel> traceAnnotations = traceAnnotationProvider.fetchAnnotationCategories(params, null);
+                TmfModelResponse<@NonNull AnnotationCategoriesModel> traceAnnotations = traceAnnotationProvider.fetchAnnotationCategories(params, monitor);
                 if (traceAnnotations.getStatus() == ITmfResponse.Status.CANCELLED || traceAnnotations.getStatus() == ITmfResponse.Status.FAILED) {
                     return Response.ok(new TmfModelResponse<>(new AnnotationCategoriesModel(Collections.emptyList()), traceAnnotations.getStatus(), traceAnnotations.getStatusMessage())).build();
                 }
@@ -668,7 +718,7 @@ public class DataProviderService {
             }
             // Fetch data provider annotation categories
             if (provider instanceof IOutputAnnotationProvider) {
-                TmfModelResponse<@NonNull AnnotationCategoriesModel> annotations = ((IOutputAnnotationProvider) provider).fetchAnnotationCategories(Collections.emptyMap(), null);
+                TmfModelResponse<@NonNull AnnotationCategoriesModel> annotations = ((IOutputAnnotationProvider) provider).fetchAnnotationCategories(Collections.emptyMap(), monitor);
                 if (annotations.getStatus() == ITmfResponse.Status.CANCELLED || annotations.getStatus() == ITmfResponse.Status.FAILED) {
                     return Response.ok(new TmfModelResponse<>(new AnnotationCategoriesModel(Collections.emptyList()), annotations.getStatus(), annotations.getStatusMessage())).build();
                 }
@@ -740,13 +790,14 @@ public class DataProviderService {
                 return Response.status(Status.BAD_REQUEST).entity(errorMessage).build();
             }
 
+            IProgressMonitor monitor = createMonitor();
             boolean isComplete = true;
             AnnotationModel model = null;
 
             // Fetch trace annotations
             TraceAnnotationProvider traceAnnotationProvider = ExperimentManagerService.getTraceAnnotationProvider(expUUID);
             if (traceAnnotationProvider != null) {
-                TmfModelResponse<@NonNull AnnotationModel> traceAnnotations = traceAnnotationProvider.fetchAnnotations(params, null);
+                TmfModelResponse<@NonNull AnnotationModel> traceAnnotations = traceAnnotationProvider.fetchAnnotations(params, monitor);
                 if (traceAnnotations.getStatus() == ITmfResponse.Status.CANCELLED || traceAnnotations.getStatus() == ITmfResponse.Status.FAILED) {
                     return Response.ok(new TmfModelResponse<>(new AnnotationModel(Collections.emptyMap()), traceAnnotations.getStatus(), traceAnnotations.getStatusMessage())).build();
                 }
@@ -755,7 +806,7 @@ public class DataProviderService {
             }
             // Fetch data provider annotations
             if (provider instanceof IOutputAnnotationProvider) {
-                TmfModelResponse<@NonNull AnnotationModel> annotations = ((IOutputAnnotationProvider) provider).fetchAnnotations(params, null);
+                TmfModelResponse<@NonNull AnnotationModel> annotations = ((IOutputAnnotationProvider) provider).fetchAnnotations(params, monitor);
                 if (annotations.getStatus() == ITmfResponse.Status.CANCELLED || annotations.getStatus() == ITmfResponse.Status.FAILED) {
                     return Response.ok(new TmfModelResponse<>(new AnnotationModel(Collections.emptyMap()), annotations.getStatus(), annotations.getStatusMessage())).build();
                 }
@@ -832,7 +883,7 @@ public class DataProviderService {
                 return Response.status(Status.BAD_REQUEST).entity(errorMessage).build();
             }
 
-            TmfModelResponse<@NonNull Map<@NonNull String, @NonNull String>> response = provider.fetchTooltip(params, null);
+            TmfModelResponse<@NonNull Map<@NonNull String, @NonNull String>> response = provider.fetchTooltip(params, createMonitor());
             return Response.ok(response).build();
         }
     }
@@ -952,7 +1003,15 @@ public class DataProviderService {
                 return Response.status(Status.BAD_REQUEST).entity(errorMessage).build();
             }
 
-            TmfModelResponse<?> response = provider.fetchLines(params, null);
+            IProgressMonitor monitor = createMonitor();
+            if (!experiment.isIndexing()) {
+                // Serve the lines from the page cache, the pages of a table being indexed are not stable
+                TmfModelResponse<VirtualTableModelWrapper> pagedResponse = VirtualTablePageCache.fetchLines(expUUID, outputId, provider, params, monitor);
+                if (pagedResponse != null) {
+                    return Response.ok(pagedResponse).build();
+                }
+            }
+            TmfModelResponse<?> response = provider.fetchLines(params, monitor);
             if (response.getStatus() == ITmfResponse.Status.FAILED) {
                 return Response.status(Status.BAD_REQUEST).entity(response.getStatusMessage()).build();
             }
@@ -1062,7 +1121,7 @@ public class DataProviderService {
                 timeRequested = ImmutableList.of(experiment.getStartTime().toNanos(), experiment.getEndTime().toNanos());
                 params.put(DataProviderParameterUtils.REQUESTED_TIME_KEY, timeRequested);
             }
-            TmfModelResponse<?> treeResponse = provider.fetchTree(params, null);
+            TmfModelResponse<?> treeResponse = provider.fetchTree(params, createMonitor());
             Object model = treeResponse.getModel();
             return Response.ok(model instanceof TmfTreeModel ? new TmfModelResponse<>(new TreeModelWrapper((TmfTreeModel<@NonNull ITmfTreeDataModel>) model), treeResponse.getStatus(), treeResponse.getStatusMessage()) : treeResponse).build();
         }
@@ -1119,7 +1178,7 @@ public class DataProviderService {
             }
 
             if (provider instanceof IOutputStyleProvider) {
-                TmfModelResponse<@NonNull OutputStyleModel> styleModelResponse = ((IOutputStyleProvider) provider).fetchStyle(params, null);
+                TmfModelResponse<@NonNull OutputStyleModel> styleModelResponse = ((IOutputStyleProvider) provider).fetchStyle(params, createMonitor());
                 return Response.ok(styleModelResponse).build();
             }
 
@@ -1129,6 +1188,81 @@ public class DataProviderService {
         }
     }
 
+    /**
+     * Build the OK response of a time graph states or XY query, with the
+     * {@link EndpointConstants#WATERMARK_HEADER} header set to the time up to
+     * which all the returned rows or series are complete, for the next
+     * incremental query of the client. It is the minimum of the ends of the
+     * rows or series, so that a client resuming from it does not skip the data
+     * of a row that ended earlier but is still growing.
+     */
+    private static Response okWithWatermark(TmfModelResponse<?> response) {
+        ResponseBuilder builder = Response.ok(response);
+        Object model = response.getModel();
+        long watermark = Long.MAX_VALUE;
+        if (model instanceof TimeGraphModel) {
+            for (ITimeGraphRowModel row : ((TimeGraphModel) model).getRows()) {
+                List<@NonNull ITimeGraphState> states = row.getStates();
+                if (!states.isEmpty()) {
+                    ITimeGraphState last = states.get(states.size() - 1);
+                    watermark = Math.min(watermark, last.getStartTime() + last.getDuration());
+                }
+            }
+        } else if (model instanceof ITmfXyModel) {
+            for (ISeriesModel series : ((ITmfXyModel) model).getSeriesData()) {
+                long[] xValues = series.getXAxis();
+                if (xValues.length > 0) {
+                    watermark = Math.min(watermark, xValues[xValues.length - 1]);
+                }
+            }
+        }
+        if (watermark != Long.MAX_VALUE) {
+            builder.header(EndpointConstants.WATERMARK_HEADER, watermark);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create the progress monitor to pass to the data provider queries of this
+     * request. It is cancelled when the deadline given in the
+     * {@link EndpointConstants#TIMEOUT_HEADER} header is passed or when the
+     * client disconnects.
+     */
+    private IProgressMonitor createMonitor() {
+        HttpHeaders headers = fHeaders;
+        String timeout = headers != null ? headers.getHeaderString(EndpointConstants.TIMEOUT_HEADER) : null;
+        return RequestProgressMonitor.create(timeout, fRequest);
+    }
+
+    /**
+     * Whether the client prefers the columnar binary format to JSON
+     */
+    private boolean isColumnarRequested() {
+        HttpHeaders headers = fHeaders;
+        if (headers == null) {
+            return false;
+        }
+        // Acceptable media types are sorted by preference, wildcards resolve to JSON
+        for (MediaType mediaType : headers.getAcceptableMediaTypes()) {
+            if (ColumnarModelWriter.MEDIA_TYPE_COLUMNAR.equals(new MediaType(mediaType.getType(), mediaType.getSubtype()))) {
+                return true;
+            }
+            if (mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private @Nullable ObjectMapper getObjectMapper() {
+        Providers providers = fProviders;
+        if (providers == null) {
+            return null;
+        }
+        ContextResolver<ObjectMapper> resolver = providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE);
+        return resolver != null ? resolver.getContext(ObjectMapper.class) : null;
+    }
+
     private static Response validateParameters(String outputId, QueryParameters queryParameters) {
         if (outputId == null) {
             return Response.status(Status.BAD_REQUEST).entity(MISSING_OUTPUTID).build();
@@ -46,6 +46,25 @@ public final class EndpointConstants {
     /** Error message returned for a request with missing output Id */
     public static final String MISSING_OUTPUTID = "Missing parameter outputId"; //$NON-NLS-1$
 
+    /**
+     * Request header with the number of milliseconds after which the data
+     * provider queries of the request are cancelled
+     */
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout"; //$NON-NLS-1$
+
+    /**
+     * Response header with the time up to which the returned time graph states
+     * or XY points are complete, to pass as the {@link #SINCE_KEY} parameter
+     * of the next incremental query
+     */
+    public static final String WATERMARK_HEADER = "X-Watermark"; //$NON-NLS-1$
+
+    /**
+     * Query parameter key for the watermark of an incremental query, only the
+     * data from this time onwards is returned
+     */
+    public static final String SINCE_KEY = "since"; //$NON-NLS-1$
+
     /** Query parameter key for requested time range */
     private static final String REQUESTED_TIMERANGE_KEY = "requested_timerange"; //$NON-NLS-1$
 
@@ -133,6 +152,7 @@ public final class EndpointConstants {
     static final String TABLE_TIMES = "If '" + REQUESTED_TIME_KEY + "' is used it should contain an array with a single timestamp. The returned lines starting at the given timestamp (or the nearest following) will be returned. "; //$NON-NLS-1$ //$NON-NLS-2$
     static final String TIMERANGE = "The object '" + REQUESTED_TIMERANGE_KEY + "' is the requested time range and number of samples."; //$NON-NLS-1$ //$NON-NLS-2$
     static final String TIMERANGE_TREE = "The object '" + REQUESTED_TIMERANGE_KEY + "' specifies the requested time range. When absent the tree for the full range is returned."; //$NON-NLS-1$ //$NON-NLS-2$
+    static final String SINCE = "If '" + SINCE_KEY + "' is present, only the data from this time onwards is returned, the time up to which the returned data is complete being in the '" + WATERMARK_HEADER + "' response header."; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
     static final String TIMES_TT = "The array '" + REQUESTED_TIME_KEY + "' is an array with a single timestamp. "; //$NON-NLS-1$ //$NON-NLS-2$
 
     /**
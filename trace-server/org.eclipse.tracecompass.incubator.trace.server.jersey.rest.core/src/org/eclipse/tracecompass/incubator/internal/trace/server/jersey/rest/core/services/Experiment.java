@@ -35,6 +35,14 @@ import com.google.common.collect.Sets;
  */
 public final class Experiment implements Serializable {
     private static final long serialVersionUID = -3626414315455912960L;
+
+    /** Indexing status of an experiment being opened or indexed */
+    public static final String RUNNING = "RUNNING"; //$NON-NLS-1$
+    /** Indexing status of an opened and indexed experiment */
+    public static final String COMPLETED = "COMPLETED"; //$NON-NLS-1$
+    /** Indexing status of an experiment that is not opened */
+    public static final String CLOSED = "CLOSED"; //$NON-NLS-1$
+
     private final String fName;
     private final UUID fUUID;
     private final long fNbEvents;
@@ -98,7 +106,7 @@ public final class Experiment implements Serializable {
                 experiment.getNbEvents(),
                 experiment.getStartTime().toNanos(),
                 experiment.getEndTime().toNanos(),
-                experiment.isIndexing() ? "RUNNING" : "COMPLETED", //$NON-NLS-1$ //$NON-NLS-2$
+                experiment.isIndexing() ? RUNNING : COMPLETED,
                 traces);
     }
 
@@ -112,6 +120,23 @@ public final class Experiment implements Serializable {
      * @return the experiment model
      */
     public static Experiment from(IResource experimentResource, UUID expUUID) {
+        return from(experimentResource, expUUID, CLOSED);
+    }
+
+    /**
+     * Constructs an experiment model from its resource, for an experiment that
+     * is not opened yet
+     *
+     * @param experimentResource
+     *            experiment resource
+     * @param expUUID
+     *            experiment UUID
+     * @param indexingStatus
+     *            indexing status, {@link #RUNNING} if the experiment is being
+     *            opened or {@link #CLOSED}
+     * @return the experiment model
+     */
+    public static Experiment from(IResource experimentResource, UUID expUUID, String indexingStatus) {
         List<UUID> traceUUIDs = ExperimentManagerService.getTraceUUIDs(expUUID);
         Set<Trace> traces = new LinkedHashSet<>(Lists.transform(traceUUIDs, uuid -> Trace.from(TraceManagerService.getTraceResource(uuid), uuid)));
         return new Experiment(experimentResource.getName(),
@@ -119,7 +144,7 @@ public final class Experiment implements Serializable {
                 0L,
                 0L,
                 0L,
-                "CLOSED", //$NON-NLS-1$
+                indexingStatus,
                 traces);
     }
 
@@ -29,14 +29,28 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -60,6 +74,7 @@ import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core
 import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.model.ExperimentQueryParameters;
 import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.model.views.QueryParameters;
 import org.eclipse.tracecompass.tmf.core.TmfCommonConstants;
+import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.model.annotations.TraceAnnotationProvider;
 import org.eclipse.tracecompass.tmf.core.project.model.TmfTraceType;
@@ -69,6 +84,7 @@ import org.eclipse.tracecompass.tmf.core.signal.TmfTraceClosedSignal;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 
 import com.google.common.collect.HashMultiset;
@@ -95,13 +111,25 @@ public class ExperimentManagerService {
 
     private static final Map<UUID, List<UUID>> TRACE_UUIDS = Collections.synchronizedMap(new HashMap<>());
     private static final Map<UUID, IResource> EXPERIMENT_RESOURCES = Collections.synchronizedMap(initExperimentResources());
-    private static final Map<UUID, TmfExperiment> EXPERIMENTS = Collections.synchronizedMap(new HashMap<>());
+    private static final Map<UUID, TmfExperiment> EXPERIMENTS = new ConcurrentHashMap<>();
+    private static final Map<UUID, CompletableFuture<@Nullable TmfExperiment>> PENDING_EXPERIMENTS = new ConcurrentHashMap<>();
     private static final Map<UUID, TraceAnnotationProvider> TRACE_ANNOTATION_PROVIDERS = Collections.synchronizedMap(new HashMap<>());
 
     private static final String EXPERIMENTS_FOLDER = "Experiments"; //$NON-NLS-1$
     private static final String TRACES_FOLDER = "Traces"; //$NON-NLS-1$
     private static final String SUFFIX = "_exp"; //$NON-NLS-1$
 
+    private static final String RESPOND_ASYNC = "respond-async"; //$NON-NLS-1$
+    private static final String PROPERTY_OPEN_THREADS = "traceserver.openThreads"; //$NON-NLS-1$
+    private static final int OPEN_THREADS = Math.max(1, Integer.getInteger(PROPERTY_OPEN_THREADS, 2));
+    private static final long PROGRESS_POLL_INTERVAL_MS = 250;
+    private static final long MAX_PROGRESS_TIMEOUT_MS = 60000;
+
+    /** Pool opening the experiments posted with the respond-async preference */
+    private static final ExecutorService OPEN_POOL = Executors.newFixedThreadPool(OPEN_THREADS, daemonThreadFactory("Experiment opener")); //$NON-NLS-1$
+    /** Timer checking the progress of the suspended progress requests */
+    private static final ScheduledExecutorService PROGRESS_TIMER = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("Experiment progress")); //$NON-NLS-1$
+
     /**
      * Getter for the list of experiments from the trace manager
      *
@@ -114,15 +142,8 @@ public class ExperimentManagerService {
     })
     public Response getExperiments() {
         synchronized (EXPERIMENT_RESOURCES) {
-            List<Experiment> experiments = Lists.transform(new ArrayList<>(EXPERIMENT_RESOURCES.entrySet()), e -> {
-                UUID expUUID = e.getKey();
-                TmfExperiment experiment = EXPERIMENTS.get(expUUID);
-                if (experiment != null) {
-                    return Experiment.from(experiment, expUUID);
-                }
-                IResource experimentResource = e.getValue();
-                return Experiment.from(experimentResource, expUUID);
-            });
+            List<Experiment> experiments = Lists.transform(new ArrayList<>(EXPERIMENT_RESOURCES.entrySet()),
+                    e -> getExperimentModel(e.getKey(), e.getValue()));
             return Response.ok(experiments).build();
         }
     }
@@ -183,6 +204,11 @@ public class ExperimentManagerService {
             @ApiResponse(responseCode = "404", description = NO_SUCH_EXPERIMENT, content = @Content(schema = @Schema(implementation = String.class)))
     })
     public Response getExperiment(@Parameter(description = EXP_UUID) @PathParam("expUUID") UUID expUUID) {
+        IResource resource = EXPERIMENT_RESOURCES.get(expUUID);
+        if (resource != null && PENDING_EXPERIMENTS.containsKey(expUUID)) {
+            // Do not wait for an experiment that is being opened
+            return Response.ok(getExperimentModel(expUUID, resource)).build();
+        }
         TmfExperiment experiment = getExperimentByUUID(expUUID);
         if (experiment != null) {
             return Response.ok(Experiment.from(experiment, expUUID)).build();
@@ -190,6 +216,55 @@ public class ExperimentManagerService {
         return Response.status(Status.NOT_FOUND).build();
     }
 
+    /**
+     * Long-poll the opening and indexing progress of an experiment. The
+     * response is suspended until the experiment is no longer being opened or
+     * indexed, until its number of indexed events differs from the one known
+     * by the client, or until the timeout expires, without holding a request
+     * thread in the meantime.
+     *
+     * @param expUUID
+     *            UUID of the experiment
+     * @param nbEvents
+     *            number of indexed events last known by the client
+     * @param timeout
+     *            maximum time, in milliseconds, to wait for progress
+     * @param asyncResponse
+     *            the suspended response, resumed with the experiment model
+     */
+    @GET
+    @Path("/{expUUID}/progress")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Wait for the opening and indexing progress of an experiment", description = "Returns the experiment model as soon as its indexing status or its number of indexed events changes, or when the timeout expires.", responses = {
+            @ApiResponse(responseCode = "200", description = "Return the experiment model", content = @Content(schema = @Schema(implementation = org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.model.Experiment.class))),
+            @ApiResponse(responseCode = "404", description = NO_SUCH_EXPERIMENT, content = @Content(schema = @Schema(implementation = String.class)))
+    })
+    public void getExperimentProgress(@Parameter(description = EXP_UUID) @PathParam("expUUID") UUID expUUID,
+            @Parameter(description = "Number of indexed events last known by the client") @QueryParam("nbEvents") @DefaultValue("-1") long nbEvents,
+            @Parameter(description = "Maximum time to wait for progress, in milliseconds") @QueryParam("timeout") @DefaultValue("30000") long timeout,
+            @Suspended AsyncResponse asyncResponse) {
+        long delay = TimeUnit.MILLISECONDS.toNanos(Math.min(Math.max(0L, timeout), MAX_PROGRESS_TIMEOUT_MS));
+        pollProgress(expUUID, nbEvents, System.nanoTime() + delay, asyncResponse);
+    }
+
+    private static void pollProgress(UUID expUUID, long nbEvents, long deadline, AsyncResponse asyncResponse) {
+        if (asyncResponse.isDone()) {
+            return;
+        }
+        IResource resource = EXPERIMENT_RESOURCES.get(expUUID);
+        if (resource == null) {
+            asyncResponse.resume(Response.status(Status.NOT_FOUND).entity(NO_SUCH_EXPERIMENT).build());
+            return;
+        }
+        Experiment model = getExperimentModel(expUUID, resource);
+        boolean inProgress = Experiment.RUNNING.equals(model.getIndexingStatus()) && model.getNbEvents() == nbEvents;
+        if (!inProgress || System.nanoTime() - deadline >= 0) {
+            asyncResponse.resume(Response.ok(model).build());
+            return;
+        }
+        PROGRESS_TIMER.schedule(() -> pollProgress(expUUID, nbEvents, deadline, asyncResponse), PROGRESS_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Delete an experiment by {@link UUID}.
      *
@@ -206,25 +281,30 @@ public class ExperimentManagerService {
             @ApiResponse(responseCode = "404", description = NO_SUCH_EXPERIMENT, content = @Content(schema = @Schema(implementation = String.class)))
     })
     public Response deleteExperiment(@Parameter(description = EXP_UUID) @PathParam("expUUID") UUID expUUID) {
-        IResource resource = EXPERIMENT_RESOURCES.remove(expUUID);
-        if (resource == null) {
-            return Response.status(Status.NOT_FOUND).build();
+        IResource resource;
+        TmfExperiment experiment;
+        synchronized (EXPERIMENT_RESOURCES) {
+            // An experiment being opened is published under the same lock
+            resource = EXPERIMENT_RESOURCES.remove(expUUID);
+            if (resource == null) {
+                return Response.status(Status.NOT_FOUND).build();
+            }
+            experiment = EXPERIMENTS.remove(expUUID);
         }
         Experiment experimentModel = Experiment.from(resource, expUUID);
-        TmfExperiment experiment = EXPERIMENTS.remove(expUUID);
         if (experiment != null) {
             TmfSignalManager.dispatchSignal(new TmfTraceClosedSignal(this, experiment));
             experiment.dispose();
         }
         TRACE_ANNOTATION_PROVIDERS.remove(expUUID);
         TRACE_UUIDS.remove(expUUID);
+        DataProviderResponseCache.invalidate(expUUID);
+        VirtualTablePageCache.invalidate(expUUID);
         boolean deleteResources = true;
-        synchronized (EXPERIMENTS) {
-            for (TmfExperiment e : EXPERIMENTS.values()) {
-                if (resource.equals(e.getResource())) {
-                    deleteResources = false;
-                    break;
-                }
+        for (TmfExperiment e : EXPERIMENTS.values()) {
+            if (resource.equals(e.getResource())) {
+                deleteResources = false;
+                break;
             }
         }
         if (deleteResources) {
@@ -253,6 +333,11 @@ public class ExperimentManagerService {
      *            {@link QueryParameters}
      *            - name -> name for the experiment.
      *            - traces -> List of UUID strings of the traces to add to the experiment
+     *            - analyses -> Optional list of IDs of the analyses to schedule once the experiment is opened
+     *
+     * @param prefer
+     *            value of the Prefer header, the experiment is opened in the
+     *            background if it contains the respond-async preference
      *
      * @return no content response if one of the trace {@link UUID}s does not map to
      *         any trace.
@@ -262,6 +347,7 @@ public class ExperimentManagerService {
     @Produces(MediaType.APPLICATION_JSON)
     @Operation(summary = "Create a new experiment on the server", responses = {
             @ApiResponse(responseCode = "200", description = "The experiment was successfully created", content = @Content(schema = @Schema(implementation = org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.model.Experiment.class))),
+            @ApiResponse(responseCode = "202", description = "The experiment was successfully created and is being opened in the background", content = @Content(schema = @Schema(implementation = org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.model.Experiment.class))),
             @ApiResponse(responseCode = "204", description = "The experiment has at least one trace which hasn't been created yet", content = @Content(schema = @Schema(implementation = String.class))),
             @ApiResponse(responseCode = "400", description = INVALID_PARAMETERS, content = @Content(schema = @Schema(implementation = String.class))),
             @ApiResponse(responseCode = "409", description = "The experiment (name) already exists and both differ", content = @Content(schema = @Schema(implementation = String.class))),
@@ -269,7 +355,8 @@ public class ExperimentManagerService {
     })
     public Response postExperiment(@RequestBody(content = {
             @Content(schema = @Schema(implementation = ExperimentQueryParameters.class))
-    }, required = true) QueryParameters queryParameters) {
+    }, required = true) QueryParameters queryParameters,
+            @Parameter(description = "Use respond-async to open the experiment in the background") @HeaderParam("Prefer") String prefer) {
 
         if (queryParameters == null) {
             return Response.status(Status.BAD_REQUEST).entity(MISSING_PARAMETERS).build();
@@ -281,6 +368,7 @@ public class ExperimentManagerService {
         }
         String name = Objects.requireNonNull((String) parameters.get("name")); //$NON-NLS-1$
         List<String> tracesObj = Objects.requireNonNull((List<String>) parameters.get("traces")); //$NON-NLS-1$
+        List<String> analyses = (List<String>) parameters.getOrDefault("analyses", Collections.emptyList()); //$NON-NLS-1$
         List<UUID> traceUUIDs = new ArrayList<>();
 
         List<IResource> traceResources = new ArrayList<>();
@@ -317,6 +405,7 @@ public class ExperimentManagerService {
                 TmfExperiment experiment = EXPERIMENTS.get(expUUID);
                 if (experiment != null) {
                     // It's already opened, return it
+                    scheduleAnalyses(experiment, analyses);
                     return Response.ok(Experiment.from(experiment, expUUID)).build();
                 }
                 // It's not opened, continue below to instantiate it
@@ -330,10 +419,15 @@ public class ExperimentManagerService {
 
         TRACE_UUIDS.put(expUUID, traceUUIDs);
         EXPERIMENT_RESOURCES.put(expUUID, resource);
-        TmfExperiment experiment = createExperimentInstance(expUUID);
+        if (prefer != null && prefer.contains(RESPOND_ASYNC)) {
+            openExperiment(expUUID, OPEN_POOL).thenAccept(opened -> scheduleAnalyses(opened, analyses));
+            return Response.accepted(getExperimentModel(expUUID, resource)).build();
+        }
+        TmfExperiment experiment = getExperimentByUUID(expUUID);
         if (experiment == null) {
             return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Failed to instantiate experiment").build(); //$NON-NLS-1$
         }
+        scheduleAnalyses(experiment, analyses);
 
         return Response.ok(Experiment.from(experiment, expUUID)).build();
     }
@@ -368,9 +462,18 @@ public class ExperimentManagerService {
 
                 TmfSignalManager.dispatchSignal(new TmfTraceOpenedSignal(ExperimentManagerService.class, experiment, null));
 
-                EXPERIMENTS.put(expUUID, experiment);
-                TRACE_ANNOTATION_PROVIDERS.put(expUUID, new TraceAnnotationProvider(experiment));
-                return experiment;
+                synchronized (EXPERIMENT_RESOURCES) {
+                    if (EXPERIMENT_RESOURCES.containsKey(expUUID)) {
+                        // Publish the experiment last, it is looked up without locking
+                        TRACE_ANNOTATION_PROVIDERS.put(expUUID, new TraceAnnotationProvider(experiment));
+                        EXPERIMENTS.put(expUUID, experiment);
+                        return experiment;
+                    }
+                }
+                // The experiment was deleted while it was being opened
+                TmfSignalManager.dispatchSignal(new TmfTraceClosedSignal(ExperimentManagerService.class, experiment));
+                experiment.dispose();
+                return null;
             }
         } catch (CoreException e) {
             Activator.getInstance().logWarning("Error instantiating experiment"); //$NON-NLS-1$
@@ -378,6 +481,29 @@ public class ExperimentManagerService {
         return experiment;
     }
 
+    /**
+     * Schedule the analyses of an opened experiment and of its traces. The
+     * analyses that do not apply to the experiment are ignored.
+     *
+     * @param experiment
+     *            the experiment, or null if it could not be opened
+     * @param analysisIds
+     *            the IDs of the analyses to schedule
+     */
+    private static void scheduleAnalyses(@Nullable TmfExperiment experiment, List<String> analysisIds) {
+        if (experiment == null || analysisIds.isEmpty()) {
+            return;
+        }
+        for (ITmfTrace trace : TmfTraceManager.getTraceSetWithExperiment(experiment)) {
+            for (String analysisId : analysisIds) {
+                IAnalysisModule module = trace.getAnalysisModule(analysisId);
+                if (module != null) {
+                    module.schedule();
+                }
+            }
+        }
+    }
+
     /**
      * Get experiment type from experiment resource or auto-detect if it has not
      * been detected. It will fall-back to the default experiment if experiment
@@ -498,17 +624,82 @@ public class ExperimentManagerService {
     /**
      * Try and find an experiment with the queried UUID in the experiment
      * manager.
+     * <p>
+     * Opened experiments are returned without locking. An experiment that is
+     * not opened yet is instantiated only once: concurrent callers for the
+     * same UUID wait for that instance, while callers for other experiments
+     * are not blocked.
      *
      * @param expUUID
      *            queried {@link UUID}
      * @return the experiment or null if none match.
      */
-    public static synchronized @Nullable TmfExperiment getExperimentByUUID(UUID expUUID) {
+    public static @Nullable TmfExperiment getExperimentByUUID(UUID expUUID) {
         TmfExperiment experiment = EXPERIMENTS.get(expUUID);
-        if (experiment == null) {
-            experiment = createExperimentInstance(expUUID);
+        if (experiment != null) {
+            return experiment;
         }
-        return experiment;
+        try {
+            return openExperiment(expUUID, Runnable::run).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        }
+    }
+
+    /**
+     * Open an experiment, unless it is opened or being opened already.
+     *
+     * @param expUUID
+     *            queried {@link UUID}
+     * @param executor
+     *            the executor that instantiates the experiment
+     * @return the future experiment, or null if it could not be instantiated
+     */
+    private static CompletableFuture<@Nullable TmfExperiment> openExperiment(UUID expUUID, Executor executor) {
+        TmfExperiment experiment = EXPERIMENTS.get(expUUID);
+        if (experiment != null) {
+            return CompletableFuture.completedFuture(experiment);
+        }
+        CompletableFuture<@Nullable TmfExperiment> future = new CompletableFuture<>();
+        CompletableFuture<@Nullable TmfExperiment> pending = PENDING_EXPERIMENTS.putIfAbsent(expUUID, future);
+        if (pending != null) {
+            // Another request is opening this experiment
+            return pending;
+        }
+        executor.execute(() -> {
+            try {
+                // It may have been opened since the first lookup
+                TmfExperiment opened = EXPERIMENTS.get(expUUID);
+                future.complete(opened != null ? opened : createExperimentInstance(expUUID));
+            } catch (RuntimeException e) {
+                Activator.getInstance().logError("Failed to open experiment", e); //$NON-NLS-1$
+                future.completeExceptionally(e);
+            } finally {
+                PENDING_EXPERIMENTS.remove(expUUID, future);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Get the model of an experiment, whether it is opened, being opened or
+     * closed.
+     */
+    private static Experiment getExperimentModel(UUID expUUID, IResource resource) {
+        TmfExperiment experiment = EXPERIMENTS.get(expUUID);
+        if (experiment != null) {
+            return Experiment.from(experiment, expUUID);
+        }
+        return Experiment.from(resource, expUUID, PENDING_EXPERIMENTS.containsKey(expUUID) ? Experiment.RUNNING : Experiment.CLOSED);
+    }
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
     /**
@@ -561,5 +752,7 @@ public class ExperimentManagerService {
         TRACE_UUIDS.clear();
         EXPERIMENT_RESOURCES.clear();
         TRACE_ANNOTATION_PROVIDERS.clear();
+        DataProviderResponseCache.invalidateAll();
+        VirtualTablePageCache.invalidateAll();
     }
 }
@@ -37,11 +37,12 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 public class HealthService {
 
     private static final String STATUS_KEY = "status"; //$NON-NLS-1$
+    private static final String RESPONSE_CACHE_KEY = "responseCache"; //$NON-NLS-1$
 
     /**
      * Getter for the health status
      *
-     * @return UP status.
+     * @return UP status, with the statistics of the response cache.
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -51,6 +52,7 @@ public class HealthService {
     })
     public Response getHealthStatus() {
         // If the server can answer this call, it is up!!
-        return Response.ok(ImmutableMap.of(STATUS_KEY, ServerStatus.Status.UP.name())).build();
+        return Response.ok(ImmutableMap.of(STATUS_KEY, ServerStatus.Status.UP.name(),
+                RESPONSE_CACHE_KEY, DataProviderResponseCache.getStatistics())).build();
     }
 }
@@ -0,0 +1,158 @@
+/**********************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
+import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils.FlowScopeLog;
+import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils.FlowScopeLogBuilder;
+import org.eclipse.tracecompass.tmf.core.dataprovider.DataProviderParameterUtils;
+import org.eclipse.tracecompass.tmf.core.model.CommonStatusMessage;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphDataProvider;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphEntryModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphRowModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphModel;
+import org.eclipse.tracecompass.tmf.core.response.ITmfResponse;
+import org.eclipse.tracecompass.tmf.core.response.TmfModelResponse;
+
+/**
+ * Fetches the row model of a time graph data provider for a large set of
+ * requested items by splitting the items in chunks that are fetched in
+ * parallel on a dedicated, bounded pool, then merging the rows in the order of
+ * the chunks.
+ * <p>
+ * The number of threads of the pool can be specified using the system
+ * property {@value #PROPERTY_FAN_OUT_THREADS}, a value of 1 fetching the
+ * chunks sequentially on the request thread.
+ */
+public final class ParallelRowModelFetcher {
+
+    private static final @NonNull Logger LOGGER = TraceCompassLog.getLogger(ParallelRowModelFetcher.class);
+
+    private static final String PROPERTY_FAN_OUT_THREADS = "traceserver.fanOutThreads"; //$NON-NLS-1$
+    private static final int FAN_OUT_THREADS = Math.max(1, Integer.getInteger(PROPERTY_FAN_OUT_THREADS, Runtime.getRuntime().availableProcessors()));
+
+    /** Minimum number of items per chunk, smaller requests are not split */
+    private static final int MIN_CHUNK_SIZE = 32;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(FAN_OUT_THREADS);
+
+    private ParallelRowModelFetcher() {
+        // Utility class
+    }
+
+    /**
+     * Fetch the row model for the requested items
+     *
+     * @param provider
+     *            the time graph data provider
+     * @param params
+     *            the validated query parameters
+     * @param items
+     *            the requested items
+     * @param monitor
+     *            the progress monitor of the request, cancelled when a chunk
+     *            fails or is cancelled, may be null
+     * @return the response with the merged rows of all the chunks
+     */
+    public static TmfModelResponse<TimeGraphModel> fetchRowModel(ITimeGraphDataProvider<@NonNull ITimeGraphEntryModel> provider,
+            Map<String, Object> params, List<Long> items, @Nullable IProgressMonitor monitor) {
+        int nbChunks = Math.min(FAN_OUT_THREADS, items.size() / MIN_CHUNK_SIZE);
+        if (nbChunks <= 1) {
+            return provider.fetchRowModel(params, monitor);
+        }
+        IProgressMonitor requestMonitor = monitor != null ? monitor : new NullProgressMonitor();
+        int chunkSize = (items.size() + nbChunks - 1) / nbChunks;
+        try (FlowScopeLog scope = new FlowScopeLogBuilder(LOGGER, Level.FINE, "ParallelRowModelFetcher#fetchRowModel") //$NON-NLS-1$
+                .setCategory(String.valueOf(provider.getId())).build()) {
+            List<CompletableFuture<TmfModelResponse<TimeGraphModel>>> futures = new ArrayList<>();
+            for (int i = 0; i < items.size(); i += chunkSize) {
+                Map<String, Object> chunkParams = new HashMap<>(params);
+                chunkParams.put(DataProviderParameterUtils.REQUESTED_ITEMS_KEY, items.subList(i, Math.min(i + chunkSize, items.size())));
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    TmfModelResponse<TimeGraphModel> response = provider.fetchRowModel(chunkParams, requestMonitor);
+                    if (response.getStatus() == ITmfResponse.Status.FAILED || response.getStatus() == ITmfResponse.Status.CANCELLED) {
+                        // No need to fetch the other chunks
+                        requestMonitor.setCanceled(true);
+                    }
+                    return response;
+                }, POOL));
+            }
+
+            List<@NonNull ITimeGraphRowModel> rows = new ArrayList<>();
+            ITmfResponse.Status status = ITmfResponse.Status.COMPLETED;
+            String statusMessage = CommonStatusMessage.COMPLETED;
+            for (CompletableFuture<TmfModelResponse<TimeGraphModel>> future : futures) {
+                TmfModelResponse<TimeGraphModel> response;
+                try {
+                    response = future.join();
+                } catch (CompletionException e) {
+                    requestMonitor.setCanceled(true);
+                    return new TmfModelResponse<>(null, ITmfResponse.Status.FAILED, String.valueOf(e.getCause()));
+                }
+                TimeGraphModel model = response.getModel();
+                if (model != null) {
+                    rows.addAll(model.getRows());
+                }
+                if (isWorse(response.getStatus(), status)) {
+                    status = response.getStatus();
+                    statusMessage = response.getStatusMessage();
+                }
+            }
+            if (status == ITmfResponse.Status.FAILED || status == ITmfResponse.Status.CANCELLED) {
+                return new TmfModelResponse<>(null, status, statusMessage);
+            }
+            return new TmfModelResponse<>(new TimeGraphModel(rows), status, statusMessage);
+        }
+    }
+
+    /**
+     * Whether a response status is worse than another, a failed response being
+     * worse than a cancelled one, itself worse than a running one
+     *
+     * @param status
+     *            the status to compare
+     * @param current
+     *            the current status
+     * @return true if status is worse than current
+     */
+    static boolean isWorse(ITmfResponse.Status status, ITmfResponse.Status current) {
+        return rank(status) > rank(current);
+    }
+
+    private static int rank(ITmfResponse.Status status) {
+        switch (status) {
+        case FAILED:
+            return 3;
+        case CANCELLED:
+            return 2;
+        case RUNNING:
+            return 1;
+        case COMPLETED:
+        default:
+            return 0;
+        }
+    }
+}
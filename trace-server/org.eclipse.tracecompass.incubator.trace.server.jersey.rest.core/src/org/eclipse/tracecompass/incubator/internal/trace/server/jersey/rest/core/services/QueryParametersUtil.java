@@ -45,6 +45,7 @@ public class QueryParametersUtil {
         String ARROW = "arrow"; //$NON-NLS-1$
     }
 
+    private static final String ANALYSES = "analyses"; //$NON-NLS-1$
     private static final String DESTINATION_ID = "destinationId"; //$NON-NLS-1$
     private static final String DURATION = "duration"; //$NON-NLS-1$
     private static final String ELEMENT_TYPE = "elementType"; //$NON-NLS-1$
@@ -95,6 +96,9 @@ public class QueryParametersUtil {
         if ((errorMessage = validateStringList(TRACES, params)) != null) {
             return errorMessage;
         }
+        if (params.containsKey(ANALYSES) && (errorMessage = validateStringList(ANALYSES, params)) != null) {
+            return errorMessage;
+        }
         return null;
     }
 
@@ -128,6 +132,9 @@ public class QueryParametersUtil {
         if ((errorMessage = validateRequestedItems(params, true)) != null) {
             return errorMessage;
         }
+        if ((errorMessage = validateSince(params)) != null) {
+            return errorMessage;
+        }
         return null;
     }
 
@@ -379,6 +386,43 @@ public class QueryParametersUtil {
         return null;
     }
 
+    /**
+     * Validate and apply the since query parameter of an incremental query.
+     * The requested times before the watermark are replaced by the watermark
+     * itself, so that the data provider only queries the data that the client
+     * does not have yet, starting exactly where the previous response ended.
+     * The last requested time is kept if they are all before the watermark.
+     *
+     * @param params
+     *            the mutable map of query parameters, with the requested times
+     *            already validated
+     * @return an error message if validation fails, or null otherwise
+     */
+    private static String validateSince(Map<String, Object> params) {
+        Object value = params.remove(EndpointConstants.SINCE_KEY);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof Number)) {
+            return INVALID_PARAMETERS + SEP + EndpointConstants.SINCE_KEY;
+        }
+        long since = ((Number) value).longValue();
+        List<@NonNull Long> timeRequested = DataProviderParameterUtils.extractTimeRequested(params);
+        if (timeRequested == null || timeRequested.isEmpty() || timeRequested.get(0) >= since) {
+            return null;
+        }
+        long last = timeRequested.get(timeRequested.size() - 1);
+        List<Long> newTimes = new ArrayList<>();
+        newTimes.add(Math.min(since, last));
+        for (Long time : timeRequested) {
+            if (time > since) {
+                newTimes.add(time);
+            }
+        }
+        params.put(DataProviderParameterUtils.REQUESTED_TIME_KEY, newTimes);
+        return null;
+    }
+
     /**
      * Validate and convert the requested_items query parameter.
      *
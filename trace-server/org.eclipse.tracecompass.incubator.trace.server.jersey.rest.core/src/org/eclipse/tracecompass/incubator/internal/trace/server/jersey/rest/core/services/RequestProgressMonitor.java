@@ -0,0 +1,104 @@
+/**********************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletRequest;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jetty.ee8.nested.HttpChannel;
+import org.eclipse.jetty.ee8.nested.Request;
+
+/**
+ * Progress monitor given to the data providers for a request. It is cancelled
+ * when the deadline of the request, if any, is passed or when the client has
+ * disconnected, so that abandoned queries stop using server resources.
+ */
+public final class RequestProgressMonitor extends NullProgressMonitor {
+
+    /** Minimum delay between two checks of the client connection */
+    private static final long CONNECTION_CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final long fDeadline;
+    private final boolean fHasDeadline;
+    private final @Nullable ServletRequest fRequest;
+    private volatile long fLastConnectionCheck;
+
+    private RequestProgressMonitor(@Nullable Long timeoutMs, @Nullable ServletRequest request) {
+        long now = System.nanoTime();
+        fHasDeadline = timeoutMs != null;
+        fDeadline = timeoutMs != null ? now + TimeUnit.MILLISECONDS.toNanos(timeoutMs) : 0L;
+        fRequest = request;
+        fLastConnectionCheck = now;
+    }
+
+    /**
+     * Create the monitor of a request
+     *
+     * @param timeoutHeader
+     *            the value of the {@link EndpointConstants#TIMEOUT_HEADER}
+     *            header, the number of milliseconds after which the request is
+     *            cancelled, or null if there is no deadline
+     * @param request
+     *            the servlet request, used to detect client disconnection, or
+     *            null if not available
+     * @return the monitor
+     */
+    public static RequestProgressMonitor create(@Nullable String timeoutHeader, @Nullable ServletRequest request) {
+        Long timeoutMs = null;
+        if (timeoutHeader != null) {
+            try {
+                timeoutMs = Math.max(0L, Long.parseLong(timeoutHeader.trim()));
+            } catch (NumberFormatException e) {
+                // Ignore an invalid timeout, the request has no deadline
+            }
+        }
+        return new RequestProgressMonitor(timeoutMs, request);
+    }
+
+    @Override
+    public boolean isCanceled() {
+        if (super.isCanceled()) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (fHasDeadline && now - fDeadline >= 0) {
+            setCanceled(true);
+            return true;
+        }
+        if (now - fLastConnectionCheck >= CONNECTION_CHECK_INTERVAL) {
+            fLastConnectionCheck = now;
+            if (!isConnectionOpen()) {
+                setCanceled(true);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isConnectionOpen() {
+        ServletRequest request = fRequest;
+        if (request == null) {
+            return true;
+        }
+        try {
+            Request baseRequest = Request.getBaseRequest(request);
+            HttpChannel channel = baseRequest != null ? baseRequest.getHttpChannel() : null;
+            return channel == null || channel.getEndPoint().isOpen();
+        } catch (RuntimeException e) {
+            // The request is recycled or the container is not Jetty
+            return true;
+        }
+    }
+}
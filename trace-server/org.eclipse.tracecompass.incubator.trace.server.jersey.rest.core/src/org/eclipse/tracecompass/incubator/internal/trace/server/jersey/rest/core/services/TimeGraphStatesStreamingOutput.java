@@ -0,0 +1,139 @@
+/**********************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
+import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils.ScopeLog;
+import org.eclipse.tracecompass.tmf.core.dataprovider.DataProviderParameterUtils;
+import org.eclipse.tracecompass.tmf.core.model.CommonStatusMessage;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphDataProvider;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphEntryModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphRowModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphModel;
+import org.eclipse.tracecompass.tmf.core.response.ITmfResponse;
+import org.eclipse.tracecompass.tmf.core.response.TmfModelResponse;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * {@link StreamingOutput} that writes the time graph states of a large
+ * requested items set chunk by chunk. Each chunk of items is fetched from the
+ * data provider and its rows are written to the response before the next chunk
+ * is fetched, so that only one chunk of rows is kept in memory at a time and
+ * the client starts receiving data early.
+ * <p>
+ * The produced JSON is identical to the one of a serialized
+ * {@link TmfModelResponse} of {@link TimeGraphModel}, except that the model is
+ * written before the status, which is only known once all chunks are fetched.
+ * The model is only started with the first chunk that has one, so that a
+ * response without any model is written with a null model, as when it is not
+ * streamed. Rows already streamed are kept if a later chunk fails.
+ */
+final class TimeGraphStatesStreamingOutput implements StreamingOutput {
+
+    private static final @NonNull Logger LOGGER = TraceCompassLog.getLogger(TimeGraphStatesStreamingOutput.class);
+
+    private final ITimeGraphDataProvider<@NonNull ITimeGraphEntryModel> fProvider;
+    private final Map<String, Object> fParameters;
+    private final List<Long> fItems;
+    private final int fChunkSize;
+    private final ObjectMapper fMapper;
+    private final @Nullable IProgressMonitor fMonitor;
+
+    /**
+     * Constructor
+     *
+     * @param provider
+     *            the time graph data provider to query
+     * @param parameters
+     *            the validated query parameters
+     * @param items
+     *            the requested items, to split in chunks
+     * @param chunkSize
+     *            the maximum number of items to fetch at once
+     * @param mapper
+     *            the object mapper with the trace server serializers
+     * @param monitor
+     *            the progress monitor of the request, may be null
+     */
+    TimeGraphStatesStreamingOutput(ITimeGraphDataProvider<@NonNull ITimeGraphEntryModel> provider, Map<String, Object> parameters,
+            List<Long> items, int chunkSize, ObjectMapper mapper, @Nullable IProgressMonitor monitor) {
+        fProvider = provider;
+        fParameters = parameters;
+        fItems = items;
+        fChunkSize = chunkSize;
+        fMapper = mapper;
+        fMonitor = monitor;
+    }
+
+    @Override
+    public void write(@Nullable OutputStream output) throws IOException {
+        ITmfResponse.Status status = ITmfResponse.Status.COMPLETED;
+        String statusMessage = CommonStatusMessage.COMPLETED;
+        try (ScopeLog sl = new ScopeLog(LOGGER, Level.FINE, "TimeGraphStatesStreamingOutput#write"); //$NON-NLS-1$
+                JsonGenerator gen = fMapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeFieldName("model"); //$NON-NLS-1$
+            boolean modelStarted = false;
+            for (int i = 0; i < fItems.size(); i += fChunkSize) {
+                List<Long> chunk = fItems.subList(i, Math.min(i + fChunkSize, fItems.size()));
+                Map<String, Object> chunkParameters = new HashMap<>(fParameters);
+                chunkParameters.put(DataProviderParameterUtils.REQUESTED_ITEMS_KEY, chunk);
+                TmfModelResponse<TimeGraphModel> response = ParallelRowModelFetcher.fetchRowModel(fProvider, chunkParameters, chunk, fMonitor);
+                TimeGraphModel model = response.getModel();
+                if (model != null) {
+                    if (!modelStarted) {
+                        gen.writeStartObject();
+                        gen.writeArrayFieldStart("rows"); //$NON-NLS-1$
+                        modelStarted = true;
+                    }
+                    for (ITimeGraphRowModel row : model.getRows()) {
+                        gen.writeObject(row);
+                    }
+                }
+                if (ParallelRowModelFetcher.isWorse(response.getStatus(), status)) {
+                    status = response.getStatus();
+                    statusMessage = response.getStatusMessage();
+                }
+                if (status == ITmfResponse.Status.FAILED || status == ITmfResponse.Status.CANCELLED) {
+                    break;
+                }
+                // Push the rows of this chunk to the client
+                gen.flush();
+            }
+            if (modelStarted) {
+                gen.writeEndArray();
+                gen.writeEndObject();
+            } else {
+                gen.writeNull();
+            }
+            gen.writeStringField("status", status.name()); //$NON-NLS-1$
+            gen.writeStringField("statusMessage", statusMessage); //$NON-NLS-1$
+            gen.writeEndObject();
+        }
+    }
+}
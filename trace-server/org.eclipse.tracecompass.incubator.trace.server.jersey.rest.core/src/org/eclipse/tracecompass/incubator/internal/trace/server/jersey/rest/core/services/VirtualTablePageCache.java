@@ -0,0 +1,347 @@
+/**********************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.model.views.VirtualTableModelWrapper;
+import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.ITmfVirtualTableDataProvider;
+import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.ITmfVirtualTableModel;
+import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.IVirtualTableLine;
+import org.eclipse.tracecompass.internal.provisional.tmf.core.model.table.VirtualTableCell;
+import org.eclipse.tracecompass.tmf.core.dataprovider.DataProviderParameterUtils;
+import org.eclipse.tracecompass.tmf.core.model.CommonStatusMessage;
+import org.eclipse.tracecompass.tmf.core.model.tree.ITmfTreeDataModel;
+import org.eclipse.tracecompass.tmf.core.response.ITmfResponse;
+import org.eclipse.tracecompass.tmf.core.response.TmfModelResponse;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of the pages of lines of the virtual tables, shared by all the clients
+ * of the server. The lines are fetched from the data provider by pages of a
+ * fixed number of lines, aligned on the line rank, keyed by experiment, output,
+ * the other query parameters (columns, filters and search expressions) and
+ * page index. A request for any range of lines is served from the pages that
+ * cover it, and the pages that follow in the scroll direction are prefetched
+ * in the background.
+ * <p>
+ * Pages are weighed by an estimate of their memory footprint and the least
+ * recently used ones are evicted first. The following system properties can
+ * be specified:
+ * <ul>
+ * <li>{@value #PROPERTY_CACHE_SIZE}: the maximum weight, in bytes, a value of
+ * 0 disabling the cache</li>
+ * <li>{@value #PROPERTY_PAGE_SIZE}: the number of lines per page</li>
+ * <li>{@value #PROPERTY_PREFETCH_PAGES}: the number of pages to prefetch</li>
+ * </ul>
+ */
+public final class VirtualTablePageCache {
+
+    private static final String PROPERTY_CACHE_SIZE = "traceserver.tableCacheSize"; //$NON-NLS-1$
+    private static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+    private static final long CACHE_SIZE = Long.getLong(PROPERTY_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+
+    private static final String PROPERTY_PAGE_SIZE = "traceserver.tablePageSize"; //$NON-NLS-1$
+    private static final int PAGE_SIZE = Math.max(1, Integer.getInteger(PROPERTY_PAGE_SIZE, 500));
+
+    private static final String PROPERTY_PREFETCH_PAGES = "traceserver.tablePrefetchPages"; //$NON-NLS-1$
+    private static final int PREFETCH_PAGES = Math.max(0, Integer.getInteger(PROPERTY_PREFETCH_PAGES, 2));
+
+    /** Requests for more pages than this are not served from the cache */
+    private static final int MAX_PAGES_PER_REQUEST = 16;
+
+    /* Rough estimates, in bytes, of the footprint of the model objects */
+    private static final int PAGE_WEIGHT = 64;
+    private static final int LINE_WEIGHT = 64;
+    private static final int CELL_WEIGHT = 48;
+
+    private static final Cache<PageKey, Page> CACHE = CacheBuilder.newBuilder()
+            .maximumWeight(CACHE_SIZE)
+            .weigher((PageKey key, Page value) -> value.fWeight)
+            .build();
+
+    /** Last first page requested for each table, to know the scroll direction */
+    private static final Cache<TableKey, Long> LAST_PAGES = CacheBuilder.newBuilder()
+            .maximumSize(1024)
+            .build();
+
+    /**
+     * Single thread prefetching the pages. The oldest prefetch is dropped when
+     * the client scrolls faster than the pages can be fetched.
+     */
+    private static final ThreadPoolExecutor PREFETCH_POOL = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(4 * Math.max(1, PREFETCH_PAGES)),
+            runnable -> {
+                Thread thread = new Thread(runnable, "Virtual table prefetch"); //$NON-NLS-1$
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.DiscardOldestPolicy());
+
+    private VirtualTablePageCache() {
+        // Utility class
+    }
+
+    /**
+     * Fetch the lines of a virtual table query from the cached pages, fetching
+     * the missing pages from the data provider
+     *
+     * @param expUUID
+     *            the experiment UUID
+     * @param outputId
+     *            the output ID
+     * @param provider
+     *            the virtual table data provider
+     * @param params
+     *            the validated query parameters
+     * @param monitor
+     *            the progress monitor of the request, may be null
+     * @return the response, or null if the query cannot be served from pages,
+     *         for instance if it is a search or a query by time
+     */
+    public static @Nullable TmfModelResponse<VirtualTableModelWrapper> fetchLines(UUID expUUID, String outputId,
+            ITmfVirtualTableDataProvider<? extends IVirtualTableLine, ? extends ITmfTreeDataModel> provider,
+            Map<String, Object> params, @Nullable IProgressMonitor monitor) {
+        Object indexObj = params.get(DataProviderParameterUtils.REQUESTED_TABLE_INDEX_KEY);
+        Object countObj = params.get(DataProviderParameterUtils.REQUESTED_TABLE_COUNT_KEY);
+        if (CACHE_SIZE <= 0 || !(indexObj instanceof Number) || !(countObj instanceof Number)
+                || params.containsKey(DataProviderParameterUtils.REQUESTED_TIME_KEY)
+                || params.containsKey(DataProviderParameterUtils.TABLE_SEARCH_DIRECTION_KEY)) {
+            return null;
+        }
+        long index = ((Number) indexObj).longValue();
+        long count = ((Number) countObj).longValue();
+        if (index < 0 || count <= 0 || count > (long) MAX_PAGES_PER_REQUEST * PAGE_SIZE) {
+            return null;
+        }
+
+        Map<String, Object> tableParams = new HashMap<>(params);
+        tableParams.remove(DataProviderParameterUtils.REQUESTED_TABLE_INDEX_KEY);
+        tableParams.remove(DataProviderParameterUtils.REQUESTED_TABLE_COUNT_KEY);
+        TableKey table = new TableKey(expUUID, outputId, DataProviderResponseCache.canonicalize(tableParams));
+
+        long firstPage = index / PAGE_SIZE;
+        long lastPage = (index + count - 1) / PAGE_SIZE;
+        List<IVirtualTableLine> lines = new ArrayList<>((int) count);
+        List<Long> columnIds = Collections.emptyList();
+        long size = 0;
+        for (long pageIndex = firstPage; pageIndex <= lastPage; pageIndex++) {
+            PageKey key = new PageKey(table, pageIndex);
+            Page page = CACHE.getIfPresent(key);
+            if (page == null) {
+                TmfModelResponse<?> response = fetchPage(provider, tableParams, pageIndex, monitor);
+                Object model = response.getModel();
+                if (response.getStatus() != ITmfResponse.Status.COMPLETED || !(model instanceof ITmfVirtualTableModel)) {
+                    // Let the caller query the provider directly
+                    return null;
+                }
+                page = new Page((ITmfVirtualTableModel<?>) model);
+                if (page.isFull()) {
+                    CACHE.put(key, page);
+                }
+            }
+            columnIds = page.fColumnIds;
+            size = Math.max(size, page.fSize);
+            long pageStart = pageIndex * PAGE_SIZE;
+            int from = (int) Math.max(0L, index - pageStart);
+            int to = (int) Math.min(page.fLines.size(), index + count - pageStart);
+            if (from < to) {
+                lines.addAll(page.fLines.subList(from, to));
+            }
+            if (!page.isFull()) {
+                // End of the table
+                break;
+            }
+        }
+        prefetch(table, provider, tableParams, firstPage, lastPage, size);
+        return new TmfModelResponse<>(new VirtualTableModelWrapper(columnIds, lines, index, size), ITmfResponse.Status.COMPLETED, CommonStatusMessage.COMPLETED);
+    }
+
+    /**
+     * Get the number of lines per page
+     *
+     * @return the page size
+     */
+    @VisibleForTesting
+    public static int getPageSize() {
+        return PAGE_SIZE;
+    }
+
+    /**
+     * Invalidate the pages of an experiment, for instance when it is closed
+     *
+     * @param expUUID
+     *            the experiment UUID
+     */
+    public static void invalidate(UUID expUUID) {
+        CACHE.asMap().keySet().removeIf(key -> key.fTable.fExpUUID.equals(expUUID));
+        LAST_PAGES.asMap().keySet().removeIf(key -> key.fExpUUID.equals(expUUID));
+    }
+
+    /**
+     * Invalidate all the pages, for instance when a configuration changes
+     */
+    public static void invalidateAll() {
+        CACHE.invalidateAll();
+        LAST_PAGES.invalidateAll();
+    }
+
+    private static TmfModelResponse<?> fetchPage(ITmfVirtualTableDataProvider<? extends IVirtualTableLine, ? extends ITmfTreeDataModel> provider,
+            Map<String, Object> tableParams, long pageIndex, @Nullable IProgressMonitor monitor) {
+        Map<String, Object> pageParams = new HashMap<>(tableParams);
+        pageParams.put(DataProviderParameterUtils.REQUESTED_TABLE_INDEX_KEY, pageIndex * PAGE_SIZE);
+        pageParams.put(DataProviderParameterUtils.REQUESTED_TABLE_COUNT_KEY, PAGE_SIZE);
+        return provider.fetchLines(pageParams, monitor);
+    }
+
+    /**
+     * Prefetch the pages that follow the requested ones in the scroll
+     * direction, which is backward if the client requested a page before the
+     * previous one.
+     */
+    private static void prefetch(TableKey table, ITmfVirtualTableDataProvider<? extends IVirtualTableLine, ? extends ITmfTreeDataModel> provider,
+            Map<String, Object> tableParams, long firstPage, long lastPage, long size) {
+        Long previous = LAST_PAGES.asMap().put(table, firstPage);
+        boolean backward = previous != null && firstPage < previous;
+        for (int i = 1; i <= PREFETCH_PAGES; i++) {
+            long pageIndex = backward ? firstPage - i : lastPage + i;
+            if (pageIndex < 0 || pageIndex * PAGE_SIZE >= size) {
+                break;
+            }
+            PageKey key = new PageKey(table, pageIndex);
+            // Check through the map view to not count this lookup as an access
+            if (CACHE.asMap().containsKey(key)) {
+                continue;
+            }
+            PREFETCH_POOL.execute(() -> {
+                if (CACHE.asMap().containsKey(key)) {
+                    return;
+                }
+                try {
+                    TmfModelResponse<?> response = fetchPage(provider, tableParams, pageIndex, null);
+                    Object model = response.getModel();
+                    if (response.getStatus() == ITmfResponse.Status.COMPLETED && model instanceof ITmfVirtualTableModel) {
+                        Page page = new Page((ITmfVirtualTableModel<?>) model);
+                        if (page.isFull()) {
+                            CACHE.put(key, page);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // The experiment may have been closed, the page will be
+                    // fetched on demand if needed
+                }
+            });
+        }
+    }
+
+    private static final class Page {
+        private final List<Long> fColumnIds;
+        private final List<IVirtualTableLine> fLines;
+        private final long fSize;
+        private final int fWeight;
+
+        public Page(ITmfVirtualTableModel<?> model) {
+            fColumnIds = model.getColumnIds();
+            fLines = new ArrayList<>(model.getLines());
+            fSize = model.getSize();
+            long weight = PAGE_WEIGHT;
+            for (IVirtualTableLine line : fLines) {
+                weight += LINE_WEIGHT;
+                for (VirtualTableCell cell : line.getCells()) {
+                    String content = cell.getContent();
+                    weight += CELL_WEIGHT + (content == null ? 0 : 2L * content.length());
+                }
+            }
+            fWeight = (int) Math.min(Integer.MAX_VALUE, weight);
+        }
+
+        /**
+         * Whether the page has all its lines, only full pages are cached since
+         * the last page of a table grows while the experiment is indexed
+         */
+        public boolean isFull() {
+            return fLines.size() >= PAGE_SIZE;
+        }
+    }
+
+    private static final class TableKey {
+        private final UUID fExpUUID;
+        private final String fOutputId;
+        private final @Nullable Object fParameters;
+
+        public TableKey(UUID expUUID, String outputId, @Nullable Object parameters) {
+            fExpUUID = expUUID;
+            fOutputId = outputId;
+            fParameters = parameters;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fExpUUID, fOutputId, fParameters);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TableKey)) {
+                return false;
+            }
+            TableKey other = (TableKey) obj;
+            return fExpUUID.equals(other.fExpUUID)
+                    && fOutputId.equals(other.fOutputId)
+                    && Objects.equals(fParameters, other.fParameters);
+        }
+    }
+
+    private static final class PageKey {
+        private final TableKey fTable;
+        private final long fPage;
+
+        public PageKey(TableKey table, long page) {
+            fTable = table;
+            fPage = page;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fTable, fPage);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PageKey)) {
+                return false;
+            }
+            PageKey other = (PageKey) obj;
+            return fPage == other.fPage && fTable.equals(other.fTable);
+        }
+    }
+}
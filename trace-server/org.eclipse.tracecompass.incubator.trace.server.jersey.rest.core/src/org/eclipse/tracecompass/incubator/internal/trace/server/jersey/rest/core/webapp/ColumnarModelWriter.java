@@ -0,0 +1,322 @@
+/**********************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.trace.server.jersey.rest.core.webapp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
+import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils.ScopeLog;
+import org.eclipse.tracecompass.tmf.core.model.OutputElementStyle;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphRowModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphState;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphModel;
+import org.eclipse.tracecompass.tmf.core.model.xy.ISeriesModel;
+import org.eclipse.tracecompass.tmf.core.model.xy.ITmfXyModel;
+import org.eclipse.tracecompass.tmf.core.response.ITmfResponse;
+import org.eclipse.tracecompass.tmf.core.response.TmfModelResponse;
+
+/**
+ * Writer of XY and time graph states responses in a compact, little-endian,
+ * columnar binary format, negotiated with the {@value #MEDIA_TYPE} media type.
+ * <p>
+ * Strings are written as an <code>int32</code> byte length followed by the
+ * UTF-8 bytes, a length of <code>-1</code> meaning a null string. Every
+ * response starts with the following header:
+ *
+ * <pre>
+ * int32    magic, 0x43505354 ("TSPC" in little-endian)
+ * int16    format version, currently 1
+ * int16    model kind: 0 = no model, 1 = XY, 2 = time graph states
+ * int8     status: 0 = RUNNING, 1 = COMPLETED, 2 = FAILED, 3 = CANCELLED
+ * string   status message
+ * </pre>
+ *
+ * An XY model follows with:
+ *
+ * <pre>
+ * string   title
+ * int32    number of series, then for each series:
+ *   int64      series ID
+ *   string     series name
+ *   string     display type
+ *   int32      number of points n
+ *   int64[n]   x values, delta-encoded: first value, then difference to the previous value
+ *   float64[n] y values
+ * </pre>
+ *
+ * A time graph states model follows with a string table, referred to by index
+ * by the states' style and label columns, <code>-1</code> meaning none:
+ *
+ * <pre>
+ * int32    number of strings, then for each: string
+ * int32    number of rows, then for each row:
+ *   int64      entry ID
+ *   int32      number of states n
+ *   int64[n]   start times, delta-encoded: first value, then difference to the previous start
+ *   int64[n]   durations
+ *   int32[n]   style index, the style parent key or the state value
+ *   int32[n]   label index
+ *   int32[n]   active properties (tags)
+ * </pre>
+ *
+ * Only the parent key of a state style is sent, the style values are retrieved
+ * with the style endpoint.
+ */
+@Provider
+@Produces(ColumnarModelWriter.MEDIA_TYPE)
+public class ColumnarModelWriter implements MessageBodyWriter<TmfModelResponse<?>> {
+
+    /** Media type of the columnar binary format */
+    public static final String MEDIA_TYPE = "application/vnd.tracecompass.columnar"; //$NON-NLS-1$
+
+    /** {@link MediaType} of the columnar binary format */
+    public static final MediaType MEDIA_TYPE_COLUMNAR = MediaType.valueOf(MEDIA_TYPE);
+
+    private static final @NonNull Logger LOGGER = TraceCompassLog.getLogger(ColumnarModelWriter.class);
+
+    private static final int MAGIC = 0x43505354;
+    private static final short VERSION = 1;
+    private static final short KIND_NONE = 0;
+    private static final short KIND_XY = 1;
+    private static final short KIND_TIME_GRAPH = 2;
+    private static final int NO_INDEX = -1;
+    private static final byte STATUS_RUNNING = 0;
+    private static final byte STATUS_COMPLETED = 1;
+    private static final byte STATUS_FAILED = 2;
+    private static final byte STATUS_CANCELLED = 3;
+
+    @Override
+    public boolean isWriteable(@Nullable Class<?> type, @Nullable Type genericType, Annotation @Nullable [] annotations, @Nullable MediaType mediaType) {
+        return type != null && TmfModelResponse.class.isAssignableFrom(type) && MEDIA_TYPE_COLUMNAR.isCompatible(mediaType);
+    }
+
+    @Override
+    public void writeTo(TmfModelResponse<?> response, @Nullable Class<?> type, @Nullable Type genericType, Annotation @Nullable [] annotations,
+            @Nullable MediaType mediaType, @Nullable MultivaluedMap<String, Object> httpHeaders, @Nullable OutputStream entityStream) throws IOException, WebApplicationException {
+        if (entityStream == null) {
+            return;
+        }
+        try (ScopeLog sl = new ScopeLog(LOGGER, Level.FINE, "ColumnarModelWriter#writeTo")) { //$NON-NLS-1$
+            LittleEndianOutput out = new LittleEndianOutput(entityStream);
+            Object model = response.getModel();
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            if (model instanceof ITmfXyModel) {
+                out.writeShort(KIND_XY);
+            } else if (model instanceof TimeGraphModel) {
+                out.writeShort(KIND_TIME_GRAPH);
+            } else {
+                out.writeShort(KIND_NONE);
+            }
+            out.writeByte(getStatusCode(response.getStatus()));
+            out.writeString(response.getStatusMessage());
+            if (model instanceof ITmfXyModel) {
+                writeXY(out, (ITmfXyModel) model);
+            } else if (model instanceof TimeGraphModel) {
+                writeTimeGraph(out, (TimeGraphModel) model);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Get the code of a response status in the format, independent of the
+     * order of the enum constants
+     */
+    private static byte getStatusCode(ITmfResponse.Status status) {
+        switch (status) {
+        case RUNNING:
+            return STATUS_RUNNING;
+        case COMPLETED:
+            return STATUS_COMPLETED;
+        case CANCELLED:
+            return STATUS_CANCELLED;
+        case FAILED:
+        default:
+            return STATUS_FAILED;
+        }
+    }
+
+    private static void writeXY(LittleEndianOutput out, ITmfXyModel model) throws IOException {
+        out.writeString(model.getTitle());
+        Collection<@NonNull ISeriesModel> series = model.getSeriesData();
+        out.writeInt(series.size());
+        for (ISeriesModel serie : series) {
+            out.writeLong(serie.getId());
+            out.writeString(serie.getName());
+            out.writeString(serie.getDisplayType().name().toLowerCase(Locale.ROOT));
+            long[] xValues = serie.getXAxis();
+            double[] yValues = serie.getData();
+            int length = Math.min(xValues.length, yValues.length);
+            out.writeInt(length);
+            long previous = 0;
+            for (int i = 0; i < length; i++) {
+                out.writeLong(xValues[i] - previous);
+                previous = xValues[i];
+            }
+            for (int i = 0; i < length; i++) {
+                out.writeDouble(yValues[i]);
+            }
+        }
+    }
+
+    private static void writeTimeGraph(LittleEndianOutput out, TimeGraphModel model) throws IOException {
+        List<@NonNull ITimeGraphRowModel> rows = model.getRows();
+
+        // First pass: build the string table
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (ITimeGraphRowModel row : rows) {
+            for (ITimeGraphState state : row.getStates()) {
+                String style = getStyleKey(state);
+                if (style != null) {
+                    strings.putIfAbsent(style, strings.size());
+                }
+                String label = state.getLabel();
+                if (label != null) {
+                    strings.putIfAbsent(label, strings.size());
+                }
+            }
+        }
+        out.writeInt(strings.size());
+        for (String string : strings.keySet()) {
+            out.writeString(string);
+        }
+
+        // Second pass: write the rows column by column
+        out.writeInt(rows.size());
+        for (ITimeGraphRowModel row : rows) {
+            List<@NonNull ITimeGraphState> states = row.getStates();
+            out.writeLong(row.getEntryID());
+            out.writeInt(states.size());
+            long previous = 0;
+            for (ITimeGraphState state : states) {
+                out.writeLong(state.getStartTime() - previous);
+                previous = state.getStartTime();
+            }
+            for (ITimeGraphState state : states) {
+                out.writeLong(state.getDuration());
+            }
+            for (ITimeGraphState state : states) {
+                String style = getStyleKey(state);
+                out.writeInt(style == null ? NO_INDEX : strings.get(style));
+            }
+            for (ITimeGraphState state : states) {
+                String label = state.getLabel();
+                out.writeInt(label == null ? NO_INDEX : strings.get(label));
+            }
+            for (ITimeGraphState state : states) {
+                out.writeInt(state.getActiveProperties());
+            }
+        }
+    }
+
+    /**
+     * Get the style key of a state, as sent in the parentKey of the JSON style
+     * by {@link TimeGraphStateSerializer}
+     */
+    private static @Nullable String getStyleKey(ITimeGraphState state) {
+        OutputElementStyle style = state.getStyle();
+        if (style != null) {
+            return style.getParentKey();
+        }
+        int value = state.getValue();
+        return value == Integer.MIN_VALUE ? null : String.valueOf(value);
+    }
+
+    /**
+     * Buffered little-endian writer of primitives to an output stream
+     */
+    private static class LittleEndianOutput {
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final OutputStream fStream;
+        private final ByteBuffer fBuffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        public LittleEndianOutput(OutputStream stream) {
+            fStream = stream;
+        }
+
+        private void ensure(int size) throws IOException {
+            if (fBuffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        public void writeByte(int value) throws IOException {
+            ensure(Byte.BYTES);
+            fBuffer.put((byte) value);
+        }
+
+        public void writeShort(short value) throws IOException {
+            ensure(Short.BYTES);
+            fBuffer.putShort(value);
+        }
+
+        public void writeInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            fBuffer.putInt(value);
+        }
+
+        public void writeLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            fBuffer.putLong(value);
+        }
+
+        public void writeDouble(double value) throws IOException {
+            ensure(Double.BYTES);
+            fBuffer.putDouble(value);
+        }
+
+        public void writeString(@Nullable String value) throws IOException {
+            if (value == null) {
+                writeInt(NO_INDEX);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(fBuffer.remaining(), bytes.length - offset);
+                fBuffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        public void flush() throws IOException {
+            fStream.write(fBuffer.array(), 0, fBuffer.position());
+            fBuffer.clear();
+        }
+    }
+}
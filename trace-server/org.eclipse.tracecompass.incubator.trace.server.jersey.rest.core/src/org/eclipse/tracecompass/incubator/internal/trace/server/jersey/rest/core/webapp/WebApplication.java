@@ -89,6 +89,8 @@ public class WebApplication {
         registerResourcesAndMappers(rc);
         ServletContainer sc = new ServletContainer(rc);
         ServletHolder holder = new ServletHolder(sc);
+        // Needed by the endpoints that suspend their response
+        holder.setAsyncSupported(true);
         sch.addServlet(holder, PATH_SPEC);
 
         fServer = new Server();
@@ -141,6 +143,7 @@ public class WebApplication {
         rc.register(IdentifierService.class);
         rc.register(CORSFilter.class);
         rc.register(JacksonObjectMapperProvider.class);
+        rc.register(ColumnarModelWriter.class);
         EncodingFilter.enableFor(rc, GZipEncoder.class);
         rc.register(TraceServerOpenApiResource.class);
     }
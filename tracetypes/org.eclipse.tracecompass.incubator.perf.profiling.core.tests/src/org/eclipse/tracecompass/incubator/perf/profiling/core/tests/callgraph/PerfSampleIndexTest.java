@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.perf.profiling.core.tests.callgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.profiling.core.base.ICallStackElement;
+import org.eclipse.tracecompass.analysis.profiling.core.callgraph.AggregatedCallSite;
+import org.eclipse.tracecompass.analysis.profiling.core.callstack2.CallStackElement;
+import org.eclipse.tracecompass.analysis.profiling.core.instrumented.CallStackGroupDescriptor;
+import org.eclipse.tracecompass.incubator.internal.perf.profiling.core.callgraph.PerfCallchainAnalysisModule;
+import org.eclipse.tracecompass.incubator.internal.perf.profiling.core.callgraph.PerfSampleIndex;
+import org.eclipse.tracecompass.incubator.internal.perf.profiling.core.callgraph.PerfSampleIndex.ThreadSamples;
+import org.eclipse.tracecompass.incubator.perf.profiling.core.tests.ActivatorTest;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.util.Pair;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStub;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStubNs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link PerfSampleIndex} class and the sampling data queries of the
+ * perf callchain analysis that use it
+ */
+public class PerfSampleIndexTest {
+
+    private static final String PERF_TRACE_FILE = "testfiles/traces/perf_trace.xml";
+    private static final String FIELD_PERF_TID = "perf_tid";
+
+    /** The threads of the trace, and one without samples */
+    private static final int[] TIDS = { 2, 3, 6, 7, 100 };
+
+    private ITmfTrace fTrace;
+
+    /**
+     * Perf callchain analysis that gives access to the stack trace of an
+     * event, to compute the sampling data with an event request like before
+     * the samples were indexed
+     */
+    private static class PerfCallchainAnalysisModuleStub extends PerfCallchainAnalysisModule {
+        public @Nullable Pair<ICallStackElement, AggregatedCallSite> getStackTrace(ITmfEvent event) {
+            return getProfiledStackTrace(event);
+        }
+    }
+
+    /**
+     * Setup the trace for the tests
+     */
+    @Before
+    public void setUp() {
+        TmfXmlTraceStub trace = new TmfXmlTraceStubNs();
+        IPath filePath = ActivatorTest.getAbsoluteFilePath(PERF_TRACE_FILE);
+        IStatus status = trace.validate(null, filePath.toOSString());
+        if (!status.isOK()) {
+            fail(status.getException().getMessage());
+        }
+        try {
+            trace.initTrace(null, filePath.toOSString(), TmfEvent.class);
+        } catch (TmfTraceException e) {
+            fail(e.getMessage());
+        }
+        fTrace = trace;
+        trace.traceOpened(new TmfTraceOpenedSignal(this, trace, null));
+    }
+
+    /**
+     * Dispose of the test data
+     */
+    @After
+    public void tearDown() {
+        ITmfTrace trace = fTrace;
+        if (trace != null) {
+            trace.dispose();
+        }
+    }
+
+    /**
+     * Test the binary search of the samples of a thread, with samples at the
+     * same time, and that the identical stacks are stored once
+     */
+    @Test
+    public void testIndex() {
+        ICallStackElement element = new CallStackElement("2", new CallStackGroupDescriptor("Threads", null, false), null, null);
+        PerfSampleIndex index = new PerfSampleIndex();
+        index.addSample(2, element, 10, new long[] { 0, 1 });
+        index.addSample(2, element, 20, new long[] { 0, 2 });
+        index.addSample(2, element, 20, new long[] { 0, 1 });
+        index.addSample(2, element, 30, new long[] { 0, 1, 3 });
+        index.addSample(3, element, 15, new long[] { 0, 1 });
+
+        ThreadSamples samples = index.getThreadSamples(2);
+        assertNotNull(samples);
+        assertSame(element, samples.getElement());
+        assertEquals(4, samples.size());
+        assertEquals(0, samples.indexOf(Long.MIN_VALUE));
+        assertEquals(0, samples.indexOf(10));
+        assertEquals(1, samples.indexOf(11));
+        assertEquals(1, samples.indexOf(20));
+        assertEquals(3, samples.indexOf(21));
+        assertEquals(3, samples.indexOf(30));
+        assertEquals(4, samples.indexOf(31));
+        assertEquals(20, samples.getTime(2));
+
+        // Identical stacks share their ID, also between threads
+        assertEquals(samples.getStackId(0), samples.getStackId(2));
+        assertFalse(samples.getStackId(0) == samples.getStackId(1));
+        ThreadSamples otherSamples = index.getThreadSamples(3);
+        assertNotNull(otherSamples);
+        assertEquals(samples.getStackId(0), otherSamples.getStackId(0));
+        assertEquals(3, index.getStack(samples.getStackId(3)).length);
+
+        assertNull(index.getThreadSamples(4));
+    }
+
+    /**
+     * Test that the samples with an empty callchain are not indexed
+     */
+    @Test
+    public void testEmptyCallchain() {
+        ICallStackElement element = new CallStackElement("2", new CallStackGroupDescriptor("Threads", null, false), null, null);
+        PerfSampleIndex index = new PerfSampleIndex();
+        index.addSample(2, element, 10, new long[0]);
+        assertNull(index.getThreadSamples(2));
+
+        index.addSample(2, element, 20, new long[] { 0, 1 });
+        index.addSample(2, element, 30, new long[0]);
+        ThreadSamples samples = index.getThreadSamples(2);
+        assertNotNull(samples);
+        assertEquals(1, samples.size());
+        assertEquals(20, samples.getTime(0));
+    }
+
+    /**
+     * Test that the sampling data of every range of the trace, for each
+     * thread, is the same as the one computed with an event request over the
+     * range. The ranges include samples at their bounds and the trace has
+     * events without callchain, which are ignored.
+     *
+     * @throws TmfAnalysisException
+     *             Exceptions thrown when setting the trace
+     */
+    @Test
+    public void testSamplingDataAsRequests() throws TmfAnalysisException {
+        ITmfTrace trace = fTrace;
+        assertNotNull(trace);
+        PerfCallchainAnalysisModuleStub module = new PerfCallchainAnalysisModuleStub();
+        try {
+            assertTrue(module.setTrace(trace));
+            for (int tid : TIDS) {
+                for (long start = 0; start <= 22; start++) {
+                    for (long end = start; end <= 22; end++) {
+                        String range = "Thread " + tid + " [" + start + ", " + end + ']';
+                        List<AggregatedCallSite> expected = getSamplingDataWithRequest(module, trace, tid, start, end);
+                        assertSameCallSites(range, expected, module.getSamplingData(tid, start, end));
+                    }
+                }
+            }
+        } finally {
+            module.dispose();
+        }
+    }
+
+    /**
+     * Get the sampling data of a thread in a range by reading the events of
+     * the range, as the analysis did before the samples were indexed
+     */
+    private static List<AggregatedCallSite> getSamplingDataWithRequest(PerfCallchainAnalysisModuleStub module, ITmfTrace trace, int tid, long start, long end) {
+        List<AggregatedCallSite> callsites = new ArrayList<>();
+        TmfEventRequest request = new TmfEventRequest(TmfEvent.class,
+                new TmfTimeRange(TmfTimestamp.fromNanos(start), TmfTimestamp.fromNanos(end)),
+                0,
+                ITmfEventRequest.ALL_DATA,
+                ITmfEventRequest.ExecutionType.FOREGROUND) {
+
+            @Override
+            public void handleData(@NonNull ITmfEvent event) {
+                super.handleData(event);
+                Long eventTid = event.getContent().getFieldValue(Long.class, FIELD_PERF_TID);
+                if (eventTid == null || eventTid.intValue() != tid) {
+                    return;
+                }
+                Pair<ICallStackElement, AggregatedCallSite> stackTrace = module.getStackTrace(event);
+                if (stackTrace == null) {
+                    return;
+                }
+                AggregatedCallSite perfCallSite = stackTrace.getSecond();
+                for (AggregatedCallSite site : callsites) {
+                    if (site.getObject().equals(perfCallSite.getObject())) {
+                        site.merge(perfCallSite);
+                        return;
+                    }
+                }
+                callsites.add(perfCallSite);
+            }
+        };
+        trace.sendRequest(request);
+        try {
+            request.waitForCompletion();
+        } catch (InterruptedException e) {
+            fail(e.getMessage());
+        }
+        return callsites;
+    }
+
+    private static void assertSameCallSites(String path, Collection<AggregatedCallSite> expected, Collection<AggregatedCallSite> actual) {
+        assertEquals("Number of call sites of " + path, expected.size(), actual.size());
+        Iterator<AggregatedCallSite> actualIterator = actual.iterator();
+        for (AggregatedCallSite expectedCallSite : expected) {
+            AggregatedCallSite actualCallSite = actualIterator.next();
+            String callSitePath = path + '/' + expectedCallSite.getObject().resolve(Collections.emptySet());
+            assertEquals(callSitePath, expectedCallSite.getObject().resolve(Collections.emptySet()), actualCallSite.getObject().resolve(Collections.emptySet()));
+            assertEquals("Weight of " + callSitePath, expectedCallSite.getWeight(), actualCallSite.getWeight());
+            assertSameCallSites(callSitePath, expectedCallSite.getCallees(), actualCallSite.getCallees());
+        }
+    }
+}
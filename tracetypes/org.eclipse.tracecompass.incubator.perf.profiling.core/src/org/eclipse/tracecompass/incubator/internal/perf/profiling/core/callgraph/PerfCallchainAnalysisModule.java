@@ -14,8 +14,10 @@ package org.eclipse.tracecompass.incubator.internal.perf.profiling.core.callgrap
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -27,13 +29,13 @@ import org.eclipse.tracecompass.analysis.profiling.core.instrumented.CallStackGr
 import org.eclipse.tracecompass.analysis.profiling.core.model.ISamplingDataProvider;
 import org.eclipse.tracecompass.analysis.profiling.core.sampled.callgraph.ProfilingCallGraphAnalysisModule;
 import org.eclipse.tracecompass.analysis.profiling.core.tree.IWeightedTreeGroupDescriptor;
+import org.eclipse.tracecompass.incubator.internal.perf.profiling.core.callgraph.PerfSampleIndex.ThreadSamples;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
-import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 import org.eclipse.tracecompass.tmf.core.util.Pair;
@@ -60,6 +62,7 @@ public class PerfCallchainAnalysisModule extends ProfilingCallGraphAnalysisModul
 
     private final CallStackGroupDescriptor fThreadDescriptor;
     private final CallStackGroupDescriptor fProcessDescriptor;
+    private @Nullable PerfSampleIndex fSampleIndex = null;
     // private final ProfilingGroup fGroupNode = new ProfilingGroup("Data",
     // CallGraphAllGroupDescriptor.getInstance());
 
@@ -74,6 +77,24 @@ public class PerfCallchainAnalysisModule extends ProfilingCallGraphAnalysisModul
 
     @Override
     protected @Nullable Pair<ICallStackElement, AggregatedCallSite> getProfiledStackTrace(@NonNull ITmfEvent event) {
+        long[] callchain = getCallchain(event);
+        if (callchain == null) {
+            return null;
+        }
+        ICallStackElement element = getElement(event);
+        return new Pair<>(element, getCallSite(element, callchain, event.getTimestamp().getValue()));
+    }
+
+    /**
+     * Get the callchain of a sampling event
+     *
+     * @param event
+     *            The event
+     * @return A copy of the callchain, with the bottom of the stack at position
+     *         0, or <code>null</code> if the event is not a sampling event with
+     *         a callchain
+     */
+    private static long @Nullable [] getCallchain(ITmfEvent event) {
         if (!event.getName().startsWith(EVENT_SAMPLING)) {
             return null;
         }
@@ -82,7 +103,7 @@ public class PerfCallchainAnalysisModule extends ProfilingCallGraphAnalysisModul
         if (field == null) {
             return null;
         }
-        long[] value = (long[]) field.getValue();
+        long[] value = ((long[]) field.getValue()).clone();
         int size = value.length;
         long tmp;
         // Reverse the stack so that element at position 0 is the bottom
@@ -91,8 +112,7 @@ public class PerfCallchainAnalysisModule extends ProfilingCallGraphAnalysisModul
             value[i] = value[j];
             value[j] = tmp;
         }
-        ICallStackElement element = getElement(event);
-        return new Pair<>(element, getCallSite(element, value, event.getTimestamp().getValue()));
+        return value;
     }
 
     /**
@@ -168,19 +188,78 @@ public class PerfCallchainAnalysisModule extends ProfilingCallGraphAnalysisModul
 
     @Override
     public Collection<AggregatedCallSite> getSamplingData(int tid, long start, long end) {
+        PerfSampleIndex index = getSampleIndex();
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        ThreadSamples samples = index.getThreadSamples(tid);
+        if (samples == null) {
+            return Collections.emptyList();
+        }
+        /*
+         * Count the samples of each distinct stack first, with the time of its
+         * first sample, so that a call site is created per stack instead of
+         * per sample. The stacks are in the order of their first sample, like
+         * the call sites.
+         */
+        Map<Integer, long[]> stackCounts = new LinkedHashMap<>();
+        for (int i = samples.indexOf(start); i < samples.size() && samples.getTime(i) <= end; i++) {
+            long time = samples.getTime(i);
+            stackCounts.computeIfAbsent(samples.getStackId(i), id -> new long[] { 0, time })[0]++;
+        }
+        Map<Object, AggregatedCallSite> callsites = new LinkedHashMap<>();
+        for (Entry<Integer, long[]> stackCount : stackCounts.entrySet()) {
+            long[] countAndTime = stackCount.getValue();
+            AggregatedCallSite perfCallSite = getCallSite(samples.getElement(), index.getStack(stackCount.getKey()), countAndTime[1]);
+            addToWeight(perfCallSite, countAndTime[0] - 1);
+            AggregatedCallSite site = callsites.putIfAbsent(perfCallSite.getObject(), perfCallSite);
+            if (site != null) {
+                site.merge(perfCallSite);
+            }
+        }
+        return new ArrayList<>(callsites.values());
+    }
+
+    /**
+     * Add a weight to a call site and all its callees, to count the other
+     * samples of its stack
+     */
+    private static void addToWeight(AggregatedCallSite callsite, long weight) {
+        callsite.addToWeight(weight);
+        for (AggregatedCallSite callee : callsite.getCallees()) {
+            addToWeight(callee, weight);
+        }
+    }
+
+    /**
+     * Get the index of the samples of the trace, reading the trace to build it
+     * the first time it is requested
+     *
+     * @return The sample index, or <code>null</code> if it could not be built
+     */
+    private synchronized @Nullable PerfSampleIndex getSampleIndex() {
+        PerfSampleIndex index = fSampleIndex;
+        if (index != null) {
+            return index;
+        }
         ITmfTrace trace = getTrace();
         if (trace == null) {
-            return Collections.emptyList();
+            return null;
         }
-        List<AggregatedCallSite> callsites = new ArrayList<>();
-        TmfEventRequest request = new PerfProfilingEventRequest(trace, start, end, tid, callsites);
+        index = new PerfSampleIndex();
+        TmfEventRequest request = new PerfSampleIndexRequest(trace, index);
         trace.sendRequest(request);
         try {
             request.waitForCompletion();
         } catch (InterruptedException e) {
-
+            Thread.currentThread().interrupt();
+            return null;
         }
-        return callsites;
+        if (!request.isCompleted() || request.isCancelled()) {
+            return null;
+        }
+        fSampleIndex = index;
+        return index;
     }
 
     @Override
@@ -192,35 +271,27 @@ public class PerfCallchainAnalysisModule extends ProfilingCallGraphAnalysisModul
         return Collections.singleton(trace.getHostId());
     }
 
-    private class PerfProfilingEventRequest extends TmfEventRequest {
+    private class PerfSampleIndexRequest extends TmfEventRequest {
 
-        private final int fTid;
         private final ITmfTrace fTrace;
-        private final List<AggregatedCallSite> fSites;
+        private final PerfSampleIndex fIndex;
 
         /**
          * Constructor
          *
          * @param trace
          *            The trace
-         * @param start
-         *            The start time of the request
-         * @param end
-         *            The end time of the request
-         * @param tid
-         *            The tid for which to get the samples
-         * @param callsites
-         *            A list of callsites to fill
+         * @param index
+         *            The sample index to fill
          */
-        public PerfProfilingEventRequest(ITmfTrace trace, long start, long end, int tid, List<AggregatedCallSite> callsites) {
+        public PerfSampleIndexRequest(ITmfTrace trace, PerfSampleIndex index) {
             super(TmfEvent.class,
-                    new TmfTimeRange(TmfTimestamp.fromNanos(start), TmfTimestamp.fromNanos(end)),
+                    TmfTimeRange.ETERNITY,
                     0,
                     ITmfEventRequest.ALL_DATA,
                     ITmfEventRequest.ExecutionType.BACKGROUND);
-            fTid = tid;
             fTrace = trace;
-            fSites = callsites;
+            fIndex = index;
         }
 
         @Override
@@ -242,23 +313,13 @@ public class PerfCallchainAnalysisModule extends ProfilingCallGraphAnalysisModul
         }
 
         private void handleEvent(ITmfEvent event) {
-            Long tidField = event.getContent().getFieldValue(Long.class, FIELD_PERF_TID);
-            Long tid = tidField == null ? -1 : tidField;
-            if (tid.intValue() != fTid) {
-                return;
-            }
-            Pair<ICallStackElement, AggregatedCallSite> stackTrace = getProfiledStackTrace(event);
-            if (stackTrace == null) {
+            long[] callchain = getCallchain(event);
+            if (callchain == null) {
                 return;
             }
-            AggregatedCallSite perfCallSite = stackTrace.getSecond();
-            for (AggregatedCallSite site : fSites) {
-                if (site.getObject().equals(perfCallSite.getObject())) {
-                    site.merge(perfCallSite);
-                    return;
-                }
-            }
-            fSites.add(perfCallSite);
+            Long tidField = event.getContent().getFieldValue(Long.class, FIELD_PERF_TID);
+            Long tid = tidField == null ? -1 : tidField;
+            fIndex.addSample(tid.intValue(), getElement(event), event.getTimestamp().getValue(), callchain);
         }
     }
 
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License 2.0 which
+ * accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.perf.profiling.core.callgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.profiling.core.base.ICallStackElement;
+
+/**
+ * Index of the sampled stacks of a trace. The samples are kept per thread,
+ * in arrays of timestamps and stack IDs sorted by timestamp, and each distinct
+ * stack is stored only once, so that the samples of a thread in a time range
+ * are found by binary search. Samples with an empty stack are not indexed.
+ */
+public final class PerfSampleIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The samples of a thread
+     */
+    public static final class ThreadSamples {
+        private final ICallStackElement fElement;
+        private long[] fTimes = new long[INITIAL_CAPACITY];
+        private int[] fStackIds = new int[INITIAL_CAPACITY];
+        private int fSize = 0;
+
+        private ThreadSamples(ICallStackElement element) {
+            fElement = element;
+        }
+
+        private void add(long time, int stackId) {
+            if (fSize == fTimes.length) {
+                fTimes = Arrays.copyOf(fTimes, fSize * 2);
+                fStackIds = Arrays.copyOf(fStackIds, fSize * 2);
+            }
+            fTimes[fSize] = time;
+            fStackIds[fSize] = stackId;
+            fSize++;
+        }
+
+        /**
+         * Get the call stack element of this thread
+         *
+         * @return The element
+         */
+        public ICallStackElement getElement() {
+            return fElement;
+        }
+
+        /**
+         * Get the number of samples
+         *
+         * @return The number of samples
+         */
+        public int size() {
+            return fSize;
+        }
+
+        /**
+         * Get the timestamp of a sample
+         *
+         * @param index
+         *            The index of the sample
+         * @return The timestamp
+         */
+        public long getTime(int index) {
+            return fTimes[index];
+        }
+
+        /**
+         * Get the ID of the stack of a sample
+         *
+         * @param index
+         *            The index of the sample
+         * @return The stack ID
+         */
+        public int getStackId(int index) {
+            return fStackIds[index];
+        }
+
+        /**
+         * Get the index of the first sample at or after a time
+         *
+         * @param time
+         *            The time
+         * @return The index of the first sample at or after the time, or the
+         *         number of samples if there is none
+         */
+        public int indexOf(long time) {
+            int low = 0;
+            int high = fSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (fTimes[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Wrapper of a stack to use it as key of the interned stacks
+     */
+    private static final class StackKey {
+        private final long[] fStack;
+        private final int fHashCode;
+
+        public StackKey(long[] stack) {
+            fStack = stack;
+            fHashCode = Arrays.hashCode(stack);
+        }
+
+        @Override
+        public int hashCode() {
+            return fHashCode;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof StackKey)) {
+                return false;
+            }
+            return Arrays.equals(fStack, ((StackKey) obj).fStack);
+        }
+    }
+
+    private final Map<Integer, ThreadSamples> fThreads = new HashMap<>();
+    private final Map<StackKey, Integer> fStackIds = new HashMap<>();
+    private final List<long[]> fStacks = new ArrayList<>();
+
+    /**
+     * Add a sample to the index. The samples of a thread should be added in
+     * timestamp order. A sample with an empty stack is ignored.
+     *
+     * @param tid
+     *            The thread ID
+     * @param element
+     *            The call stack element of the thread
+     * @param time
+     *            The timestamp of the sample
+     * @param stack
+     *            The sampled stack, with the bottom of the stack at position 0
+     */
+    public void addSample(int tid, ICallStackElement element, long time, long[] stack) {
+        if (stack.length == 0) {
+            return;
+        }
+        Integer stackId = fStackIds.computeIfAbsent(new StackKey(stack), k -> {
+            fStacks.add(stack);
+            return fStacks.size() - 1;
+        });
+        fThreads.computeIfAbsent(tid, t -> new ThreadSamples(element)).add(time, stackId);
+    }
+
+    /**
+     * Get the samples of a thread
+     *
+     * @param tid
+     *            The thread ID
+     * @return The samples of the thread, or <code>null</code> if there are no
+     *         samples for this thread
+     */
+    public @Nullable ThreadSamples getThreadSamples(int tid) {
+        return fThreads.get(tid);
+    }
+
+    /**
+     * Get a stack from its ID
+     *
+     * @param stackId
+     *            The ID of the stack
+     * @return The stack, with the bottom of the stack at position 0
+     */
+    public long[] getStack(int stackId) {
+        return fStacks.get(stackId);
+    }
+}